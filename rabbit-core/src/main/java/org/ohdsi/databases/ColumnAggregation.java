@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.ohdsi.databases.configuration.DbType;
+import org.ohdsi.utilities.files.RowCursor;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the queries with which the database profiles the columns of a table, for scans with AGGREGATE_IN_DATABASE.
+ * One aggregate query per table returns the number of rows, and per column the number of non-empty values, the
+ * maximum length and the number of distinct values, plus the minimum and maximum of numeric and date columns and the
+ * average of numeric columns. A value frequency query per column returns only its most frequent values.
+ *
+ * Both queries read from a source, which is either the table or a subquery that samples it.
+ */
+public class ColumnAggregation {
+
+    /**
+     * What the aggregate query computes for a column, derived from its JDBC type.
+     */
+    public enum Kind {
+        NUMERIC, DATE, TEXT, OTHER,
+        /**
+         * Types that most databases cannot group on or compare, such as large text and binary types. These columns are
+         * profiled by reading the rows.
+         */
+        NOT_AGGREGATED;
+
+        public static Kind fromSqlType(int sqlType) {
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.FLOAT:
+                case Types.REAL:
+                case Types.DOUBLE:
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    return NUMERIC;
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    return DATE;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                    return TEXT;
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TIME:
+                case Types.TIME_WITH_TIMEZONE:
+                    return OTHER;
+                default:
+                    return NOT_AGGREGATED;
+            }
+        }
+
+        boolean hasMinMax() {
+            return this == NUMERIC || this == DATE;
+        }
+    }
+
+    /**
+     * The results of the aggregate query, by column in the order of the query.
+     */
+    public static class Aggregates {
+        private final long rowCount;
+        private final long[] nonEmptyCounts;
+        private final int[] maxLengths;
+        private final long[] distinctCounts;
+        private final String[] minimums;
+        private final String[] maximums;
+        private final String[] averages;
+
+        private Aggregates(long rowCount, int nColumns) {
+            this.rowCount = rowCount;
+            nonEmptyCounts = new long[nColumns];
+            maxLengths = new int[nColumns];
+            distinctCounts = new long[nColumns];
+            minimums = new String[nColumns];
+            maximums = new String[nColumns];
+            averages = new String[nColumns];
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Returns the number of rows in which the column is null, or only contains white space
+         */
+        public long getEmptyCount(int column) {
+            return rowCount - nonEmptyCounts[column];
+        }
+
+        public int getMaxLength(int column) {
+            return maxLengths[column];
+        }
+
+        /**
+         * Returns the number of distinct values, counting null as one value as the scan does when it reads rows
+         */
+        public long getDistinctCount(int column) {
+            return distinctCounts[column];
+        }
+
+        /**
+         * @return the minimum as text, or an empty string if the database did not compute it
+         */
+        public String getMinimum(int column) {
+            return minimums[column];
+        }
+
+        public String getMaximum(int column) {
+            return maximums[column];
+        }
+
+        public String getAverage(int column) {
+            return averages[column];
+        }
+    }
+
+    /**
+     * @return false if the database type cannot profile columns with these queries
+     */
+    public static boolean isSupported(DbType dbType) {
+        return dbType != DbType.MS_ACCESS;
+    }
+
+    /**
+     * Generates the aggregate query for the columns. Columns of kind NOT_AGGREGATED must not be included.
+     *
+     * @param source table or sampling subquery with alias, as used after FROM
+     */
+    public static String getAggregateQuery(DbType dbType, String source, List<String> columns, List<Kind> kinds) {
+        List<String> expressions = new ArrayList<>();
+        expressions.add(count(dbType, "*"));
+        for (int i = 0; i < columns.size(); i++) {
+            String column = SamplingMethod.quoteColumn(dbType, columns.get(i));
+            Kind kind = kinds.get(i);
+            if (kind == Kind.TEXT) {
+                expressions.add(count(dbType, "NULLIF(" + trim(dbType, column) + ", '')"));
+                expressions.add("MAX(" + length(dbType, column) + ")");
+            } else {
+                expressions.add(count(dbType, column));
+                expressions.add("MAX(" + length(dbType, toText(dbType, column)) + ")");
+            }
+            expressions.add(count(dbType, "DISTINCT " + column));
+            expressions.add(count(dbType, column));
+            if (kind.hasMinMax()) {
+                expressions.add("MIN(" + column + ")");
+                expressions.add("MAX(" + column + ")");
+            }
+            if (kind == Kind.NUMERIC) {
+                expressions.add(average(dbType, column));
+            }
+        }
+        return "SELECT " + String.join(", ", expressions) + " FROM " + source;
+    }
+
+    /**
+     * Reads the single row of the aggregate query generated for the given kinds.
+     */
+    public static Aggregates readAggregates(RowCursor cursor, List<Kind> kinds) {
+        if (!cursor.next()) {
+            throw new IllegalStateException("The aggregate query did not return a row");
+        }
+        Aggregates aggregates = new Aggregates(parseLong(cursor.get(0)), kinds.size());
+        int index = 1;
+        for (int i = 0; i < kinds.size(); i++) {
+            Kind kind = kinds.get(i);
+            aggregates.nonEmptyCounts[i] = parseLong(cursor.get(index++));
+            aggregates.maxLengths[i] = (int) parseLong(cursor.get(index++));
+            long distinctCount = parseLong(cursor.get(index++));
+            long nonNullCount = parseLong(cursor.get(index++));
+            // Null values are read as empty strings, which count as one more value
+            aggregates.distinctCounts[i] = distinctCount + (nonNullCount < aggregates.rowCount ? 1 : 0);
+            aggregates.minimums[i] = kind.hasMinMax() ? cursor.get(index++) : "";
+            aggregates.maximums[i] = kind.hasMinMax() ? cursor.get(index++) : "";
+            aggregates.averages[i] = kind == Kind.NUMERIC ? cursor.get(index++) : "";
+        }
+        return aggregates;
+    }
+
+    /**
+     * Generates the query that returns the most frequent values of a column with their frequency, most frequent first.
+     *
+     * @param source table or sampling subquery with alias, as used after FROM
+     * @param limit  maximum number of values to return
+     */
+    public static String getValueFrequencyQuery(DbType dbType, String source, String column, int limit) {
+        String quotedColumn = SamplingMethod.quoteColumn(dbType, column);
+        String select = "SELECT " + quotedColumn + ", " + count(dbType, "*") + " AS frequency FROM " + source +
+                " GROUP BY " + quotedColumn + " ORDER BY frequency DESC";
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE || dbType == DbType.TERADATA)
+            return select.replaceFirst("^SELECT ", "SELECT TOP " + limit + " ");
+        else if (dbType == DbType.ORACLE)
+            return select + " FETCH FIRST " + limit + " ROWS ONLY";
+        else
+            return select + " LIMIT " + limit;
+    }
+
+    private static String count(DbType dbType, String expression) {
+        // COUNT returns an int on SQL Server, which overflows on large tables
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+            return "COUNT_BIG(" + expression + ")";
+        else
+            return "COUNT(" + expression + ")";
+    }
+
+    private static String trim(DbType dbType, String expression) {
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+            return "LTRIM(RTRIM(" + expression + "))";
+        else
+            return "TRIM(" + expression + ")";
+    }
+
+    private static String length(DbType dbType, String expression) {
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+            return "LEN(" + expression + ")";
+        else if (dbType == DbType.MYSQL)
+            return "CHAR_LENGTH(" + expression + ")";
+        else if (dbType == DbType.TERADATA)
+            return "CHARACTER_LENGTH(" + expression + ")";
+        else
+            return "LENGTH(" + expression + ")";
+    }
+
+    private static String toText(DbType dbType, String expression) {
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+            return "CAST(" + expression + " AS NVARCHAR(4000))";
+        else if (dbType == DbType.ORACLE)
+            return "TO_CHAR(" + expression + ")";
+        else if (dbType == DbType.MYSQL)
+            return "CAST(" + expression + " AS CHAR)";
+        else if (dbType == DbType.BIGQUERY)
+            return "CAST(" + expression + " AS STRING)";
+        else if (dbType == DbType.TERADATA)
+            return "CAST(" + expression + " AS VARCHAR(1000))";
+        else
+            return "CAST(" + expression + " AS VARCHAR)";
+    }
+
+    private static String average(DbType dbType, String expression) {
+        // AVG of an integer column is an integer on SQL Server
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+            return "AVG(CAST(" + expression + " AS FLOAT))";
+        else
+            return "AVG(" + expression + ")";
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        // Some databases return counts as decimals, e.g. Oracle
+        return value.indexOf('.') == -1 ? Long.parseLong(value) : (long) Double.parseDouble(value);
+    }
+}
@@ -27,6 +27,9 @@ import java.sql.*;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
 
 /*
  * DBConnection is a wrapper for java.sql.Connection
@@ -49,6 +52,7 @@ public class DBConnection {
     private boolean verbose;
     private final StorageHandler connectorInterface;
     private static DecimalFormat decimalFormat		= new DecimalFormat("#.#");
+    private final TableStructureCache tableStructureCache = new TableStructureCache();
 
 
     public DBConnection(Connection connection, DbType dbType, boolean verbose) {
@@ -188,23 +192,54 @@ public class DBConnection {
     }
 
     public List<FieldInfo> fetchTableStructure(RichConnection connection, String database, String table, ScanParameters scanParameters) {
+        long rowCount;
+        if (dbType.supportsStorageHandler()) {
+            rowCount = dbType.getStorageHandler().getTableSize(table);
+        } else {
+            rowCount = connection.getTableSize(table);
+        }
+        return fetchTableStructure(connection, database, table, rowCount, scanParameters);
+    }
+
+    /**
+     * Fetches the structure of a table as a list of FieldInfo objects. Where possible, the columns of all tables in the
+     * schema are fetched with the first call and cached for the next tables.
+     *
+     * @param rowCount number of rows in the table, as counted by the caller
+     */
+    public List<FieldInfo> fetchTableStructure(RichConnection connection, String database, String table, long rowCount, ScanParameters scanParameters) {
         List<FieldInfo> fieldInfos = new ArrayList<>();
 
         if (dbType.supportsStorageHandler()) {
-            fieldInfos = dbType.getStorageHandler().fetchTableStructure(table, scanParameters);
+            StorageHandler storageHandler = dbType.getStorageHandler();
+            String schemaQuery = storageHandler.getSchemaFieldsInformationQuery();
+            List<String[]> columns = null;
+            if (schemaQuery != null) {
+                columns = tableStructureCache.getColumns(this, schemaQuery, table, String::toUpperCase);
+            }
+            if (columns != null) {
+                fieldInfos = createFieldInfos(columns, rowCount, scanParameters);
+            } else {
+                fieldInfos = storageHandler.fetchTableStructure(table, rowCount, scanParameters);
+            }
         } else if (dbType == DbType.MS_ACCESS) {
             ResultSet rs = getFieldNamesFromJDBC(table);
             try {
                 while (rs.next()) {
                     FieldInfo fieldInfo = new FieldInfo(scanParameters, rs.getString("COLUMN_NAME"));
                     fieldInfo.type = rs.getString("TYPE_NAME");
-                    fieldInfo.rowCount = connection.getTableSize(table);
+                    fieldInfo.rowCount = rowCount;
                     fieldInfos.add(fieldInfo);
                 }
             } catch (SQLException e) {
                 throw new RuntimeException(e.getMessage());
             }
         } else {
+            List<String[]> columns = fetchColumnsFromCatalog(database, table);
+            if (columns != null) {
+                return createFieldInfos(columns, rowCount, scanParameters);
+            }
+
             String query = null;
             if (dbType == DbType.ORACLE)
                 query = "SELECT COLUMN_NAME,DATA_TYPE FROM ALL_TAB_COLUMNS WHERE table_name = '" + table + "' AND owner = '" + database.toUpperCase() + "'";
@@ -249,13 +284,65 @@ public class DBConnection {
                 } else {
                     fieldInfo.type = row.get("DATA_TYPE");
                 }
-                fieldInfo.rowCount = connection.getTableSize(table);
+                fieldInfo.rowCount = rowCount;
                 fieldInfos.add(fieldInfo);
             }
         }
         return fieldInfos;
     }
 
+    private static List<FieldInfo> createFieldInfos(List<String[]> columns, long rowCount, ScanParameters scanParameters) {
+        List<FieldInfo> fieldInfos = new ArrayList<>(columns.size());
+        for (String[] column : columns) {
+            FieldInfo fieldInfo = new FieldInfo(scanParameters, column[0]);
+            fieldInfo.type = column[1];
+            fieldInfo.rowCount = rowCount;
+            fieldInfos.add(fieldInfo);
+        }
+        return fieldInfos;
+    }
+
+    /*
+     * Looks up the columns of the table in the cached columns of its schema. Returns null if the table is not found,
+     * or if there is no schema level query for the database type.
+     */
+    private List<String[]> fetchColumnsFromCatalog(String database, String table) {
+        String schemaQuery = null;
+        String tableName = table;
+        UnaryOperator<String> normalizer = UnaryOperator.identity();
+        if (dbType == DbType.ORACLE)
+            schemaQuery = "SELECT TABLE_NAME,COLUMN_NAME,DATA_TYPE FROM ALL_TAB_COLUMNS WHERE owner = '" + database.toUpperCase() + "' ORDER BY TABLE_NAME,COLUMN_ID";
+        else if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE) {
+            String[] parts = table.split("\\.");
+            if (parts.length != 2)
+                return null;
+            String catalogCondition = "";
+            if (dbType != DbType.AZURE) {
+                String trimmedDatabase = database;
+                if (database.startsWith("[") && database.endsWith("]"))
+                    trimmedDatabase = database.substring(1, database.length() - 1);
+                catalogCondition = "TABLE_CATALOG='" + trimmedDatabase + "' AND ";
+            }
+            schemaQuery = "SELECT TABLE_NAME,COLUMN_NAME,DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE " + catalogCondition + "TABLE_SCHEMA='" + parts[0] +
+                    "' ORDER BY TABLE_NAME,ORDINAL_POSITION;";
+            tableName = parts[1];
+        } else if (dbType == DbType.MYSQL)
+            schemaQuery = "SELECT TABLE_NAME,COLUMN_NAME,DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = '" + database + "' ORDER BY TABLE_NAME,ORDINAL_POSITION;";
+        else if (dbType == DbType.POSTGRESQL || dbType == DbType.REDSHIFT) {
+            schemaQuery = "SELECT TABLE_NAME,COLUMN_NAME,DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = '" + database.toLowerCase() + "' ORDER BY TABLE_NAME,ordinal_position;";
+            normalizer = String::toLowerCase;
+        } else if (dbType == DbType.TERADATA) {
+            schemaQuery = "SELECT TableName, ColumnName, ColumnType FROM dbc.columns WHERE DatabaseName= '" + database.toLowerCase() + "' ORDER BY TableName, ColumnId;";
+            normalizer = name -> name.trim().toLowerCase();
+        } else if (dbType == DbType.BIGQUERY) {
+            schemaQuery = "SELECT table_name, column_name, data_type FROM " + database + ".INFORMATION_SCHEMA.COLUMNS ORDER BY table_name, ordinal_position;";
+        }
+
+        if (schemaQuery == null)
+            return null;
+        return tableStructureCache.getColumns(this, schemaQuery, tableName, normalizer);
+    }
+
     public ResultSet getFieldNamesFromJDBC(String table) {
         if (dbType == DbType.MS_ACCESS) {
             try {
@@ -270,12 +357,24 @@ public class DBConnection {
     }
 
     public QueryResult fetchRowsFromTable(String table, long rowCount, ScanParameters scanParameters) {
+        return fetchRowsFromTable(table, rowCount, null, scanParameters);
+    }
+
+    /**
+     * @param keyColumn column that the KEY_HASH sampling method uses as key, can be null
+     */
+    public QueryResult fetchRowsFromTable(String table, long rowCount, String keyColumn, ScanParameters scanParameters) {
+        return new QueryResult(getRowsQuery(table, rowCount, keyColumn, scanParameters), this, verbose, scanParameters.getFetchSize());
+    }
+
+    private String getRowsQuery(String table, long rowCount, String keyColumn, ScanParameters scanParameters) {
         String query = null;
         int sampleSize = scanParameters.getSampleSize();
+        SamplingMethod samplingMethod = scanParameters.getSamplingMethod();
 
         if (dbType.supportsStorageHandler()) {
-            query = dbType.getStorageHandler().getRowSampleQuery(table, rowCount, sampleSize);
-        } else if (sampleSize == -1) {
+            query = dbType.getStorageHandler().getRowSampleQuery(table, rowCount, sampleSize, samplingMethod, keyColumn, scanParameters.getSamplingSeed());
+        } else if (sampleSize == -1 || (sampleSize >= rowCount && samplingMethod != SamplingMethod.DEFAULT)) {
             if (dbType == DbType.MS_ACCESS)
                 query = "SELECT * FROM [" + table + "]";
             else if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
@@ -283,29 +382,13 @@ public class DBConnection {
             else
                 query = "SELECT * FROM " + table;
         } else {
-            if (dbType == DbType.SQL_SERVER || dbType == DbType.AZURE)
-                query = "SELECT * FROM [" + table.replaceAll("\\.", "].[") + "] TABLESAMPLE (" + sampleSize + " ROWS)";
-            else if (dbType == DbType.MYSQL)
-                query = "SELECT * FROM " + table + " ORDER BY RAND() LIMIT " + sampleSize;
-            else if (dbType == DbType.PDW)
-                query = "SELECT TOP " + sampleSize + " * FROM [" + table.replaceAll("\\.", "].[") + "] ORDER BY RAND()";
-            else if (dbType == DbType.ORACLE) {
-                if (sampleSize < rowCount) {
-                    double percentage = 100 * sampleSize / (double) rowCount;
-                    if (percentage < 100)
-                        query = "SELECT * FROM " + table + " SAMPLE(" + percentage + ")";
-                } else {
-                    query = "SELECT * FROM " + table;
-                }
-            } else if (dbType == DbType.POSTGRESQL || dbType == DbType.REDSHIFT) {
-                query = "SELECT * FROM " + table + " ORDER BY RANDOM() LIMIT " + sampleSize;
-            }
-            else if (dbType == DbType.MS_ACCESS) {
-                query = "SELECT " + "TOP " + sampleSize + " * FROM [" + table + "]";
-            }
-            else if (dbType == DbType.BIGQUERY) {
-                query = "SELECT * FROM " + table + " ORDER BY RAND() LIMIT " + sampleSize;
+            query = samplingMethod.getSampleQuery(dbType, table, keyColumn, rowCount, sampleSize, scanParameters.getSamplingSeed());
+            if (query == null && samplingMethod != SamplingMethod.DEFAULT) {
+                logger.warn("Sampling method {} is not available for {}, using the default method", samplingMethod, dbType.label());
+                samplingMethod = SamplingMethod.DEFAULT;
+                query = samplingMethod.getSampleQuery(dbType, table, keyColumn, rowCount, sampleSize, scanParameters.getSamplingSeed());
             }
+            logger.info("Sampling table {} with method {}: {}", table, samplingMethod, samplingMethod.getExpectedCost(dbType).getDescription());
         }
 
 
@@ -313,10 +396,104 @@ public class DBConnection {
             throw new RuntimeException("No query was generated for database type " + dbType.name());
         }
 
-        return createQueryResult(query);
+        return query;
     }
 
 
+    /**
+     * Returns the JDBC types (see java.sql.Types) of the columns of a table, by column name, as reported by the driver
+     * for a query that returns no rows.
+     */
+    public Map<String, Integer> fetchColumnTypes(String table) {
+        Map<String, Integer> columnTypes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String query = "SELECT * FROM " + getQuotedTable(table) + " WHERE 1 = 0";
+        try (Statement statement = createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet resultSet = statement.executeQuery(query)) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columnTypes.putIfAbsent(metaData.getColumnName(i), metaData.getColumnType(i));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return columnTypes;
+    }
+
+    /**
+     * Lets the database compute the aggregates of ColumnAggregation for the given columns in one query. Only the rows
+     * that would be scanned are included: the whole table, or the sample drawn by the sampling method. As each query
+     * draws the sample again, a sample is only aggregated when the sampling method is repeatable.
+     *
+     * @param keyColumn column that the KEY_HASH sampling method uses as key, can be null
+     * @return query result with a single row, or null if the database type or the sampling method does not support this
+     */
+    public QueryResult fetchColumnAggregates(String table, long rowCount, String keyColumn, List<String> columns,
+                                             List<ColumnAggregation.Kind> kinds, ScanParameters scanParameters) {
+        String source = getAggregationSource(table, rowCount, keyColumn, scanParameters);
+        if (source == null) {
+            return null;
+        }
+        String query;
+        if (dbType.supportsStorageHandler()) {
+            query = dbType.getStorageHandler().getColumnAggregateQuery(source, columns, kinds);
+        } else {
+            query = ColumnAggregation.getAggregateQuery(dbType, source, columns, kinds);
+        }
+        return new QueryResult(query, this, verbose);
+    }
+
+    /**
+     * Lets the database count how often each value of a column occurs, over the same rows as fetchColumnAggregates.
+     *
+     * @param keyColumn column that the KEY_HASH sampling method uses as key, can be null
+     * @param limit maximum number of values to return, the most frequent first
+     * @return query result with the value and its frequency as the first two columns, or null if the database type or
+     * the sampling method does not support this
+     */
+    public QueryResult fetchValueFrequencies(String table, long rowCount, String keyColumn, String column, int limit,
+                                             ScanParameters scanParameters) {
+        String source = getAggregationSource(table, rowCount, keyColumn, scanParameters);
+        if (source == null) {
+            return null;
+        }
+        String query;
+        if (dbType.supportsStorageHandler()) {
+            query = dbType.getStorageHandler().getValueFrequencyQuery(source, column, limit);
+        } else {
+            query = ColumnAggregation.getValueFrequencyQuery(dbType, source, column, limit);
+        }
+        return new QueryResult(query, this, verbose, scanParameters.getFetchSize());
+    }
+
+    /**
+     * @return the table or sample to aggregate over, or null if the aggregates of separate queries would not cover the
+     * same rows
+     */
+    private String getAggregationSource(String table, long rowCount, String keyColumn, ScanParameters scanParameters) {
+        if (!ColumnAggregation.isSupported(dbType)) {
+            return null;
+        }
+        int sampleSize = scanParameters.getSampleSize();
+        if (sampleSize == -1 || sampleSize >= rowCount) {
+            return getQuotedTable(table);
+        }
+        SamplingMethod samplingMethod = scanParameters.getSamplingMethod();
+        long seed = scanParameters.getSamplingSeed();
+        if (!samplingMethod.isRepeatable(dbType, seed)) {
+            return null;
+        }
+        String query = samplingMethod.getSampleQuery(dbType, table, keyColumn, rowCount, sampleSize, seed);
+        return query == null ? null : "(" + query + ") sample_rows";
+    }
+
+    private String getQuotedTable(String table) {
+        if (dbType.supportsStorageHandler()) {
+            return dbType.getStorageHandler().getQualifiedTableName(table);
+        } else {
+            return SamplingMethod.quoteTable(dbType, table);
+        }
+    }
+
     private List<String> getTableNamesClassic(String database) {
         List<String> names = new ArrayList<>();
         String query = null;
@@ -364,6 +541,14 @@ public class DBConnection {
         this.connection.setAutoCommit(b);
     }
 
+    public boolean getAutoCommit() throws SQLException {
+        return this.connection.getAutoCommit();
+    }
+
+    public DbType getDbType() {
+        return dbType;
+    }
+
     public PreparedStatement prepareStatement(String statement) throws SQLException {
         return this.connection.prepareStatement(statement);
     }
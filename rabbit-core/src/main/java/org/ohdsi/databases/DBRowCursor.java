@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.ohdsi.databases.configuration.DbType;
+import org.ohdsi.utilities.files.RowCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RowCursor over the result set of a query. The column layout is read from the result set metadata once; when a
+ * column name occurs more than once, only the first of those columns is exposed.
+ */
+class DBRowCursor implements RowCursor {
+    static Logger logger = LoggerFactory.getLogger(DBRowCursor.class);
+
+    private ResultSet resultSet;
+    private List<String> fieldNames;
+    private Map<String, Integer> fieldName2ColumnIndex;
+    private int[] resultSetColumns;
+    private String[] cells;
+
+    private DBConnection autoCommitToRestore = null;
+
+    /**
+     * @param fetchSize number of rows to fetch from the database at a time, or 0 to use the defaults of the driver
+     */
+    DBRowCursor(String sql, DBConnection dbConnection, boolean verbose, int fetchSize) {
+        Statement statement;
+        try {
+            sql.trim();
+            if (sql.endsWith(";"))
+                sql = sql.substring(0, sql.length() - 1);
+            if (verbose) {
+                String abbrSQL = sql.replace('\n', ' ').replace('\t', ' ').trim();
+                if (abbrSQL.length() > 100)
+                    abbrSQL = abbrSQL.substring(0, 100).trim() + "...";
+                logger.info("Executing query: {}", abbrSQL);
+            }
+            long start = System.currentTimeMillis();
+            statement = dbConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                enableStreaming(statement, dbConnection, fetchSize);
+            }
+            resultSet = statement.executeQuery(sql);
+            resolveColumns(resultSet.getMetaData());
+            if (verbose)
+                dbConnection.outputQueryStats(statement, System.currentTimeMillis() - start);
+        } catch (SQLException e) {
+            close();
+            logger.error(sql, e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void resolveColumns(ResultSetMetaData metaData) throws SQLException {
+        fieldNames = new ArrayList<>(metaData.getColumnCount());
+        fieldName2ColumnIndex = new HashMap<>();
+        List<Integer> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i < metaData.getColumnCount() + 1; i++) {
+            String columnName = metaData.getColumnName(i);
+            if (!fieldName2ColumnIndex.containsKey(columnName)) {
+                fieldName2ColumnIndex.put(columnName, fieldNames.size());
+                fieldNames.add(columnName);
+                columns.add(i);
+            }
+        }
+        fieldNames = Collections.unmodifiableList(fieldNames);
+        resultSetColumns = columns.stream().mapToInt(Integer::intValue).toArray();
+        cells = new String[resultSetColumns.length];
+    }
+
+    /*
+     * Most drivers hold on to the complete result set unless told otherwise, which does not work for large tables.
+     * What it takes to have the rows streamed in chunks differs per database:
+     * - PostgreSQL and Redshift only use a cursor when auto-commit is off, it is switched back on when the result set is closed
+     * - MySQL uses a server side cursor, as the connection is opened with useCursorFetch=true
+     * - Oracle uses the fetch size as its row prefetch
+     * - SQL Server streams with adaptive response buffering, which is the default of its driver
+     * For the other databases the fetch size is passed on as a hint to the driver.
+     */
+    private void enableStreaming(Statement statement, DBConnection dbConnection, int fetchSize) throws SQLException {
+        DbType dbType = dbConnection.getDbType();
+        if (dbType == DbType.POSTGRESQL || dbType == DbType.REDSHIFT) {
+            if (dbConnection.getAutoCommit()) {
+                dbConnection.setAutoCommit(false);
+                autoCommitToRestore = dbConnection;
+            }
+        }
+        try {
+            statement.setFetchSize(fetchSize);
+        } catch (SQLException e) {
+            logger.debug("Driver for {} does not accept a fetch size: {}", dbType, e.getMessage());
+        }
+    }
+
+    private void restoreAutoCommit() {
+        if (autoCommitToRestore != null) {
+            try {
+                autoCommitToRestore.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.warn("Could not restore auto-commit: {}", e.getMessage());
+            }
+            autoCommitToRestore = null;
+        }
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public int indexOf(String fieldName) {
+        Integer index = fieldName2ColumnIndex.get(fieldName);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public boolean next() {
+        if (resultSet == null)
+            return false;
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            for (int i = 0; i < resultSetColumns.length; i++) {
+                String value;
+                try {
+                    value = resultSet.getString(resultSetColumns[i]);
+                } catch (Exception e) {
+                    value = "";
+                }
+                if (value == null)
+                    value = "";
+                cells[i] = value.replace(" 00:00:00", "");
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String get(int columnIndex) {
+        return cells[columnIndex];
+    }
+
+    /**
+     * @return a new map from field name to column index, as used by {@link org.ohdsi.utilities.files.Row}
+     */
+    Map<String, Integer> copyFieldName2ColumnIndex() {
+        return new HashMap<>(fieldName2ColumnIndex);
+    }
+
+    @Override
+    public void close() {
+        if (resultSet != null) {
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            resultSet = null;
+        }
+        restoreAutoCommit();
+    }
+}
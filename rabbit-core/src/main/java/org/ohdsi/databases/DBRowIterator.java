@@ -18,63 +18,37 @@
 package org.ohdsi.databases;
 
 import org.ohdsi.utilities.files.Row;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Set;
 
+/**
+ * Iterator over the rows of a query, returning a separate Row object for each row. When the values are only needed
+ * while iterating, {@link DBRowCursor} avoids creating these objects.
+ */
 class DBRowIterator implements Iterator<Row> {
-    static Logger logger = LoggerFactory.getLogger(DBRowIterator.class);
 
-    private ResultSet resultSet;
+    private final DBRowCursor cursor;
 
     private boolean hasNext;
 
-    private Set<String> columnNames = new HashSet<>();
-
     public DBRowIterator(String sql, RichConnection richConnection) {
-        new DBRowIterator(sql, richConnection.getConnection(), richConnection.isVerbose());
+        this(sql, richConnection.getConnection(), richConnection.isVerbose());
     }
+
     public DBRowIterator(String sql, DBConnection dbConnection, boolean verbose) {
-        Statement statement;
-        try {
-            sql.trim();
-            if (sql.endsWith(";"))
-                sql = sql.substring(0, sql.length() - 1);
-            if (verbose) {
-                String abbrSQL = sql.replace('\n', ' ').replace('\t', ' ').trim();
-                if (abbrSQL.length() > 100)
-                    abbrSQL = abbrSQL.substring(0, 100).trim() + "...";
-                logger.info("Executing query: {}", abbrSQL);
-            }
-            long start = System.currentTimeMillis();
-            statement = dbConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-            resultSet = statement.executeQuery(sql);
-            hasNext = resultSet.next();
-            if (verbose)
-                dbConnection.outputQueryStats(statement, System.currentTimeMillis() - start);
-        } catch (SQLException e) {
-            logger.error(sql, e.getMessage());
-            throw new RuntimeException(e);
-        }
+        this(new DBRowCursor(sql, dbConnection, verbose, 0));
+    }
+
+    DBRowIterator(DBRowCursor cursor) {
+        this.cursor = cursor;
+        hasNext = cursor.next();
     }
 
     public void close() {
-        if (resultSet != null) {
-            try {
-                resultSet.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-            resultSet = null;
-            hasNext = false;
-        }
+        cursor.close();
+        hasNext = false;
     }
 
     @Override
@@ -84,37 +58,13 @@ class DBRowIterator implements Iterator<Row> {
 
     @Override
     public Row next() {
-        try {
-            Row row = new Row();
-            ResultSetMetaData metaData;
-            metaData = resultSet.getMetaData();
-            columnNames.clear();
-
-            for (int i = 1; i < metaData.getColumnCount() + 1; i++) {
-                String columnName = metaData.getColumnName(i);
-                if (columnNames.add(columnName)) {
-                    String value;
-                    try {
-                        value = resultSet.getString(i);
-                    } catch (Exception e) {
-                        value = "";
-                    }
-                    if (value == null)
-                        value = "";
-
-                    row.add(columnName, value.replace(" 00:00:00", ""));
-                }
-            }
-            hasNext = resultSet.next();
-            if (!hasNext) {
-                resultSet.close();
-                resultSet = null;
-            }
-            return row;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+        String[] cells = new String[cursor.getFieldNames().size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = cursor.get(i);
         }
+        Row row = new Row(new ArrayList<>(Arrays.asList(cells)), cursor.copyFieldName2ColumnIndex());
+        hasNext = cursor.next();
+        return row;
     }
 
     @Override
@@ -17,36 +17,40 @@
  ******************************************************************************/
 package org.ohdsi.databases;
 
-import org.ohdsi.utilities.DateUtilities;
-import org.ohdsi.utilities.StringUtilities;
-import org.ohdsi.utilities.collections.CountingSet;
+import org.ohdsi.utilities.WordTokenizer;
+import org.ohdsi.utilities.collections.HyperLogLog;
 import org.ohdsi.utilities.collections.Pair;
+import org.ohdsi.utilities.collections.SpaceSavingCounter;
+import org.ohdsi.utilities.collections.StringCounter;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class FieldInfo {
     private final ScanParameters scanParameters;
+    private final ValueTypeClassifier classifier = new ValueTypeClassifier();
+    private final WordTokenizer wordTokenizer = new WordTokenizer();
     public String type;
     public String name;
     public String label;
-    public CountingSet<String> valueCounts = new CountingSet<>();
+    public StringCounter valueCounts = new StringCounter(true);
+    // Only used when tracking heavy hitters, in which case it replaces valueCounts
+    public SpaceSavingCounter heavyHitters;
     public long sumLength = 0;
     public int maxLength = 0;
     public long nProcessed = 0;
     public long emptyCount = 0;
     public long uniqueCount = 0;
+    // Estimates the number of unique values when there are too many values to count them exactly
+    public HyperLogLog uniqueCountSketch;
     public long rowCount = -1;
+    public boolean rowCountIsEstimate = false;
     public boolean isInteger = true;
     public boolean isReal = true;
     public boolean isDate = true;
     public boolean isFreeText = false;
     public boolean tooManyValues = false;
-    public UniformSamplingReservoir samplingReservoir;
+    public NumericStatsSampler samplingReservoir;
     public Object average;
     public Object stdev;
     public Object minimum;
@@ -59,13 +63,25 @@ public class FieldInfo {
         this.scanParameters = scanParameters;
         this.name = name;
         if (scanParameters.doCalculateNumericStats()) {
-            this.samplingReservoir = new UniformSamplingReservoir(scanParameters.getNumStatsSamplerSize());
+            if (scanParameters.doUseQuantileSketch()) {
+                this.samplingReservoir = new QuantileSketch(scanParameters.getNumStatsSamplerSize());
+            } else {
+                this.samplingReservoir = new UniformSamplingReservoir(scanParameters.getNumStatsSamplerSize());
+            }
+        }
+        if (scanParameters.doScanValues()) {
+            this.uniqueCountSketch = new HyperLogLog();
+        }
+        if (scanParameters.doTrackHeavyHitters()) {
+            this.heavyHitters = new SpaceSavingCounter(ScanParameters.MAX_VALUES_IN_MEMORY);
         }
     }
 
     public void trim() {
         // Only keep values that are used in scan report
-        if (valueCounts.size() > scanParameters.getMaxValues()) {
+        if (heavyHitters != null) {
+            heavyHitters.keepTopN(scanParameters.getMaxValues());
+        } else if (valueCounts.size() > scanParameters.getMaxValues()) {
             valueCounts.keepTopN(scanParameters.getMaxValues());
         }
 
@@ -82,6 +98,49 @@ public class FieldInfo {
         samplingReservoir = null;
     }
 
+    /**
+     * Sets the statistics that the database computed over all scanned rows, for a field of which only the most
+     * frequent values were processed. Should be called after trim().
+     *
+     * @param minimum        minimum as returned by the database, or an empty string if it was not computed
+     * @param valuesComplete true if all distinct values were processed, so that the value counts and the statistics
+     *                       computed from them are exact
+     */
+    public void setDatabaseAggregates(long rowCount, long emptyCount, int maxLength, long distinctCount,
+                                      String minimum, String maximum, String average, boolean valuesComplete) {
+        this.nProcessed = rowCount;
+        this.emptyCount = emptyCount;
+        this.maxLength = maxLength;
+        this.uniqueCount = distinctCount;
+        this.uniqueCountSketch = null;
+        this.tooManyValues = !valuesComplete;
+
+        if (scanParameters.doCalculateNumericStats()) {
+            this.minimum = parseAggregate(minimum, this.minimum, valuesComplete);
+            this.maximum = parseAggregate(maximum, this.maximum, valuesComplete);
+            this.average = parseAggregate(average, this.average, valuesComplete);
+            if (!valuesComplete) {
+                // Computed from the most frequent values only
+                stdev = Double.NaN;
+                q1 = Double.NaN;
+                q2 = Double.NaN;
+                q3 = Double.NaN;
+            }
+        }
+    }
+
+    private Object parseAggregate(String value, Object computed, boolean valuesComplete) {
+        String trimValue = value.trim();
+        if (!trimValue.isEmpty()) {
+            classifier.classify(trimValue, isInteger, isReal, isDate);
+            if ((isInteger || isReal) && classifier.isNumber())
+                return formatNumericValue(classifier.getDoubleValue());
+            else if (isDate && classifier.isDate())
+                return formatNumericValue(classifier.getEpochDay());
+        }
+        return valuesComplete ? computed : Double.NaN;
+    }
+
     public boolean hasValuesTrimmed() {
         return tooManyValues;
     }
@@ -112,6 +171,29 @@ public class FieldInfo {
             return DataType.VARCHAR.name();
     }
 
+    /**
+     * Returns the estimated number of unique values, which unlike uniqueCount remains accurate when values have been
+     * trimmed.
+     */
+    public long getUniqueCountEstimate() {
+        return uniqueCountSketch == null ? uniqueCount : uniqueCountSketch.estimate();
+    }
+
+    /**
+     * Returns the relative standard error of getUniqueCountEstimate().
+     */
+    public double getUniqueCountRelativeError() {
+        return uniqueCountSketch == null ? 0 : uniqueCountSketch.getRelativeError();
+    }
+
+    public Double getFractionUniqueEstimate() {
+        if (nProcessed == 0) {
+            return 0d;
+        } else {
+            return Math.min(1d, getUniqueCountEstimate() / (double) nProcessed);
+        }
+    }
+
     public Double getFractionUnique() {
         if (nProcessed == 0 || uniqueCount == 1) {
             return 0d;
@@ -122,66 +204,204 @@ public class FieldInfo {
     }
 
     public void processValue(String value) {
-        nProcessed++;
-        sumLength += value.length();
+        processValue(value, 1);
+    }
+
+    /**
+     * Processes a value that occurs count times, for instance as counted by the database. Apart from the moment the
+     * free text check is done, this is the same as calling processValue(value) count times.
+     */
+    public void processValue(String value, long count) {
+        processValue(value, count, false);
+    }
+
+    /**
+     * Processes an integer of which the type is known, for instance from the schema of a file, so that the type does
+     * not have to be derived from its text.
+     */
+    public void processLong(long value) {
+        classifier.setLong(value);
+        processValue(Long.toString(value), 1, true);
+    }
+
+    /**
+     * Processes a floating point number of which the type is known. The text is the value as it should appear in the
+     * value counts.
+     */
+    public void processDouble(double value, String text) {
+        classifier.setDouble(value);
+        processValue(text, 1, true);
+    }
+
+    /**
+     * Processes a date of which the type is known.
+     */
+    public void processDate(LocalDate date) {
+        classifier.setDate(date.toEpochDay());
+        processValue(date.toString(), 1, true);
+    }
+
+    /**
+     * @param classified true if the classifier already holds the type and parsed value of this value
+     */
+    private void processValue(String value, long count, boolean classified) {
+        long nProcessedBefore = nProcessed;
+        nProcessed += count;
+        sumLength += value.length() * count;
         if (value.length() > maxLength)
             maxLength = value.length();
 
         String trimValue = value.trim();
         if (trimValue.length() == 0)
-            emptyCount++;
+            emptyCount += count;
+
+        if (uniqueCountSketch != null)
+            uniqueCountSketch.add(value);
 
         if (!isFreeText) {
-            boolean newlyAdded = valueCounts.add(value);
+            boolean newlyAdded = countValue(value, count);
             if (newlyAdded) uniqueCount++;
 
             if (trimValue.length() != 0) {
-                evaluateDataType(trimValue);
+                evaluateDataType(trimValue, classified);
             }
 
-            if (nProcessed == ScanParameters.N_FOR_FREE_TEXT_CHECK && !isInteger && !isReal && !isDate) {
+            if (nProcessedBefore < ScanParameters.N_FOR_FREE_TEXT_CHECK && nProcessed >= ScanParameters.N_FOR_FREE_TEXT_CHECK
+                    && !isInteger && !isReal && !isDate) {
                 doFreeTextCheck();
             }
         } else {
-            valueCounts.addAll(StringUtilities.mapToWords(trimValue.toLowerCase()));
+            countWords(trimValue, count);
         }
 
         // if over this large constant number, then trimmed back to size used in report (maxValues).
-        if (!tooManyValues && valueCounts.size() > ScanParameters.MAX_VALUES_IN_MEMORY) {
+        // The heavy hitter sketch stays within this number by itself, but its counts are no longer exact.
+        if (heavyHitters != null) {
+            tooManyValues = !heavyHitters.isExact();
+        } else if (!tooManyValues && valueCounts.size() > ScanParameters.MAX_VALUES_IN_MEMORY) {
             tooManyValues = true;
             this.trim();
         }
 
+        // Reuse the values parsed by evaluateDataType; if the type is still numeric or date, this value is one
         if (scanParameters.doCalculateNumericStats() && !trimValue.isEmpty()) {
             if (isInteger || isReal) {
-                samplingReservoir.add(Double.parseDouble(trimValue));
+                samplingReservoir.add(classifier.getDoubleValue(), count);
             } else if (isDate) {
-                samplingReservoir.add(DateUtilities.parseDate(trimValue));
+                samplingReservoir.add(classifier.getEpochDay(), count);
+            }
+        }
+
+    }
+
+    /**
+     * Adds the values processed by another FieldInfo of the same field, for instance one that scanned another part of
+     * the same file, so that the result is close to having processed the values of both in one go. The differences
+     * with a sequential scan are that a value type check or free text check that the other FieldInfo already made is
+     * not repeated, and that the field becomes free text if either was.
+     */
+    public void merge(FieldInfo other) {
+        long nProcessedBefore = nProcessed;
+        nProcessed += other.nProcessed;
+        sumLength += other.sumLength;
+        maxLength = Math.max(maxLength, other.maxLength);
+        emptyCount += other.emptyCount;
+        isInteger &= other.isInteger;
+        isReal &= other.isReal;
+        isDate &= other.isDate;
+        if (uniqueCountSketch != null && other.uniqueCountSketch != null) {
+            uniqueCountSketch.merge(other.uniqueCountSketch);
+        }
+        if (samplingReservoir != null && other.samplingReservoir != null) {
+            samplingReservoir.merge(other.samplingReservoir);
+        }
+
+        if (other.isFreeText && !isFreeText) {
+            isFreeText = true;
+            convertValuesToWords();
+        }
+        if (isFreeText && !other.isFreeText) {
+            if (other.heavyHitters != null) {
+                heavyHitters.merge(toWordCounts(other.heavyHitters));
+            } else {
+                for (int i = 0; i < other.valueCounts.size(); i++)
+                    countWords(other.valueCounts.getKey(i), other.valueCounts.getCount(i));
+            }
+        } else if (heavyHitters != null) {
+            for (Pair<String, Long> valueCount : other.heavyHitters.getDecliningCounts(Long.MIN_VALUE, Integer.MAX_VALUE)) {
+                if (!isFreeText && heavyHitters.getCount(valueCount.getItem1()) == 0) uniqueCount++;
+            }
+            heavyHitters.merge(other.heavyHitters);
+        } else {
+            for (int i = 0; i < other.valueCounts.size(); i++) {
+                boolean newlyAdded = valueCounts.add(other.valueCounts.getKey(i), other.valueCounts.getCount(i));
+                if (newlyAdded && !isFreeText) uniqueCount++;
             }
         }
 
+        tooManyValues |= other.tooManyValues;
+        if (heavyHitters != null) {
+            tooManyValues = !heavyHitters.isExact();
+        } else if (valueCounts.size() > ScanParameters.MAX_VALUES_IN_MEMORY) {
+            tooManyValues = true;
+            valueCounts.keepTopN(scanParameters.getMaxValues());
+        }
+
+        if (!isFreeText && nProcessedBefore < ScanParameters.N_FOR_FREE_TEXT_CHECK
+                && other.nProcessed < ScanParameters.N_FOR_FREE_TEXT_CHECK
+                && nProcessed >= ScanParameters.N_FOR_FREE_TEXT_CHECK && !isInteger && !isReal && !isDate) {
+            doFreeTextCheck();
+        }
     }
 
-    public List<Pair<String, Integer>> getSortedValuesWithoutSmallValues() {
-        List<Pair<String, Integer>> result = valueCounts.key2count.entrySet().stream()
-                .filter(e -> e.getValue().count >= scanParameters.getMinCellCount())
-                .sorted(Comparator.<Map.Entry<String, CountingSet.Count>>comparingInt(e -> e.getValue().count).reversed())
-                .limit(scanParameters.getMaxValues())
-                .map(e -> new Pair<>(e.getKey(), e.getValue().count))
-                .collect(Collectors.toCollection(ArrayList::new));
+    /**
+     * Returns the most frequent values with their counts. When tracking heavy hitters, the counts are estimates that
+     * may exceed the true count by at most getMaxOvercount(value), and a value is only included if its count is
+     * guaranteed to be at least the minimum cell count.
+     */
+    public List<Pair<String, Long>> getSortedValuesWithoutSmallValues() {
+        List<Pair<String, Long>> result;
+        boolean truncated;
+        if (heavyHitters != null) {
+            result = heavyHitters.getDecliningCounts(scanParameters.getMinCellCount(), scanParameters.getMaxValues());
+            truncated = result.size() < heavyHitters.size() || !heavyHitters.isExact();
+        } else {
+            result = valueCounts.getDecliningCounts(scanParameters.getMinCellCount(), scanParameters.getMaxValues());
+            truncated = result.size() < valueCounts.size();
+        }
 
-        if (result.size() < valueCounts.key2count.size()) {
-            result.add(new Pair<>("List truncated...", -1));
+        if (truncated) {
+            result.add(new Pair<>("List truncated...", -1L));
         }
         return result;
     }
 
-    private void evaluateDataType(String value) {
-        if (isReal && !StringUtilities.isNumber(value))
+    /**
+     * Returns by how much the reported count of the value may exceed its true count. This is always 0 unless heavy
+     * hitters are tracked.
+     */
+    public long getMaxOvercount(String value) {
+        return heavyHitters == null ? 0 : heavyHitters.getError(value);
+    }
+
+    private boolean countValue(String value, long count) {
+        if (heavyHitters != null) {
+            return heavyHitters.add(value, count);
+        } else {
+            return valueCounts.add(value, count);
+        }
+    }
+
+    private void evaluateDataType(String value, boolean classified) {
+        if (!isReal && !isInteger && !isDate)
+            return;
+        if (!classified)
+            classifier.classify(value, isInteger, isReal, isDate);
+        if (isReal && !classifier.isNumber())
             isReal = false;
-        if (isInteger && !StringUtilities.isLong(value))
+        if (isInteger && !classifier.isLong())
             isInteger = false;
-        if (isDate && !StringUtilities.isDate(value))
+        if (isDate && !classifier.isDate())
             isDate = false;
     }
 
@@ -189,12 +409,51 @@ public class FieldInfo {
         double averageLength = sumLength / (double) (nProcessed - emptyCount);
         if (averageLength >= ScanParameters.MIN_AVERAGE_LENGTH_FOR_FREE_TEXT) {
             isFreeText = true;
-            // Reset value count to word count
-            CountingSet<String> wordCounts = new CountingSet<>();
-            for (Map.Entry<String, CountingSet.Count> entry : valueCounts.key2count.entrySet())
-                for (String word : StringUtilities.mapToWords(entry.getKey().toLowerCase()))
-                    wordCounts.add(word, entry.getValue().count);
-            valueCounts = wordCounts;
+            convertValuesToWords();
+        }
+    }
+
+    /**
+     * Resets the value counts to the counts of the words in the values.
+     */
+    private void convertValuesToWords() {
+        if (heavyHitters != null) {
+            heavyHitters = toWordCounts(heavyHitters);
+        } else {
+            StringCounter values = valueCounts;
+            valueCounts = new StringCounter(true);
+            for (int i = 0; i < values.size(); i++)
+                countWords(values.getKey(i), values.getCount(i));
+        }
+    }
+
+    /**
+     * Returns the counts of the lowercase words in the values of a heavy hitter sketch. A word inherits the estimated
+     * count and the error of each value it occurs in, and a word of a value that is no longer tracked may have
+     * occurred as often as such a value, so the word counts are no more exact than the value counts.
+     */
+    private SpaceSavingCounter toWordCounts(SpaceSavingCounter values) {
+        SpaceSavingCounter words = new SpaceSavingCounter(values.getCapacity());
+        words.raiseFloor(values.getUntrackedBound());
+        for (Pair<String, Long> valueCount : values.getDecliningCounts(Long.MIN_VALUE, Integer.MAX_VALUE)) {
+            long error = values.getError(valueCount.getItem1());
+            wordTokenizer.reset(valueCount.getItem1(), true);
+            while (wordTokenizer.next())
+                words.add(wordTokenizer.lowerCaseWord(), valueCount.getItem2(), error);
+        }
+        return words;
+    }
+
+    /**
+     * Counts the lowercase words of the text, without creating a string per word unless the word is new.
+     */
+    private void countWords(String text, long count) {
+        wordTokenizer.reset(text, true);
+        while (wordTokenizer.next()) {
+            if (heavyHitters != null)
+                heavyHitters.add(wordTokenizer.lowerCaseWord(), count);
+            else
+                valueCounts.addLowerCase(text, wordTokenizer.start(), wordTokenizer.end(), count);
         }
     }
 
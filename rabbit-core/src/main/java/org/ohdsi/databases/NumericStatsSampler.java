@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import java.util.List;
+
+/**
+ * Summarises a stream of numeric values for the numeric statistics in the scan report. Minimum, maximum and mean are
+ * always exact; quantiles and standard deviation may be estimates, depending on the implementation.
+ */
+public interface NumericStatsSampler {
+
+    /** Add a value. */
+    void add(double value);
+
+    /** Add a value that occurs count times. */
+    void add(double value, long count);
+
+    /**
+     * Add the values summarised by the other sampler, which must be of the same class, as if they had been added to
+     * this sampler.
+     */
+    void merge(NumericStatsSampler other);
+
+    /** Get the number of values that have been added. */
+    long getCount();
+
+    double getPopulationMinimum();
+
+    double getPopulationMaximum();
+
+    double getPopulationMean();
+
+    double getSampleStandardDeviation();
+
+    /**
+     * Get the value at the given rank, e.g. 0.9 for the 90th percentile. Returns NaN if no values have been added.
+     */
+    double getQuantile(double rank);
+
+    /**
+     * Get the quartiles of the values.
+     * @return list with size three, of the 25, 50 and 75 percentiles.
+     */
+    List<Double> getSampleQuartiles();
+
+    /**
+     * Get the (estimated) number of values per bucket. Bucket 0 holds the values below splitPoints[0], bucket i the
+     * values from splitPoints[i - 1] up to splitPoints[i], and the last bucket the values from the last split point
+     * up.
+     * @param splitPoints increasing bucket boundaries
+     * @return array with splitPoints.length + 1 counts
+     */
+    long[] getHistogram(double[] splitPoints);
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming quantile sketch with a deterministic bound on the rank error, as an alternative to
+ * UniformSamplingReservoir for large sampler sizes.
+ *
+ * <p>Values are kept in a hierarchy of compactors, as in the KLL and MRL sketches: level h holds values that each
+ * represent 2^h input values. When a level holds capacity values, they are sorted and every other value is promoted
+ * to the next level. Instead of a random offset, the offset alternates between compactions, so results are
+ * reproducible. Each compaction at level h can shift the rank of any value by at most 2^h; these shifts are added up,
+ * so getRankErrorBound() is a guaranteed bound rather than a probabilistic one. As a fraction of the number of values
+ * n it is at most log2(n / capacity) / capacity, so a capacity of 1,000 gives ranks within 2% for a billion values.
+ *
+ * <p>Adding a value takes amortised O(log capacity) time, and a value that occurs count times is added in O(log
+ * count) time by splitting the count into powers of two. As long as fewer than capacity values have been added, all
+ * values are kept and the quantiles are exact. Minimum, maximum, mean and standard deviation are always exact.
+ */
+public class QuantileSketch implements NumericStatsSampler {
+    private final int capacity;
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> levelSizes = new ArrayList<>();
+    private final List<Boolean> levelOffsets = new ArrayList<>();
+    private long count = 0;
+    private long rankErrorBound = 0;
+    private double mean = 0;
+    private double sumSquaredDeviations = 0;
+    private double minimum = Double.POSITIVE_INFINITY;
+    private double maximum = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param capacity the number of values kept per level, at least 2
+     */
+    public QuantileSketch(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Sketch capacity must be at least 2");
+        }
+        // Compaction halves a level, so keep the capacity even
+        this.capacity = capacity + (capacity & 1);
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        updateMoments(value, count, 0);
+        minimum = Math.min(minimum, value);
+        maximum = Math.max(maximum, value);
+        this.count += count;
+
+        for (int level = 0; count != 0; level++, count >>>= 1) {
+            if ((count & 1) != 0) {
+                addToLevel(level, value);
+            }
+        }
+    }
+
+    public void merge(NumericStatsSampler other) {
+        if (!(other instanceof QuantileSketch)) {
+            throw new IllegalArgumentException("Cannot merge " + other.getClass().getSimpleName() + " into a QuantileSketch");
+        }
+        QuantileSketch that = (QuantileSketch) other;
+        if (that.count == 0) {
+            return;
+        }
+        updateMoments(that.mean, that.count, that.sumSquaredDeviations);
+        minimum = Math.min(minimum, that.minimum);
+        maximum = Math.max(maximum, that.maximum);
+        count += that.count;
+        rankErrorBound += that.rankErrorBound;
+
+        for (int level = 0; level < that.levels.size(); level++) {
+            double[] values = that.levels.get(level);
+            for (int i = 0; i < that.levelSizes.get(level); i++) {
+                addToLevel(level, values[i]);
+            }
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the maximum difference between the rank of a value as estimated by the sketch and its true rank, as a
+     * number of values.
+     */
+    public long getRankErrorBound() {
+        return rankErrorBound;
+    }
+
+    public double getPopulationMinimum() {
+        return minimum;
+    }
+
+    public double getPopulationMaximum() {
+        return maximum;
+    }
+
+    public double getPopulationMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    public double getSampleStandardDeviation() {
+        return Math.sqrt(sumSquaredDeviations / (count - 1));
+    }
+
+    public double getQuantile(double rank) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        WeightedValues weightedValues = getWeightedValues();
+        // The smallest value of which the cumulative weight reaches the requested rank
+        double target = rank * count;
+        long cumulativeWeight = 0;
+        for (int i = 0; i < weightedValues.values.length; i++) {
+            cumulativeWeight += weightedValues.weights[i];
+            if (cumulativeWeight >= target) {
+                return weightedValues.values[i];
+            }
+        }
+        return weightedValues.values[weightedValues.values.length - 1];
+    }
+
+    public List<Double> getSampleQuartiles() {
+        List<Double> quartiles = new ArrayList<>(3);
+        for (int i = 1; i <= 3; i++) {
+            quartiles.add(getQuantile(i * 0.25d));
+        }
+        return quartiles;
+    }
+
+    public long[] getHistogram(double[] splitPoints) {
+        long[] histogram = new long[splitPoints.length + 1];
+        WeightedValues weightedValues = getWeightedValues();
+        int bucket = 0;
+        for (int i = 0; i < weightedValues.values.length; i++) {
+            while (bucket < splitPoints.length && weightedValues.values[i] >= splitPoints[bucket]) {
+                bucket++;
+            }
+            histogram[bucket] += weightedValues.weights[i];
+        }
+        return histogram;
+    }
+
+    /** Get the number of values currently kept by the sketch. */
+    public int getRetainedCount() {
+        int retained = 0;
+        for (int size : levelSizes) {
+            retained += size;
+        }
+        return retained;
+    }
+
+    private void addToLevel(int level, double value) {
+        while (levels.size() <= level) {
+            levels.add(new double[capacity]);
+            levelSizes.add(0);
+            levelOffsets.add(false);
+        }
+        int size = levelSizes.get(level);
+        levels.get(level)[size++] = value;
+        levelSizes.set(level, size);
+        if (size == capacity) {
+            compact(level);
+        }
+    }
+
+    private void compact(int level) {
+        double[] values = levels.get(level);
+        Arrays.sort(values, 0, capacity);
+        boolean offset = levelOffsets.get(level);
+        levelOffsets.set(level, !offset);
+        levelSizes.set(level, 0);
+        rankErrorBound += 1L << level;
+        for (int i = offset ? 1 : 0; i < capacity; i += 2) {
+            addToLevel(level + 1, values[i]);
+        }
+    }
+
+    /**
+     * Updates the running mean and sum of squared deviations (Chan et al.) with a group of values.
+     */
+    private void updateMoments(double groupMean, long groupCount, double groupSumSquaredDeviations) {
+        long total = this.count + groupCount;
+        double delta = groupMean - mean;
+        mean += delta * groupCount / total;
+        sumSquaredDeviations += groupSumSquaredDeviations + delta * delta * this.count * groupCount / total;
+    }
+
+    private WeightedValues getWeightedValues() {
+        int retained = getRetainedCount();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            System.arraycopy(levels.get(level), 0, values, n, levelSizes.get(level));
+            Arrays.fill(weights, n, n + levelSizes.get(level), 1L << level);
+            n += levelSizes.get(level);
+        }
+        // Sort the values, carrying their weights along
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        WeightedValues result = new WeightedValues(retained);
+        for (int i = 0; i < retained; i++) {
+            result.values[i] = values[order[i]];
+            result.weights[i] = weights[order[i]];
+        }
+        return result;
+    }
+
+    private static class WeightedValues {
+        final double[] values;
+        final long[] weights;
+
+        WeightedValues(int size) {
+            values = new double[size];
+            weights = new long[size];
+        }
+    }
+}
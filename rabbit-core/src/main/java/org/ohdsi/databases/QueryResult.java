@@ -18,6 +18,7 @@
 package org.ohdsi.databases;
 
 import org.ohdsi.utilities.files.Row;
+import org.ohdsi.utilities.files.RowCursor;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -26,28 +27,50 @@ import java.util.List;
 public class QueryResult implements Iterable<Row> {
     private String sql;
 
-    private List<DBRowIterator> iterators = new ArrayList<>();
+    private List<DBRowCursor> cursors = new ArrayList<>();
     private DBConnection dbConnection;
+    private int fetchSize;
 
     public QueryResult(String sql, DBConnection dbConnection) {
         this(sql, dbConnection, false);
     }
 
     public QueryResult(String sql, DBConnection dbConnection, boolean verbose) {
+        this(sql, dbConnection, verbose, 0);
+    }
+
+    /**
+     * @param fetchSize number of rows to fetch from the database at a time. When larger than 0, the rows are streamed
+     *                  from the database instead of being loaded into memory all at once (see DBRowCursor)
+     */
+    public QueryResult(String sql, DBConnection dbConnection, boolean verbose, int fetchSize) {
         this.sql = sql;
         this.dbConnection = dbConnection;
+        this.fetchSize = fetchSize;
     }
 
     @Override
     public Iterator<Row> iterator() {
-        DBRowIterator iterator = new DBRowIterator(sql, dbConnection, false);
-        iterators.add(iterator);
-        return iterator;
+        return new DBRowIterator(createCursor());
+    }
+
+    /**
+     * Executes the query and returns a cursor over the rows, for when the values of a row are only needed until the
+     * next row is read.
+     */
+    public RowCursor cursor() {
+        return createCursor();
+    }
+
+    private DBRowCursor createCursor() {
+        DBRowCursor cursor = new DBRowCursor(sql, dbConnection, false, fetchSize);
+        cursors.add(cursor);
+        return cursor;
     }
 
     public void close() {
-        for (DBRowIterator iterator : iterators) {
-            iterator.close();
+        for (DBRowCursor cursor : cursors) {
+            cursor.close();
         }
     }
 }
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.ohdsi.databases.configuration.DbSettings;
@@ -51,6 +52,11 @@ public class RichConnection implements Closeable {
 		this.dbType = dbSettings.dbType;
 	}
 
+	RichConnection(DBConnection connection, DbType dbType) {
+		this.connection = connection;
+		this.dbType = dbType;
+	}
+
 	/**
 	 * Execute the given SQL statement.
 	 *
@@ -87,10 +93,30 @@ public class RichConnection implements Closeable {
 		return this.connection.fetchTableStructure(this, database, table, scanParameters);
 	}
 
+	public List<FieldInfo> fetchTableStructure(RichConnection connection, String database, String table, long rowCount, ScanParameters scanParameters) {
+		return this.connection.fetchTableStructure(this, database, table, rowCount, scanParameters);
+	}
+
 	public QueryResult fetchRowsFromTable(String table, long rowCount, ScanParameters scanParameters) {
 		return this.connection.fetchRowsFromTable(table, rowCount, scanParameters);
 	}
 
+	public QueryResult fetchRowsFromTable(String table, long rowCount, String keyColumn, ScanParameters scanParameters) {
+		return this.connection.fetchRowsFromTable(table, rowCount, keyColumn, scanParameters);
+	}
+
+	public Map<String, Integer> fetchColumnTypes(String table) {
+		return this.connection.fetchColumnTypes(table);
+	}
+
+	public QueryResult fetchColumnAggregates(String table, long rowCount, String keyColumn, List<String> columns, List<ColumnAggregation.Kind> kinds, ScanParameters scanParameters) {
+		return this.connection.fetchColumnAggregates(table, rowCount, keyColumn, columns, kinds, scanParameters);
+	}
+
+	public QueryResult fetchValueFrequencies(String table, long rowCount, String keyColumn, String column, int limit, ScanParameters scanParameters) {
+		return this.connection.fetchValueFrequencies(table, rowCount, keyColumn, column, limit, scanParameters);
+	}
+
 	/**
 	 * Returns the row count of the specified table.
 	 * 
@@ -118,6 +144,58 @@ public class RichConnection implements Closeable {
 		return returnVal;
 	}
 
+	/**
+	 * Returns the row count of the specified table as estimated from the statistics the database keeps for the query
+	 * optimizer, without reading the table. Depending on how recently the statistics were updated, the estimate may be
+	 * far off.
+	 *
+	 * @param database
+	 * @param tableName
+	 * @return the estimated row count, or -1 if no (positive) estimate is available
+	 */
+	public long getEstimatedTableSize(String database, String tableName) {
+		String sql;
+		// PostgreSQL tables are looked up by name, as to_regclass would fold mixed-case names to lower case
+		if (dbType == DbType.POSTGRESQL)
+			sql = "SELECT c.reltuples::bigint FROM pg_class c INNER JOIN pg_namespace n ON n.oid = c.relnamespace WHERE n.nspname = '" +
+					database.toLowerCase() + "' AND c.relname = '" + tableName + "' AND c.relkind IN ('r', 'p', 'm');";
+		else if (dbType == DbType.ORACLE)
+			sql = "SELECT NUM_ROWS FROM ALL_TABLES WHERE OWNER = '" + database.toUpperCase() + "' AND TABLE_NAME = '" + tableName + "'";
+		else if (dbType == DbType.SQL_SERVER || dbType == DbType.AZURE)
+			sql = "SELECT SUM(row_count) FROM sys.dm_db_partition_stats WHERE object_id = OBJECT_ID('[" + tableName.replaceAll("\\.", "].[") +
+					"]') AND index_id IN (0, 1);";
+		else if (dbType == DbType.MYSQL)
+			sql = "SELECT TABLE_ROWS FROM information_schema.tables WHERE TABLE_SCHEMA = '" + database + "' AND TABLE_NAME = '" + tableName + "';";
+		else
+			return -1;
+
+		return queryEstimate(connection, sql);
+	}
+
+	static long queryEstimate(DBConnection connection, String sql) {
+		QueryResult qr = new QueryResult(sql, connection);
+		try {
+			Iterator<Row> iterator = qr.iterator();
+			if (iterator.hasNext())
+				return parseEstimate(iterator.next().getCells().get(0));
+		} catch (Exception e) {
+			LoggerFactory.getLogger(RichConnection.class).warn("Could not estimate the table size: {}", e.getMessage());
+		} finally {
+			qr.close();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the estimate in the value, or -1 for the values of tables that were never analyzed: empty, 0 or -1
+	 */
+	static long parseEstimate(String value) {
+		if (value == null || value.isEmpty())
+			return -1;
+		double estimate = Double.parseDouble(value);
+		return estimate > 0 ? (long) estimate : -1;
+	}
+
 	/**
 	 * Close the connection to the database.
 	 */
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+/**
+ * Rough indication of the work the database has to do to produce a sample, used for logging and for choosing a
+ * sampling method.
+ */
+public enum SamplingCost {
+    PARTIAL_SCAN("reads only the sampled blocks of the table"),
+    FULL_SCAN("reads all rows of the table once, no sorting"),
+    FULL_SCAN_AND_SORT("reads and sorts all rows of the table");
+
+    private final String description;
+
+    SamplingCost(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
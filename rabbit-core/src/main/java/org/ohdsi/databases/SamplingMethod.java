@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.ohdsi.databases.configuration.DbType;
+
+import java.util.Locale;
+
+/**
+ * The ways in which a sample of the rows of a table can be drawn by the database. Each method generates the query for
+ * the database types that support it, and returns null for the others.
+ *
+ * The methods that sample a fraction of the table compute that fraction from the row count, so they return about
+ * sampleSize rows; the scan stops reading after sampleSize rows. When a seed is given, the methods that support it
+ * draw the same sample every time (as long as the table does not change), see isRepeatable.
+ */
+public enum SamplingMethod {
+
+    /**
+     * The method used by earlier versions of WhiteRabbit: random order for most databases, TABLESAMPLE for SQL Server
+     * and Azure, and SAMPLE for Oracle.
+     */
+    DEFAULT {
+        @Override
+        public String getSampleQuery(DbType dbType, String table, String keyColumn, long rowCount, long sampleSize, long seed) {
+            String query = null;
+            if (dbType == DbType.SQL_SERVER || dbType == DbType.AZURE)
+                query = "SELECT * FROM " + quoteTable(dbType, table) + " TABLESAMPLE (" + sampleSize + " ROWS)";
+            else if (dbType == DbType.MYSQL)
+                query = "SELECT * FROM " + table + " ORDER BY RAND() LIMIT " + sampleSize;
+            else if (dbType == DbType.PDW)
+                query = "SELECT TOP " + sampleSize + " * FROM " + quoteTable(dbType, table) + " ORDER BY RAND()";
+            else if (dbType == DbType.ORACLE) {
+                if (sampleSize < rowCount) {
+                    double percentage = 100 * sampleSize / (double) rowCount;
+                    if (percentage < 100)
+                        query = "SELECT * FROM " + table + " SAMPLE(" + percentage + ")";
+                } else {
+                    query = "SELECT * FROM " + table;
+                }
+            } else if (dbType == DbType.POSTGRESQL || dbType == DbType.REDSHIFT) {
+                query = "SELECT * FROM " + table + " ORDER BY RANDOM() LIMIT " + sampleSize;
+            } else if (dbType == DbType.MS_ACCESS) {
+                query = "SELECT " + "TOP " + sampleSize + " * FROM " + quoteTable(dbType, table);
+            } else if (dbType == DbType.BIGQUERY) {
+                query = "SELECT * FROM " + table + " ORDER BY RAND() LIMIT " + sampleSize;
+            }
+            return query;
+        }
+
+        @Override
+        public SamplingCost getExpectedCost(DbType dbType) {
+            if (dbType == DbType.SQL_SERVER || dbType == DbType.AZURE || dbType == DbType.MS_ACCESS)
+                return SamplingCost.PARTIAL_SCAN;
+            else if (dbType == DbType.ORACLE)
+                return SamplingCost.FULL_SCAN;
+            else
+                return SamplingCost.FULL_SCAN_AND_SORT;
+        }
+    },
+
+    /**
+     * Sorts the whole table in random order and takes the first rows. Gives an exact sample size, but is the most
+     * expensive method. Only MySQL supports a seed.
+     */
+    RANDOM_ORDER {
+        @Override
+        public String getSampleQuery(DbType dbType, String table, String keyColumn, long rowCount, long sampleSize, long seed) {
+            String quotedTable = quoteTable(dbType, table);
+            if (dbType == DbType.POSTGRESQL || dbType == DbType.REDSHIFT || dbType == DbType.SNOWFLAKE)
+                return "SELECT * FROM " + quotedTable + " ORDER BY RANDOM() LIMIT " + sampleSize;
+            else if (dbType == DbType.MYSQL)
+                return "SELECT * FROM " + quotedTable + " ORDER BY RAND(" + (seed == NO_SEED ? "" : seed) + ") LIMIT " + sampleSize;
+            else if (dbType == DbType.BIGQUERY)
+                return "SELECT * FROM " + quotedTable + " ORDER BY RAND() LIMIT " + sampleSize;
+            else if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+                return "SELECT TOP " + sampleSize + " * FROM " + quotedTable + " ORDER BY NEWID()";
+            else if (dbType == DbType.ORACLE)
+                return "SELECT * FROM (SELECT * FROM " + quotedTable + " ORDER BY DBMS_RANDOM.VALUE) WHERE ROWNUM <= " + sampleSize;
+            return null;
+        }
+
+        @Override
+        public SamplingCost getExpectedCost(DbType dbType) {
+            return SamplingCost.FULL_SCAN_AND_SORT;
+        }
+    },
+
+    /**
+     * Includes every row with the same probability (Bernoulli sampling), without sorting the table.
+     */
+    ROWS {
+        @Override
+        public String getSampleQuery(DbType dbType, String table, String keyColumn, long rowCount, long sampleSize, long seed) {
+            String quotedTable = quoteTable(dbType, table);
+            String percentage = formatPercentage(sampleSize, rowCount);
+            String fraction = formatFraction(sampleSize, rowCount);
+            if (dbType == DbType.POSTGRESQL)
+                return "SELECT * FROM " + quotedTable + " TABLESAMPLE BERNOULLI (" + percentage + ")" + seedClause(" REPEATABLE", seed);
+            else if (dbType == DbType.ORACLE)
+                return "SELECT * FROM " + quotedTable + " SAMPLE (" + percentage + ")" + seedClause(" SEED", seed);
+            else if (dbType == DbType.SNOWFLAKE)
+                return "SELECT * FROM " + quotedTable + " SAMPLE BERNOULLI (" + percentage + ")" + seedClause(" SEED", seed);
+            else if (dbType == DbType.REDSHIFT)
+                return "SELECT * FROM " + quotedTable + " WHERE RANDOM() < " + fraction;
+            else if (dbType == DbType.MYSQL)
+                return "SELECT * FROM " + quotedTable + " WHERE RAND(" + (seed == NO_SEED ? "" : seed) + ") < " + fraction;
+            else if (dbType == DbType.BIGQUERY)
+                return "SELECT * FROM " + quotedTable + " WHERE RAND() < " + fraction;
+            else if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+                return "SELECT * FROM " + quotedTable + " WHERE ABS(CHECKSUM(NEWID())) % " + HASH_BUCKETS + " < " + hashThreshold(sampleSize, rowCount);
+            else if (dbType == DbType.TERADATA)
+                return "SELECT * FROM " + quotedTable + " SAMPLE " + fraction;
+            return null;
+        }
+
+        @Override
+        public SamplingCost getExpectedCost(DbType dbType) {
+            return SamplingCost.FULL_SCAN;
+        }
+
+        @Override
+        public boolean isRepeatable(DbType dbType, long seed) {
+            // The seed of RAND() on MySQL only fixes the sequence of random numbers, not which row gets which number
+            return seed != NO_SEED && (dbType == DbType.POSTGRESQL || dbType == DbType.ORACLE || dbType == DbType.SNOWFLAKE);
+        }
+    },
+
+    /**
+     * Includes whole storage blocks (pages) of the table. Much cheaper than sampling rows, as the other blocks are not
+     * read at all, but rows that are stored together are sampled together.
+     */
+    BLOCKS {
+        @Override
+        public String getSampleQuery(DbType dbType, String table, String keyColumn, long rowCount, long sampleSize, long seed) {
+            String quotedTable = quoteTable(dbType, table);
+            String percentage = formatPercentage(sampleSize, rowCount);
+            if (dbType == DbType.POSTGRESQL)
+                return "SELECT * FROM " + quotedTable + " TABLESAMPLE SYSTEM (" + percentage + ")" + seedClause(" REPEATABLE", seed);
+            else if (dbType == DbType.SQL_SERVER || dbType == DbType.AZURE)
+                return "SELECT * FROM " + quotedTable + " TABLESAMPLE SYSTEM (" + percentage + " PERCENT)" + seedClause(" REPEATABLE", seed);
+            else if (dbType == DbType.ORACLE)
+                return "SELECT * FROM " + quotedTable + " SAMPLE BLOCK (" + percentage + ")" + seedClause(" SEED", seed);
+            else if (dbType == DbType.SNOWFLAKE)
+                return "SELECT * FROM " + quotedTable + " SAMPLE SYSTEM (" + percentage + ")" + seedClause(" SEED", seed);
+            else if (dbType == DbType.BIGQUERY)
+                return "SELECT * FROM " + quotedTable + " TABLESAMPLE SYSTEM (" + percentage + " PERCENT)";
+            return null;
+        }
+
+        @Override
+        public SamplingCost getExpectedCost(DbType dbType) {
+            return SamplingCost.PARTIAL_SCAN;
+        }
+
+        @Override
+        public boolean isRepeatable(DbType dbType, long seed) {
+            return seed != NO_SEED && (dbType == DbType.POSTGRESQL || dbType == DbType.SQL_SERVER || dbType == DbType.AZURE
+                    || dbType == DbType.ORACLE || dbType == DbType.SNOWFLAKE);
+        }
+    },
+
+    /**
+     * Includes the rows for which a hash of the key column (the first column of the table) falls below a threshold.
+     * The sample is the same in every run with the same seed, and grows consistently with the sample size.
+     */
+    KEY_HASH {
+        @Override
+        public String getSampleQuery(DbType dbType, String table, String keyColumn, long rowCount, long sampleSize, long seed) {
+            if (keyColumn == null)
+                return null;
+            String quotedTable = quoteTable(dbType, table);
+            String key = quoteColumn(dbType, keyColumn);
+            String salt = Long.toString(seed == NO_SEED ? 0 : seed);
+            String condition = null;
+            if (dbType == DbType.POSTGRESQL)
+                condition = "(hashtext(" + key + "::text || '" + salt + "')::bigint + 2147483648) % " + HASH_BUCKETS;
+            else if (dbType == DbType.REDSHIFT)
+                condition = "STRTOL(SUBSTRING(MD5(" + key + "::varchar || '" + salt + "'), 1, 8), 16) % " + HASH_BUCKETS;
+            else if (dbType == DbType.MYSQL)
+                condition = "CRC32(CONCAT(" + key + ", '" + salt + "')) % " + HASH_BUCKETS;
+            else if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+                condition = "(CAST(CHECKSUM(CONCAT(" + key + ", '" + salt + "')) AS BIGINT) + 2147483648) % " + HASH_BUCKETS;
+            else if (dbType == DbType.ORACLE)
+                condition = "ORA_HASH(" + key + ", " + (HASH_BUCKETS - 1) + ", " + salt + ")";
+            else if (dbType == DbType.SNOWFLAKE)
+                condition = "ABS(MOD(HASH(" + key + ", " + salt + "), " + HASH_BUCKETS + "))";
+            else if (dbType == DbType.BIGQUERY)
+                condition = "ABS(MOD(FARM_FINGERPRINT(CONCAT(CAST(" + key + " AS STRING), '" + salt + "')), " + HASH_BUCKETS + "))";
+            if (condition == null)
+                return null;
+            return "SELECT * FROM " + quotedTable + " WHERE " + condition + " < " + hashThreshold(sampleSize, rowCount);
+        }
+
+        @Override
+        public SamplingCost getExpectedCost(DbType dbType) {
+            return SamplingCost.FULL_SCAN;
+        }
+
+        @Override
+        public boolean isRepeatable(DbType dbType, long seed) {
+            return true;
+        }
+    };
+
+    public static final long NO_SEED = -1;
+
+    private static final long HASH_BUCKETS = 1000000;
+
+    /**
+     * Generates the query for a sample of about sampleSize rows of the table.
+     *
+     * @param dbType type of the database
+     * @param table name of the table, as used in a plain SELECT * FROM query
+     * @param keyColumn name of the column to use as key, can be null
+     * @param rowCount (estimated) number of rows in the table
+     * @param sampleSize number of rows to sample, smaller than rowCount
+     * @param seed seed for repeatable samples, or NO_SEED
+     * @return the query, or null if the method is not available for the database type
+     */
+    public abstract String getSampleQuery(DbType dbType, String table, String keyColumn, long rowCount, long sampleSize, long seed);
+
+    public abstract SamplingCost getExpectedCost(DbType dbType);
+
+    /**
+     * @return true if every query for the sample returns the same rows (as long as the table does not change), so that
+     * several queries over the sample can be combined
+     */
+    public boolean isRepeatable(DbType dbType, long seed) {
+        return false;
+    }
+
+    public static SamplingMethod fromName(String name) {
+        return SamplingMethod.valueOf(name.trim().toUpperCase().replace(" ", "_"));
+    }
+
+    static String quoteTable(DbType dbType, String table) {
+        if (dbType == DbType.MS_ACCESS)
+            return "[" + table + "]";
+        else if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE)
+            return "[" + table.replaceAll("\\.", "].[") + "]";
+        else
+            return table;
+    }
+
+    static String quoteColumn(DbType dbType, String column) {
+        if (dbType == DbType.SQL_SERVER || dbType == DbType.PDW || dbType == DbType.AZURE || dbType == DbType.MS_ACCESS)
+            return "[" + column + "]";
+        else if (dbType == DbType.MYSQL || dbType == DbType.BIGQUERY)
+            return "`" + column + "`";
+        else
+            return "\"" + column + "\"";
+    }
+
+    private static String formatPercentage(long sampleSize, long rowCount) {
+        return String.format(Locale.ROOT, "%.6f", Math.min(100d, 100d * sampleSize / rowCount));
+    }
+
+    private static String formatFraction(long sampleSize, long rowCount) {
+        return String.format(Locale.ROOT, "%.8f", Math.min(1d, sampleSize / (double) rowCount));
+    }
+
+    private static long hashThreshold(long sampleSize, long rowCount) {
+        return (long) Math.ceil(Math.min(1d, sampleSize / (double) rowCount) * HASH_BUCKETS);
+    }
+
+    private static String seedClause(String keyword, long seed) {
+        return seed == NO_SEED ? "" : keyword + " (" + seed + ")";
+    }
+}
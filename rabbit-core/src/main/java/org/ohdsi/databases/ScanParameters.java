@@ -31,8 +31,19 @@ public interface ScanParameters {
 
     public int getSampleSize();
 
+    public int getFetchSize();
+
+    public SamplingMethod getSamplingMethod();
+
+    public long getSamplingSeed();
+
+    public boolean doTrackHeavyHitters();
+
+    public boolean doUseQuantileSketch();
+
     public static int	MAX_VALUES_IN_MEMORY				= 100000;
     public static int	MIN_CELL_COUNT_FOR_CSV				= 1000000;
     public static int	N_FOR_FREE_TEXT_CHECK				= 1000;
     public static int	MIN_AVERAGE_LENGTH_FOR_FREE_TEXT	= 100;
+    public static int	DEFAULT_FETCH_SIZE					= 10000;
 }
@@ -109,6 +109,12 @@ public enum SnowflakeHandler implements StorageHandler {
         return String.format("SELECT COUNT(*) FROM %s;", resolveTableName(tableName));
     }
 
+    @Override
+    public String getTableSizeEstimateQuery(String tableName) {
+        return String.format("SELECT ROW_COUNT FROM %s.INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = '%s' AND TABLE_NAME = '%s'",
+                this.getDatabase().toUpperCase(), this.getSchema().toUpperCase(), tableName.toUpperCase());
+    }
+
     public String getRowSampleQuery(String tableName, long rowCount, long sampleSize) {
         return String.format("SELECT * FROM %s ORDER BY RANDOM() LIMIT %s", resolveTableName(tableName), sampleSize);
     }
@@ -117,6 +123,11 @@ public enum SnowflakeHandler implements StorageHandler {
         return String.format("%s.%s.%s", this.getDatabase(), this.getSchema(), tableName);
     }
 
+    @Override
+    public String getQualifiedTableName(String tableName) {
+        return resolveTableName(tableName);
+    }
+
     @Override
     public ResultSet getFieldsInformation(String tableName) {
         try {
@@ -152,6 +163,17 @@ public enum SnowflakeHandler implements StorageHandler {
         }
     }
 
+    @Override
+    public String getSchemaFieldsInformationQuery() {
+        if (System.getenv(WR_USE_SNOWFLAKE_JDBC_METADATA) != null || System.getProperty(WR_USE_SNOWFLAKE_JDBC_METADATA) != null) {
+            return null;
+        } else {
+            return String.format(
+                    "SELECT table_name, column_name, data_type FROM %s.INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = '%s' ORDER BY table_name, ordinal_position",
+                    this.getDatabase().toUpperCase(), this.getSchema().toUpperCase());
+        }
+    }
+
     public String getTablesQuery(String database) {
         return String.format("SELECT TABLE_NAME FROM %s.INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = '%s'", this.getDatabase().toUpperCase(), this.getSchema().toUpperCase());
     }
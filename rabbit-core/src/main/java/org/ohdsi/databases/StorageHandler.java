@@ -95,6 +95,30 @@ public interface StorageHandler {
         return returnVal;
     }
 
+    /**
+     *
+     * @param tableName name of the table to estimate the size (number of rows) for
+     * @return Implementation specific query that reads the row count of the table from the catalog statistics, or null
+     * if the database does not keep these (default)
+     */
+    default String getTableSizeEstimateQuery(String tableName) {
+        return null;
+    }
+
+    /**
+     * Returns the row count of the specified table as estimated from the catalog statistics.
+     *
+     * @param tableName name of table
+     * @return estimated size of table in rows, or -1 if no estimate is available
+     */
+    default long getEstimatedTableSize(String tableName) {
+        String query = getTableSizeEstimateQuery(tableName);
+        if (query == null) {
+            return -1;
+        }
+        return RichConnection.queryEstimate(getDBConnection(), query);
+    }
+
     /**
      * Executes an SQL use statement (or similar) if the underlying database requires it.
      *
@@ -154,6 +178,18 @@ public interface StorageHandler {
      * @return
      */
     default List<FieldInfo> fetchTableStructure(String table, ScanParameters scanParameters) {
+        return fetchTableStructure(table, getTableSize(table), scanParameters);
+    }
+
+    /**
+     * Fetches the structure of a table as a list of FieldInfo objects, for a table that has already been counted.
+     *
+     * @param table name of the table to fetch the structure for
+     * @param rowCount number of rows in the table
+     * @param scanParameters parameters that are to be used for scanning the table
+     * @return
+     */
+    default List<FieldInfo> fetchTableStructure(String table, long rowCount, ScanParameters scanParameters) {
         List<FieldInfo> fieldInfos = new ArrayList<>();
         String fieldInfoQuery = getFieldsInformationQuery(table);
         if (fieldInfoQuery != null) {
@@ -162,7 +198,7 @@ public interface StorageHandler {
             for (Row row : queryResult) {
                 FieldInfo fieldInfo = new FieldInfo(scanParameters, row.getCells().get(0));
                 fieldInfo.type = row.getCells().get(1);
-                fieldInfo.rowCount = getTableSize(table);
+                fieldInfo.rowCount = rowCount;
                 fieldInfos.add(fieldInfo);
             }
         } else {
@@ -172,7 +208,7 @@ public interface StorageHandler {
                 while (rs.next()) {
                     FieldInfo fieldInfo = new FieldInfo(scanParameters, rs.getString("COLUMN_NAME"));
                     fieldInfo.type = rs.getString("TYPE_NAME");
-                    fieldInfo.rowCount = getTableSize(table);
+                    fieldInfo.rowCount = rowCount;
                     fieldInfos.add(fieldInfo);
                 }
             } catch (
@@ -187,6 +223,19 @@ public interface StorageHandler {
         return null;
     }
 
+    /**
+     * Returns a query for the columns of all tables in the current schema, so that the structure of all tables can be
+     * fetched at once. The query should return the table name, column name and data type, ordered by table and column
+     * position. Table names are matched case-insensitively (in upper case).
+     *
+     * Returns null by default, in which case the structure is fetched per table.
+     *
+     * @return query, or null
+     */
+    default String getSchemaFieldsInformationQuery() {
+        return null;
+    }
+
     /**
      * Retrieves column names (fields) for a table.
      *
@@ -224,6 +273,64 @@ public interface StorageHandler {
      */
     String getRowSampleQuery(String table, long rowCount, long sampleSize);
 
+    /**
+     * Returns the query to obtain a sample of rows from a table with the given sampling method. Falls back to
+     * getRowSampleQuery(table, rowCount, sampleSize) for the default method, and when the method is not available for
+     * the database.
+     *
+     * @param table table to get sample from
+     * @param rowCount known rowcount for the table
+     * @param sampleSize size of the sample
+     * @param samplingMethod sampling method
+     * @param keyColumn key column for the KEY_HASH method, can be null
+     * @param seed seed for repeatable samples, or SamplingMethod.NO_SEED
+     * @return Database specific SQL query
+     */
+    default String getRowSampleQuery(String table, long rowCount, long sampleSize, SamplingMethod samplingMethod, String keyColumn, long seed) {
+        if (samplingMethod != SamplingMethod.DEFAULT && sampleSize != -1 && sampleSize < rowCount) {
+            String query = samplingMethod.getSampleQuery(getDbType(), getQualifiedTableName(table), keyColumn, rowCount, sampleSize, seed);
+            if (query != null) {
+                logger.info("Sampling table {} with method {}: {}", table, samplingMethod, samplingMethod.getExpectedCost(getDbType()).getDescription());
+                return query;
+            }
+            logger.warn("Sampling method {} is not available for {}, using the default method", samplingMethod, getDbType().label());
+        }
+        return getRowSampleQuery(table, rowCount, sampleSize);
+    }
+
+    /**
+     * Returns the query that computes the aggregates of ColumnAggregation for the given columns in a single row.
+     *
+     * @param source the table, or a subquery that samples it, as used after FROM
+     * @param columns names of the columns
+     * @param kinds what to compute for each column
+     * @return SQL query
+     */
+    default String getColumnAggregateQuery(String source, List<String> columns, List<ColumnAggregation.Kind> kinds) {
+        return ColumnAggregation.getAggregateQuery(getDbType(), source, columns, kinds);
+    }
+
+    /**
+     * Returns a query that counts how often each value of a column occurs, with the value and the frequency as the first
+     * two columns, limited to the most frequent values.
+     *
+     * @param source the table, or a subquery that samples it, as used after FROM
+     * @param column name of the column
+     * @param limit maximum number of values to return
+     * @return SQL query
+     */
+    default String getValueFrequencyQuery(String source, String column, int limit) {
+        return ColumnAggregation.getValueFrequencyQuery(getDbType(), source, column, limit);
+    }
+
+    /**
+     * @param table name of a table
+     * @return the name of the table as it should be used in a query, by default the name itself
+     */
+    default String getQualifiedTableName(String table) {
+        return table;
+    }
+
     /**
      * @return the DbSettings object used to initialize the database connection
      */
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.ohdsi.utilities.files.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caches the column definitions of all tables in a schema, so that the structure of the tables can be obtained with a
+ * single catalog query per schema instead of one query per table.
+ *
+ * The schema queries must return the table name, column name and data type as the first three columns, ordered by
+ * table and column position.
+ */
+class TableStructureCache {
+    static Logger logger = LoggerFactory.getLogger(TableStructureCache.class);
+
+    private static final Map<String, List<String[]>> UNAVAILABLE = Collections.emptyMap();
+
+    private final Map<String, Map<String, List<String[]>>> schemaQueryToTables = new HashMap<>();
+
+    /**
+     * Returns the columns of a table as {name, type} pairs, running the schema query if that has not been done before.
+     *
+     * @param connection connection to run the schema query on
+     * @param schemaQuery query for the columns of all tables in the schema of the table
+     * @param table name of the table
+     * @param normalizer applied to the table names in the query result and to the requested table before matching
+     * @return the columns of the table, or null if the table was not found, in which case the caller should fall back
+     * to querying the table by itself
+     */
+    List<String[]> getColumns(DBConnection connection, String schemaQuery, String table, UnaryOperator<String> normalizer) {
+        Map<String, List<String[]>> tables = schemaQueryToTables.computeIfAbsent(schemaQuery,
+                query -> fetchSchema(connection, query, normalizer));
+        return tables.get(normalizer.apply(table));
+    }
+
+    private Map<String, List<String[]>> fetchSchema(DBConnection connection, String schemaQuery, UnaryOperator<String> normalizer) {
+        Map<String, List<String[]>> tables = new LinkedHashMap<>();
+        QueryResult queryResult = connection.query(schemaQuery);
+        try {
+            for (Row row : queryResult) {
+                List<String> cells = row.getCells();
+                tables.computeIfAbsent(normalizer.apply(cells.get(0)), t -> new ArrayList<>())
+                        .add(new String[]{cells.get(1), cells.get(2)});
+            }
+        } catch (Exception e) {
+            logger.warn("Could not prefetch the table structures, falling back to one query per table: {}", e.getMessage());
+            return UNAVAILABLE;
+        } finally {
+            queryResult.close();
+        }
+        logger.info("Prefetched the structure of {} tables", tables.size());
+        return tables;
+    }
+}
@@ -37,7 +37,7 @@ import java.util.concurrent.ThreadLocalRandom;
  * are computed exactly. Otherwise they are an estimate. The minimum, maximum and average are always
  * calculated exactly.
  */
-public class UniformSamplingReservoir {
+public class UniformSamplingReservoir implements NumericStatsSampler {
     static Logger logger = LoggerFactory.getLogger(UniformSamplingReservoir.class);
 
     private double[] samples;
@@ -82,6 +82,111 @@ public class UniformSamplingReservoir {
         populationCount++;
     }
 
+    /**
+     * Add a value that occurs count times. The result has the same distribution as calling add(value) count times,
+     * but takes at most O(maxSize log maxSize) instead of O(count) time.
+     */
+    public void add(double value, long count) {
+        while (count > 0 && (currentSampleLength < maxSize || count == 1)) {
+            add(value);
+            count--;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        // The reservoir is a uniform sample of the population so far. Of a uniform sample of the population including
+        // the new copies, the number of copies follows a hypergeometric distribution, and the others are a uniform
+        // sample of the current reservoir.
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long remainingPopulation = populationCount + count;
+        long remainingCopies = count;
+        int nCopies = 0;
+        for (int i = 0; i < maxSize; i++) {
+            if (random.nextDouble() * remainingPopulation < remainingCopies) {
+                nCopies++;
+                remainingCopies--;
+            }
+            remainingPopulation--;
+        }
+        for (int i = 0; i < nCopies; i++) {
+            // move a random remaining sample to the end, where it is overwritten
+            int keep = maxSize - i;
+            int removeIndex = random.nextInt(keep);
+            double removed = samples[removeIndex];
+            samples[removeIndex] = samples[keep - 1];
+            samples[keep - 1] = removed;
+        }
+        Arrays.fill(samples, maxSize - nCopies, maxSize, value);
+        Arrays.sort(samples, 0, maxSize);
+
+        populationSum = populationSum.add(new BigDecimal(value).multiply(BigDecimal.valueOf(count)));
+        populationMinimum = Math.min(value, populationMinimum);
+        populationMaximum = Math.max(value, populationMaximum);
+        populationCount += count;
+    }
+
+    /**
+     * Merge the other reservoir into this one. The result is a uniform sample of the combined populations, of at most
+     * the maximum size of this reservoir.
+     */
+    public void merge(NumericStatsSampler other) {
+        if (!(other instanceof UniformSamplingReservoir)) {
+            throw new IllegalArgumentException("Cannot merge " + other.getClass().getSimpleName() + " into a UniformSamplingReservoir");
+        }
+        UniformSamplingReservoir that = (UniformSamplingReservoir) other;
+        if (that.populationCount == 0) {
+            return;
+        }
+        double[] merged;
+        if (currentSampleLength + that.currentSampleLength <= maxSize
+                && currentSampleLength == populationCount && that.currentSampleLength == that.populationCount) {
+            // Both reservoirs hold their whole population
+            merged = new double[currentSampleLength + that.currentSampleLength];
+            System.arraycopy(samples, 0, merged, 0, currentSampleLength);
+            System.arraycopy(that.samples, 0, merged, currentSampleLength, that.currentSampleLength);
+        } else {
+            // Of a uniform sample of the combined population, the number taken from this population follows a
+            // hypergeometric distribution. Both reservoirs are uniform samples, so any subset of them is as well.
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int size = (int) Math.min(maxSize, populationCount + that.populationCount);
+            long remainingPopulation = populationCount + that.populationCount;
+            long remainingThis = populationCount;
+            int nThis = 0;
+            for (int i = 0; i < size; i++) {
+                if (random.nextDouble() * remainingPopulation < remainingThis) {
+                    nThis++;
+                    remainingThis--;
+                }
+                remainingPopulation--;
+            }
+            nThis = Math.min(nThis, currentSampleLength);
+            int nThat = Math.min(size - nThis, that.currentSampleLength);
+            merged = new double[nThis + nThat];
+            System.arraycopy(randomSubset(samples, currentSampleLength, nThis, random), 0, merged, 0, nThis);
+            System.arraycopy(randomSubset(that.samples, that.currentSampleLength, nThat, random), 0, merged, nThis, nThat);
+        }
+        Arrays.sort(merged);
+        samples = Arrays.copyOf(merged, maxSize);
+        currentSampleLength = merged.length;
+
+        populationSum = populationSum.add(that.populationSum);
+        populationMinimum = Math.min(populationMinimum, that.populationMinimum);
+        populationMaximum = Math.max(populationMaximum, that.populationMaximum);
+        populationCount += that.populationCount;
+    }
+
+    private static double[] randomSubset(double[] values, int length, int n, ThreadLocalRandom random) {
+        double[] copy = Arrays.copyOf(values, length);
+        for (int i = 0; i < n; i++) {
+            int swap = i + random.nextInt(length - i);
+            double value = copy[swap];
+            copy[swap] = copy[i];
+            copy[i] = value;
+        }
+        return Arrays.copyOf(copy, n);
+    }
+
     private void removeAndAdd(int removeIndex, double value) {
         int addIndex = Arrays.binarySearch(samples, 0, currentSampleLength, value);
         if (addIndex < 0) {
@@ -117,36 +222,68 @@ public class UniformSamplingReservoir {
      */
     public List<Double> getSampleQuartiles() {
         List<Double> quartiles = new ArrayList<>(3);
+        for (int i = 1; i <= 3; i++) {
+            quartiles.add(getQuantile(i * 0.25d)); // 25 percentile steps
+        }
+        return quartiles;
+    }
 
+    /**
+     * Get a percentile of the underlying distribution, interpolating between the samples. If the number of samples
+     * is larger than the maximum size of the reservoir, this will be an estimate.
+     */
+    public double getQuantile(double rank) {
         switch (currentSampleLength) {
             case 0:
-                quartiles.add(Double.NaN);
-                quartiles.add(Double.NaN);
-                quartiles.add(Double.NaN);
-                break;
+                return Double.NaN;
             case 1:
-                quartiles.add(samples[0]);
-                quartiles.add(samples[0]);
-                quartiles.add(samples[0]);
-                break;
+                return samples[0];
             default:
-                for (int i = 1; i <= 3; i++) {
-                    double pos = i * (currentSampleLength + 1) * 0.25d; // 25 percentile steps
-                    int intPos = (int) pos;
-                    if (intPos == 0) {
-                        quartiles.add(samples[0]);
-                    } else if (intPos == currentSampleLength) {
-                        quartiles.add(samples[currentSampleLength - 1]);
-                    } else {
-                        double diff = pos - intPos;
-                        double base = samples[intPos - 1];
-                        quartiles.add(base + diff * (samples[intPos] - base));
-                    }
+                double pos = rank * (currentSampleLength + 1);
+                int intPos = (int) pos;
+                if (intPos <= 0) {
+                    return samples[0];
+                } else if (intPos >= currentSampleLength) {
+                    return samples[currentSampleLength - 1];
+                } else {
+                    double diff = pos - intPos;
+                    double base = samples[intPos - 1];
+                    return base + diff * (samples[intPos] - base);
                 }
-                break;
         }
+    }
 
-        return quartiles;
+    /**
+     * Get the estimated number of values per bucket, scaling the number of samples in each bucket up to the size of
+     * the population.
+     */
+    public long[] getHistogram(double[] splitPoints) {
+        long[] histogram = new long[splitPoints.length + 1];
+        if (currentSampleLength == 0) {
+            return histogram;
+        }
+        double scale = populationCount / (double) currentSampleLength;
+        int start = 0;
+        for (int i = 0; i <= splitPoints.length; i++) {
+            int end = i < splitPoints.length ? lowerBound(splitPoints[i]) : currentSampleLength;
+            histogram[i] = Math.round(Math.max(0, end - start) * scale);
+            start = Math.max(start, end);
+        }
+        return histogram;
+    }
+
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = currentSampleLength;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (samples[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
     public double getSampleMean() {
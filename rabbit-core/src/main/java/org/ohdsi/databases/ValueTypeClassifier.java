@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Decides in a single pass over the characters of a value whether it is an integer, a number and/or a date, without
+ * throwing exceptions for values that are not. The results are the same as those of StringUtilities.isLong(),
+ * isNumber() and isDate(), which parse the value and catch the exception if that fails.
+ *
+ * <p>The parsed values are kept, so that the numeric statistics do not have to parse the value again: the long value
+ * of an integer, and the epoch day of a date as DateUtilities.parseDate() would return it. The double value is only
+ * parsed when it is requested and the value is not an integer.
+ *
+ * <p>An instance holds the result for the last classified value, so it must not be shared between threads.
+ */
+final class ValueTypeClassifier {
+    private static final int INVALID = Integer.MIN_VALUE;
+
+    private String value;
+    private boolean isLong;
+    private boolean isNumber;
+    private boolean isDate;
+    private long longValue;
+    private double doubleValue;
+    private boolean hasDoubleValue;
+    private long epochDay;
+
+    /**
+     * Classifies a value. Only the types that are asked for are checked; the others are reported as false.
+     * @param value a value without leading or trailing whitespace
+     */
+    void classify(String value, boolean checkLong, boolean checkNumber, boolean checkDate) {
+        this.value = value;
+        hasDoubleValue = false;
+        isLong = checkLong && parseLong(value);
+        isNumber = checkNumber && isJavaDouble(value);
+        isDate = checkDate && parseDate(value);
+    }
+
+    /**
+     * Sets the result for an integer of which the type is already known, for instance from the schema of a file.
+     */
+    void setLong(long value) {
+        this.value = null;
+        hasDoubleValue = false;
+        isLong = true;
+        isNumber = true;
+        isDate = false;
+        longValue = value;
+    }
+
+    /**
+     * Sets the result for a floating point number of which the type is already known.
+     */
+    void setDouble(double value) {
+        this.value = null;
+        hasDoubleValue = true;
+        isLong = false;
+        isNumber = true;
+        isDate = false;
+        doubleValue = value;
+    }
+
+    /**
+     * Sets the result for a date of which the type is already known.
+     */
+    void setDate(long epochDay) {
+        this.value = null;
+        hasDoubleValue = false;
+        isLong = false;
+        isNumber = false;
+        isDate = true;
+        this.epochDay = epochDay;
+    }
+
+    boolean isLong() {
+        return isLong;
+    }
+
+    boolean isNumber() {
+        return isNumber;
+    }
+
+    boolean isDate() {
+        return isDate;
+    }
+
+    long getLongValue() {
+        return longValue;
+    }
+
+    /**
+     * Returns the value as a double. Only valid if the value is a number.
+     */
+    double getDoubleValue() {
+        if (isLong) {
+            // Double.parseDouble("-0") is -0.0
+            return longValue == 0 && value != null && value.charAt(0) == '-' ? -0d : (double) longValue;
+        }
+        return hasDoubleValue ? doubleValue : Double.parseDouble(value);
+    }
+
+    long getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Same as Long.parseLong(), which also accepts non-ASCII digits, but without throwing an exception.
+     */
+    private boolean parseLong(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        int i = 0;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            if (length == 1) {
+                return false;
+            }
+            if (first == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            }
+            i++;
+        }
+        // Accumulate negatively, as Long.parseLong does, so Long.MIN_VALUE can be represented
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(value.charAt(i), 10);
+            if (digit < 0 || result < multiplicationLimit) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        longValue = negative ? result : -result;
+        return true;
+    }
+
+    /**
+     * Checks whether Double.parseDouble() would accept the value: an optional sign followed by NaN, Infinity, or
+     * decimal digits with an optional fraction, exponent and float/double suffix. Hexadecimal floating point values
+     * are rare enough to leave to Double.parseDouble() itself.
+     */
+    private static boolean isJavaDouble(String value) {
+        int length = value.length();
+        int i = 0;
+        if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        char c = value.charAt(i);
+        if (c == 'N') {
+            return length - i == 3 && value.startsWith("NaN", i);
+        }
+        if (c == 'I') {
+            return length - i == 8 && value.startsWith("Infinity", i);
+        }
+        if (c == '0' && i + 1 < length && (value.charAt(i + 1) == 'x' || value.charAt(i + 1) == 'X')) {
+            return isHexDouble(value);
+        }
+        int digits = 0;
+        while (i < length && isAsciiDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            i++;
+            while (i < length && isAsciiDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isAsciiDigit(value.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (i < length) {
+            c = value.charAt(i);
+            if (c == 'f' || c == 'F' || c == 'd' || c == 'D') {
+                i++;
+            }
+        }
+        return i == length;
+    }
+
+    private static boolean isHexDouble(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Same checks as StringUtilities.isDate(): yyyy*MM*dd with a year from 1700 to 2200, or MM*dd*yy.
+     */
+    private boolean parseDate(String value) {
+        int year;
+        int month;
+        int day;
+        if (value.length() == 10) {
+            if (!(value.charAt(4) == '-' || value.charAt(4) == '/' || value.charAt(4) == value.charAt(7))) {
+                return false;
+            }
+            year = parseInt(value, 0, 4);
+            if (year == INVALID || year < 1700 || year > 2200) {
+                return false;
+            }
+            month = parseInt(value, 5, 7);
+            day = parseInt(value, 8, 10);
+        } else if (value.length() == 8) {
+            if (!(value.charAt(2) == '-' || value.charAt(5) == '/' || value.charAt(2) == value.charAt(5))) {
+                return false;
+            }
+            year = parseInt(value, 6, 8);
+            if (year == INVALID) {
+                return false;
+            }
+            // Two-digit years are in 2000-2099, as with the yy pattern of DateTimeFormatter
+            year += 2000;
+            month = parseInt(value, 0, 2);
+            day = parseInt(value, 3, 5);
+        } else {
+            return false;
+        }
+        if (month == INVALID || month < 1 || month > 12 || day == INVALID || day < 1 || day > 31) {
+            return false;
+        }
+        // Like the default (smart) resolver of DateTimeFormatter, use the last day of the month for days beyond it
+        int lastDay = Month.of(month).length(Year.isLeap(year));
+        epochDay = LocalDate.of(year, month, Math.min(day, lastDay)).toEpochDay();
+        return true;
+    }
+
+    /**
+     * Same as Integer.parseInt(value.substring(from, to)) for short substrings, returning INVALID instead of throwing
+     * an exception.
+     */
+    private static int parseInt(String value, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        char first = value.charAt(i);
+        if (first == '-' || first == '+') {
+            if (to - from == 1) {
+                return INVALID;
+            }
+            negative = first == '-';
+            i++;
+        }
+        int result = 0;
+        for (; i < to; i++) {
+            int digit = Character.digit(value.charAt(i), 10);
+            if (digit < 0) {
+                return INVALID;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+}
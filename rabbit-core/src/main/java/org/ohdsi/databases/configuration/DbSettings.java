@@ -25,7 +25,7 @@ import org.ohdsi.databases.configuration.DbType;
 
 public class DbSettings {
     public enum SourceType {
-        DATABASE, CSV_FILES, SAS_FILES
+        DATABASE, CSV_FILES, SAS_FILES, AVRO_FILES, PARQUET_FILES
     }
 
     public SourceType sourceType;
@@ -43,7 +43,9 @@ public enum DbType {
 	BIGQUERY("BigQuery", "com.simba.googlebigquery.jdbc42.Driver", null, false),	// license does not allow inclusion with the distribution
 	AZURE("Azure", "com.microsoft.sqlserver.jdbc.SQLServerDriver"),
 	SNOWFLAKE("Snowflake", "net.snowflake.client.jdbc.SnowflakeDriver", SnowflakeHandler.INSTANCE),
-	SAS7BDAT("Sas7bdat", null);
+	SAS7BDAT("Sas7bdat", null),
+	AVRO("Avro", null),
+	PARQUET("Parquet", null);
 
 	private final String label;
 	private final String driverName;
@@ -102,7 +104,7 @@ public enum DbType {
 	 * @return Array of labels for the supported database, intended for use in a selector (like a Swing JComboBox)
 	 */
 	public static String[] pickList() {
-		return Stream.of(DELIMITED_TEXT_FILES, SAS7BDAT, MYSQL, ORACLE, SQL_SERVER, POSTGRESQL, MS_ACCESS, PDW, REDSHIFT, TERADATA, BIGQUERY, AZURE, SNOWFLAKE)
+		return Stream.of(DELIMITED_TEXT_FILES, SAS7BDAT, AVRO, PARQUET, MYSQL, ORACLE, SQL_SERVER, POSTGRESQL, MS_ACCESS, PDW, REDSHIFT, TERADATA, BIGQUERY, AZURE, SNOWFLAKE)
 				.map(DbType::label).toArray(String[]::new);
 	}
 
@@ -29,6 +29,7 @@ import org.apache.commons.io.input.BOMInputStream;
 import org.ohdsi.utilities.ScanFieldName;
 import org.ohdsi.utilities.ScanSheetName;
 import org.ohdsi.utilities.files.QuickAndDirtyXlsxReader;
+import org.ohdsi.utilities.files.ReadScanProfile;
 import org.ohdsi.utilities.files.QuickAndDirtyXlsxReader.Sheet;
 
 public class Database implements Serializable {
@@ -143,51 +144,78 @@ public class Database implements Serializable {
 
 	public static Database generateModelFromScanReport(String filename) {
 		Database database = new Database();
-		QuickAndDirtyXlsxReader workbook = new QuickAndDirtyXlsxReader(filename);
-
-		// Create table lookup from tables overview, if it exists
-		Map<String, Table> nameToTable = createTablesFromTableOverview(workbook, database);
-
-		// Field overview is the first sheet
-		Sheet overviewSheet = workbook.getByName(ScanSheetName.FIELD_OVERVIEW);
-		if (overviewSheet == null) {
-			overviewSheet = workbook.get(0);
+		// The scan report is either an xlsx file or a scan profile, which has the same sheets
+		QuickAndDirtyXlsxReader workbook;
+		if (ReadScanProfile.isScanProfile(filename)) {
+			try {
+				workbook = ReadScanProfile.read(filename);
+			} catch (IOException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		} else {
+			workbook = new QuickAndDirtyXlsxReader(filename);
 		}
-		Iterator<QuickAndDirtyXlsxReader.Row> overviewRows = overviewSheet.iterator();
-
-		overviewRows.next();  // Skip header
-		while (overviewRows.hasNext()) {
-			QuickAndDirtyXlsxReader.Row row = overviewRows.next();
-			String tableName = row.getStringByHeaderName(ScanFieldName.TABLE);
-			if (tableName.length() != 0) {
-				// Get table created from table overview or created before
-				Table table = nameToTable.get(tableName);
 
-				// If not exists, create table from field overview sheet
-				if (table == null) {
-					table = createTable(
-							tableName,
-							"",
-							row.getIntByHeaderName(ScanFieldName.N_ROWS),
-							row.getIntByHeaderName(ScanFieldName.N_ROWS_CHECKED)
-					);
-					nameToTable.put(tableName, table);
-					database.tables.add(table);
-				}
+		try {
+			// Create table lookup from tables overview, if it exists
+			Map<String, Table> nameToTable = createTablesFromTableOverview(workbook, database);
+			// Fields per table, with their names as in the value sheet of the table
+			Map<String, List<String>> tableNameToFieldNames = new LinkedHashMap<>();
+			Map<String, List<Field>> tableNameToFields = new HashMap<>();
+
+			// Field overview is the first sheet
+			Sheet overviewSheet = workbook.getByName(ScanSheetName.FIELD_OVERVIEW);
+			if (overviewSheet == null) {
+				overviewSheet = workbook.get(0);
+			}
+			Iterator<QuickAndDirtyXlsxReader.Row> overviewRows = overviewSheet.iterator();
+
+			overviewRows.next();  // Skip header
+			while (overviewRows.hasNext()) {
+				QuickAndDirtyXlsxReader.Row row = overviewRows.next();
+				String tableName = row.getStringByHeaderName(ScanFieldName.TABLE);
+				if (tableName.length() != 0) {
+					// Get table created from table overview or created before
+					Table table = nameToTable.get(tableName);
+
+					// If not exists, create table from field overview sheet
+					if (table == null) {
+						table = createTable(
+								tableName,
+								"",
+								row.getIntByHeaderName(ScanFieldName.N_ROWS),
+								row.getIntByHeaderName(ScanFieldName.N_ROWS_CHECKED)
+						);
+						nameToTable.put(tableName, table);
+						database.tables.add(table);
+					}
 
-				String fieldName = row.getStringByHeaderName(ScanFieldName.FIELD);
-				Field field = new Field(fieldName.toLowerCase(), table);
+					String fieldName = row.getStringByHeaderName(ScanFieldName.FIELD);
+					Field field = new Field(fieldName.toLowerCase(), table);
 
-				field.setType(row.getByHeaderName(ScanFieldName.TYPE));
-				field.setMaxLength(row.getIntByHeaderName(ScanFieldName.MAX_LENGTH));
-				field.setDescription(row.getStringByHeaderName(ScanFieldName.DESCRIPTION));
-				field.setFractionEmpty(row.getDoubleByHeaderName(ScanFieldName.FRACTION_EMPTY));
-				field.setUniqueCount(row.getIntByHeaderName(ScanFieldName.UNIQUE_COUNT));
-				field.setFractionUnique(row.getDoubleByHeaderName(ScanFieldName.FRACTION_UNIQUE));
-				field.setValueCounts(getValueCounts(workbook, tableName, fieldName));
+					field.setType(row.getByHeaderName(ScanFieldName.TYPE));
+					field.setMaxLength(row.getIntByHeaderName(ScanFieldName.MAX_LENGTH));
+					field.setDescription(row.getStringByHeaderName(ScanFieldName.DESCRIPTION));
+					field.setFractionEmpty(row.getDoubleByHeaderName(ScanFieldName.FRACTION_EMPTY));
+					field.setUniqueCount(row.getIntByHeaderName(ScanFieldName.UNIQUE_COUNT));
+					field.setFractionUnique(row.getDoubleByHeaderName(ScanFieldName.FRACTION_UNIQUE));
 
-				table.getFields().add(field);
+					table.getFields().add(field);
+					tableNameToFieldNames.computeIfAbsent(tableName, k -> new ArrayList<>()).add(fieldName);
+					tableNameToFields.computeIfAbsent(tableName, k -> new ArrayList<>()).add(field);
+				}
 			}
+
+			// Each value sheet is read once for all fields of its table, and the sheets are read in parallel
+			tableNameToFieldNames.keySet().parallelStream().forEach(tableName -> {
+				List<ValueCounts> valueCounts = getValueCounts(workbook, tableName, tableNameToFieldNames.get(tableName));
+				List<Field> fields = tableNameToFields.get(tableName);
+				for (int i = 0; i < fields.size(); i++) {
+					fields.get(i).setValueCounts(valueCounts.get(i));
+				}
+			});
+		} finally {
+			workbook.close();
 		}
 		// database.defaultOrdering = new ArrayList<Table>(database.tables);
 		return database;
@@ -230,46 +258,71 @@ public class Database implements Serializable {
 		return nameToTable;
 	}
 
-	private static ValueCounts getValueCounts(QuickAndDirtyXlsxReader workbook, String tableName, String fieldName) {
+	/**
+	 * Reads the value counts of the given fields from the value sheet of the table, in a single pass over the sheet
+	 * @return the value counts of each field, in the same order as fieldNames
+	 */
+	private static List<ValueCounts> getValueCounts(QuickAndDirtyXlsxReader workbook, String tableName, List<String> fieldNames) {
+		List<ValueCounts> result = new ArrayList<>(fieldNames.size());
+		for (int i = 0; i < fieldNames.size(); i++) {
+			result.add(new ValueCounts());
+		}
+
 		String targetSheetName = Table.createSheetNameFromTableName(tableName);
 		Sheet tableSheet = workbook.getByName(targetSheetName);
 
 		// Sheet not found for table, return empty
 		if (tableSheet == null) {
-			return new ValueCounts();
+			return result;
 		}
 
 		Iterator<org.ohdsi.utilities.files.QuickAndDirtyXlsxReader.Row> iterator = tableSheet.iterator();
+		if (!iterator.hasNext()) {
+			return result;
+		}
 		org.ohdsi.utilities.files.QuickAndDirtyXlsxReader.Row header = iterator.next();
-		int index = header.indexOf(fieldName);
-
-		ValueCounts valueCounts = new ValueCounts();
-		if (index != -1) // Could happen when people manually delete columns
-			while (iterator.hasNext()) {
-				org.ohdsi.utilities.files.QuickAndDirtyXlsxReader.Row row = iterator.next();
-				if (row.size() > index) {
-					String value = row.get(index);
-					String count;
-
-					if (row.size() > index + 1) {
-						count = row.get(index + 1);
-					} else {
-						count = "";
-					}
+		int[] indexes = new int[fieldNames.size()];
+		boolean[] done = new boolean[fieldNames.size()];
+		int nDone = 0;
+		for (int i = 0; i < fieldNames.size(); i++) {
+			indexes[i] = header.indexOf(fieldNames.get(i));
+			if (indexes[i] == -1) { // Could happen when people manually delete columns
+				done[i] = true;
+				nDone++;
+			}
+		}
 
-					if (value.equals("") && count.equals("")) {
-						break;
-					}
+		while (nDone < fieldNames.size() && iterator.hasNext()) {
+			org.ohdsi.utilities.files.QuickAndDirtyXlsxReader.Row row = iterator.next();
+			for (int i = 0; i < fieldNames.size(); i++) {
+				int index = indexes[i];
+				if (done[i] || row.size() <= index) {
+					continue;
+				}
+				String value = row.get(index);
+				String count;
 
-					// If the count is not a number, ignore this row
-					try {
-						valueCounts.add(value, (int) Double.parseDouble(count));
-					} catch (NumberFormatException e) {
-						// Skip if count could not be parsed. In most cases this is for empty count at 'List Truncated...'
-					}
+				if (row.size() > index + 1) {
+					count = row.get(index + 1);
+				} else {
+					count = "";
+				}
+
+				if (value.equals("") && count.equals("")) {
+					done[i] = true;
+					nDone++;
+					continue;
+				}
+
+				// If the count is not a number, ignore this row
+				try {
+					result.get(i).add(value, (int) Double.parseDouble(count));
+				} catch (NumberFormatException e) {
+					// Skip if count could not be parsed. In most cases this is for empty count at 'List Truncated...'
 				}
 			}
-		return valueCounts;
+		}
+		return result;
 	}
 
 }
@@ -19,8 +19,13 @@ package org.ohdsi.utilities;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DateUtilities {
+    // DateTimeFormatter is immutable and thread safe, so one per pattern is enough
+    private static final Map<String, DateTimeFormatter> formatters = new ConcurrentHashMap<>();
+
     /**
      * Parses a date to millis. Copies behaviour of StringUtilities.isDate()
      * Two recognised date formats:
@@ -40,7 +45,7 @@ public class DateUtilities {
             pattern = "MM" + separator + "dd" + separator + "yy";
         }
 
-        LocalDate localDate = LocalDate.from(DateTimeFormatter.ofPattern(pattern).parse(dateString));
+        LocalDate localDate = LocalDate.from(formatters.computeIfAbsent(pattern, DateTimeFormatter::ofPattern).parse(dateString));
         return localDate.toEpochDay();
     }
 }
@@ -25,9 +25,11 @@ public interface ScanFieldName {
     String MAX_LENGTH = "Max length";
     String N_ROWS = "N rows";
     String N_ROWS_CHECKED = "N rows checked";
+    String N_ROWS_IS_ESTIMATE = "N rows is estimate";
     String FRACTION_EMPTY = "Fraction empty";
     String UNIQUE_COUNT = "N unique values";
     String FRACTION_UNIQUE = "Fraction unique";
+    String UNIQUE_COUNT_ERROR = "N unique values error";
     String AVERAGE = "Average";
     String STDEV = "Standard Deviation";
     String MIN = "Min";
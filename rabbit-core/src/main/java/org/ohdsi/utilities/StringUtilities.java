@@ -306,22 +306,9 @@ public class StringUtilities {
 	// Author: Martijn
 	public static List<String> mapToWords(String string) {
 		List<String> result = new ArrayList<String>();
-		
-		int start = 0;
-		int i = 0;
-		for (; i < string.length(); i++) {
-			char ch = string.charAt(i);
-			if (!Character.isLetterOrDigit(ch)
-					&& !(ch == '\'' && i > 0 && Character.isLetter(string.charAt(i - 1)) && string.length() - 1 > i && string.charAt(i + 1) == 's' && (string
-							.length() - 2 == i || !Character.isLetterOrDigit(string.charAt(i + 2))))) { // leaves ' in possesive pattern
-				if (start != i) {
-					result.add(string.substring(start, i));
-				}
-				start = i + 1;
-			}
-		}
-		if (start != i) {
-			result.add(string.substring(start, i));
+		WordTokenizer tokenizer = new WordTokenizer().reset(string, false);
+		while (tokenizer.next()) {
+			result.add(string.substring(tokenizer.start(), tokenizer.end()));
 		}
 		return result;
 	}
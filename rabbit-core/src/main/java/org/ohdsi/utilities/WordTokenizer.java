@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities;
+
+/**
+ * Splits a string into words, reporting each word as a span of the string instead of creating a substring. Words are
+ * runs of letters and digits; an apostrophe is kept in the possessive pattern (e.g. "patient's"). This is the rule of
+ * StringUtilities.mapToWords().
+ *
+ * <p>Usage: {@code tokenizer.reset(text, false); while (tokenizer.next()) { use tokenizer.start() and
+ * tokenizer.end() }}. A tokenizer can be reused for many strings, but must not be shared between threads.
+ */
+public class WordTokenizer {
+    private String text = "";
+    private boolean lowerCase;
+    private int position;
+    private int start;
+    private int end;
+
+    /**
+     * Starts tokenizing a new string.
+     * @param lowerCase if true, split the string as StringUtilities.mapToWords() would split its lowercase version
+     */
+    public WordTokenizer reset(String text, boolean lowerCase) {
+        this.text = text;
+        this.lowerCase = lowerCase;
+        this.position = 0;
+        return this;
+    }
+
+    /**
+     * Moves to the next word.
+     * @return false if there are no more words
+     */
+    public boolean next() {
+        int length = text.length();
+        while (position < length) {
+            int wordStart = position;
+            int i = position;
+            while (i < length && !isSeparator(i)) {
+                i++;
+            }
+            position = i + 1;
+            if (i > wordStart) {
+                start = wordStart;
+                end = i;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Start index of the current word in the string. */
+    public int start() {
+        return start;
+    }
+
+    /** End index (exclusive) of the current word in the string. */
+    public int end() {
+        return end;
+    }
+
+    /** The current word, lowercased character by character. */
+    public String lowerCaseWord() {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = Character.toLowerCase(text.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private boolean isSeparator(int i) {
+        char ch = text.charAt(i);
+        if (Character.isLetterOrDigit(ch)) {
+            return false;
+        }
+        // leaves ' in possessive pattern
+        int length = text.length();
+        return !(ch == '\'' && i > 0 && Character.isLetter(text.charAt(i - 1)) && length - 1 > i && isLetterS(text.charAt(i + 1))
+                && (length - 2 == i || !Character.isLetterOrDigit(text.charAt(i + 2))));
+    }
+
+    private boolean isLetterS(char ch) {
+        return ch == 's' || (lowerCase && Character.toLowerCase(ch) == 's');
+    }
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.collections;
+
+/**
+ * Estimates the number of distinct strings in fixed memory, following HyperLogLog++ (Heule et al., HyperLogLog in
+ * practice, 2013): a 64-bit hash, so no correction for hash collisions is needed at large cardinalities, and a sparse
+ * phase in which the distinct hashes themselves are kept, so small cardinalities are counted exactly. Once the
+ * sparse set would take more memory than the registers, it is converted to 2^precision one-byte registers. The
+ * empirical bias correction tables of HyperLogLog++ are not used; instead, linear counting is used for cardinalities
+ * up to 2.5 times the number of registers, as in the original HyperLogLog.
+ *
+ * Sketches with the same precision can be merged, e.g. to combine the sketches of partitions of a table.
+ *
+ * Instances are not thread safe.
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final int registerCount;
+    private final int sparseLimit;
+    private byte[] registers;
+    private long[] sparseHashes;
+    private int sparseSize = 0;
+
+    /**
+     * Creates a sketch with 2^12 registers, taking at most 4 KB and having a relative standard error of 1.6%.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision the number of bits of the hash used to select a register, from 4 to 18. The sketch takes at
+     *                  most 2^precision bytes and has a relative standard error of 1.04 / sqrt(2^precision).
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        // Keep the sparse table, at a load factor of at most 0.75, within the size of the registers
+        this.sparseLimit = registerCount / 8 * 3 / 4;
+        this.sparseHashes = new long[16];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    /**
+     * Returns the estimated number of distinct values added.
+     */
+    public long estimate() {
+        if (registers == null) {
+            return sparseSize;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha() * registerCount * (double) registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // Linear counting
+            estimate = registerCount * Math.log(registerCount / (double) zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns the relative standard error of the estimate, or 0 while the values are still counted exactly.
+     */
+    public double getRelativeError() {
+        return registers == null ? 0 : 1.04 / Math.sqrt(registerCount);
+    }
+
+    /**
+     * Adds the values counted by the other sketch to this sketch.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with precision " + precision + " and " + other.precision);
+        }
+        if (other.registers == null) {
+            for (long hash : other.sparseHashes) {
+                if (hash != 0) {
+                    addHash(hash);
+                }
+            }
+        } else {
+            toDense();
+            for (int i = 0; i < registerCount; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes of heap used by the sketch, leaving out the object headers.
+     */
+    public long getMemoryFootprint() {
+        return registers == null ? 8L * sparseHashes.length : registers.length;
+    }
+
+    private void addHash(long hash) {
+        if (registers != null) {
+            addToRegisters(hash);
+            return;
+        }
+        // 0 marks an empty slot in the sparse table
+        if (hash == 0) {
+            hash = 1;
+        }
+        int mask = sparseHashes.length - 1;
+        int slot = (int) (hash >>> 32) & mask;
+        while (sparseHashes[slot] != 0) {
+            if (sparseHashes[slot] == hash) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        sparseHashes[slot] = hash;
+        sparseSize++;
+        if (sparseSize > sparseLimit) {
+            toDense();
+        } else if (sparseSize > sparseHashes.length * 3 / 4) {
+            long[] oldHashes = sparseHashes;
+            sparseHashes = new long[oldHashes.length * 2];
+            sparseSize = 0;
+            for (long oldHash : oldHashes) {
+                if (oldHash != 0) {
+                    addHash(oldHash);
+                }
+            }
+        }
+    }
+
+    private void toDense() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[registerCount];
+        for (long hash : sparseHashes) {
+            if (hash != 0) {
+                addToRegisters(hash);
+            }
+        }
+        sparseHashes = null;
+        sparseSize = 0;
+    }
+
+    private void addToRegisters(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Position of the first 1 bit in the remaining bits, with a guard bit so it is at most 64 - precision + 1
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    private double alpha() {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters of the value, followed by the MurmurHash3 finalizer to spread the bits.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Approximate counts of the most frequent strings in fixed memory, using the Space-Saving algorithm (Metwally et al.,
+ * Efficient computation of frequent and top-k elements in data streams, 2005).
+ *
+ * At most capacity values are tracked. When a value that is not tracked arrives while all counters are in use, the
+ * value with the lowest count is replaced by the new value, which inherits that count. The count of a value is
+ * therefore never lower than its true count, and at most getError(value) higher. Any value that occurs more than
+ * (total count / capacity) times is guaranteed to be tracked.
+ *
+ * Instances are not thread safe.
+ */
+public class SpaceSavingCounter {
+    private static final int EMPTY = -1;
+
+    private final int capacity;
+    private int size = 0;
+    private final int[] slots;
+    private final int[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private final String[] keys;
+    // Min-heap on count of the entry indexes, and the position of each entry in the heap
+    private final int[] heap;
+    private final int[] heapPositions;
+    // Highest count of a value removed by keepTopN. Values that are added later may have occurred this often before.
+    private long floor = 0;
+    private boolean evicted = false;
+
+    public SpaceSavingCounter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        keys = new String[capacity];
+        heap = new int[capacity];
+        heapPositions = new int[capacity];
+        int slotCount = Integer.highestOneBit(capacity) * 4;
+        slots = new int[slotCount];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    public boolean add(String key) {
+        return add(key, 1);
+    }
+
+    /**
+     * Adds inc to the count of the key.
+     *
+     * @return true if the key was not tracked before, either because it was not seen before or because it was
+     * replaced by another value
+     */
+    public boolean add(String key, long inc) {
+        return add(key, inc, 0);
+    }
+
+    /**
+     * Adds inc to the count of the key, where inc is itself an estimate that may exceed the true increment by at most
+     * error, for instance when adding counts derived from another counter.
+     *
+     * @return true if the key was not tracked before
+     */
+    public boolean add(String key, long inc, long error) {
+        int hash = key.hashCode();
+        int entry = find(key, hash);
+        if (entry != EMPTY) {
+            counts[entry] = saturatedAdd(counts[entry], inc);
+            errors[entry] = saturatedAdd(errors[entry], error);
+            siftDown(heapPositions[entry]);
+            return false;
+        }
+        if (size < capacity) {
+            entry = size++;
+            keys[entry] = key;
+            hashes[entry] = hash;
+            counts[entry] = saturatedAdd(floor, inc);
+            errors[entry] = saturatedAdd(floor, error);
+            insertSlot(entry);
+            heap[entry] = entry;
+            heapPositions[entry] = entry;
+            siftUp(entry);
+        } else {
+            // Replace the value with the lowest count
+            entry = heap[0];
+            long minimum = counts[entry];
+            removeSlot(entry);
+            keys[entry] = key;
+            hashes[entry] = hash;
+            counts[entry] = saturatedAdd(minimum, inc);
+            errors[entry] = saturatedAdd(minimum, error);
+            insertSlot(entry);
+            siftDown(0);
+            evicted = true;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the estimated count of the key, or 0 if the key is not tracked.
+     */
+    public long getCount(String key) {
+        int entry = find(key, key.hashCode());
+        return entry == EMPTY ? 0 : counts[entry];
+    }
+
+    /**
+     * Returns by how much the count of the key may exceed its true count, or 0 if the key is not tracked.
+     */
+    public long getError(String key) {
+        int entry = find(key, key.hashCode());
+        return entry == EMPTY ? 0 : errors[entry];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns true as long as all counts are exact, i.e. no value has been replaced or removed.
+     */
+    public boolean isExact() {
+        return !evicted && floor == 0;
+    }
+
+    /**
+     * Keep the n values with the highest counts, remove the rest. Nothing is removed if there are fewer than n
+     * values. Values added afterwards get the highest removed count as their error, so the bounds remain valid.
+     */
+    public void keepTopN(int n) {
+        if (size < n)
+            return;
+
+        Integer[] order = sortByDecliningCount(Long.MIN_VALUE);
+        int kept = Math.max(n, 0);
+        for (int i = kept; i < size; i++) {
+            floor = Math.max(floor, counts[order[i]]);
+        }
+        replaceEntries(Arrays.copyOf(keys, size), Arrays.copyOf(hashes, size), Arrays.copyOf(counts, size),
+                Arrays.copyOf(errors, size), order, kept);
+    }
+
+    /**
+     * Adds the counts of another counter, as if the values it has seen had been added to this counter. This follows
+     * the merge of Agarwal et al. (Mergeable summaries, 2012): a value that one counter does not track may have
+     * occurred there as often as that counter's lowest count, which is added to both its count and its error. Of the
+     * combined values, the ones with the highest counts are kept.
+     */
+    public void merge(SpaceSavingCounter other) {
+        long bound = getUntrackedBound();
+        long otherBound = other.getUntrackedBound();
+        int total = size + other.size;
+        String[] mergedKeys = new String[total];
+        int[] mergedHashes = new int[total];
+        long[] mergedCounts = new long[total];
+        long[] mergedErrors = new long[total];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int otherEntry = other.find(keys[i], hashes[i]);
+            mergedKeys[n] = keys[i];
+            mergedHashes[n] = hashes[i];
+            mergedCounts[n] = saturatedAdd(counts[i], otherEntry == EMPTY ? otherBound : other.counts[otherEntry]);
+            mergedErrors[n] = saturatedAdd(errors[i], otherEntry == EMPTY ? otherBound : other.errors[otherEntry]);
+            n++;
+        }
+        for (int i = 0; i < other.size; i++) {
+            if (find(other.keys[i], other.hashes[i]) == EMPTY) {
+                mergedKeys[n] = other.keys[i];
+                mergedHashes[n] = other.hashes[i];
+                mergedCounts[n] = saturatedAdd(other.counts[i], bound);
+                mergedErrors[n] = saturatedAdd(other.errors[i], bound);
+                n++;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -mergedCounts[i]).thenComparingLong(i -> mergedErrors[i]));
+        int kept = Math.min(n, capacity);
+        floor = saturatedAdd(bound, otherBound);
+        for (int i = kept; i < n; i++) {
+            floor = Math.max(floor, mergedCounts[order[i]]);
+        }
+        evicted |= other.evicted;
+        replaceEntries(mergedKeys, mergedHashes, mergedCounts, mergedErrors, order, kept);
+    }
+
+    /**
+     * Declares that values may have been counted before without being tracked, at most bound times each. Values added
+     * afterwards get this as their error, and the counter is no longer exact if bound is positive.
+     */
+    public void raiseFloor(long bound) {
+        floor = Math.max(floor, bound);
+    }
+
+    /**
+     * Returns how often a value that is not tracked may have been added.
+     */
+    public long getUntrackedBound() {
+        return evicted && size > 0 ? Math.max(floor, counts[heap[0]]) : floor;
+    }
+
+    /**
+     * Replaces all entries by the first kept entries in the given order, which must be by declining count.
+     */
+    private void replaceEntries(String[] newKeys, int[] newHashes, long[] newCounts, long[] newErrors, Integer[] order,
+                                int kept) {
+        Arrays.fill(keys, null);
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        for (int i = 0; i < kept; i++) {
+            int index = order[i];
+            keys[i] = newKeys[index];
+            hashes[i] = newHashes[index];
+            counts[i] = newCounts[index];
+            errors[i] = newErrors[index];
+            insertSlot(i);
+            // Entries are in declining order, so the reversed order is a valid min-heap
+            heap[kept - 1 - i] = i;
+            heapPositions[i] = kept - 1 - i;
+            size++;
+        }
+    }
+
+    /**
+     * Returns the values of which the guaranteed count (count minus error) is at least minCount, ordered by
+     * declining estimated count, limited to the first limit values. Each pair holds the value and its estimated
+     * count.
+     */
+    public List<Pair<String, Long>> getDecliningCounts(long minCount, int limit) {
+        Integer[] order = sortByDecliningCount(minCount);
+        int n = Math.min(order.length, Math.max(limit, 0));
+        List<Pair<String, Long>> result = new ArrayList<>(n + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(new Pair<>(keys[order[i]], counts[order[i]]));
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the number of bytes of heap used by this counter, assuming compressed object references and compact
+     * (Latin-1) strings.
+     */
+    public long getMemoryFootprint() {
+        long bytes = 64 + 4 * intArrayBytes(capacity) + 2 * align(16 + 8L * capacity) + intArrayBytes(slots.length);
+        for (int i = 0; i < size; i++) {
+            bytes += 24 + align(16 + keys[i].length());
+        }
+        return bytes;
+    }
+
+    private Integer[] sortByDecliningCount(long minCount) {
+        Integer[] order = new Integer[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] - errors[i] >= minCount) {
+                order[n++] = i;
+            }
+        }
+        order = Arrays.copyOf(order, n);
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -counts[i]).thenComparingLong(i -> errors[i]));
+        return order;
+    }
+
+    private int find(String key, int hash) {
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        int entry;
+        while ((entry = slots[slot]) != EMPTY) {
+            if (hashes[entry] == hash && keys[entry].equals(key)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    private void insertSlot(int entry) {
+        int mask = slots.length - 1;
+        int slot = spread(hashes[entry]) & mask;
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = entry;
+    }
+
+    /**
+     * Removes the entry from the slot table, shifting later entries of the same probe sequence back so that no
+     * tombstones are needed.
+     */
+    private void removeSlot(int entry) {
+        int mask = slots.length - 1;
+        int free = spread(hashes[entry]) & mask;
+        while (slots[free] != entry) {
+            free = (free + 1) & mask;
+        }
+        slots[free] = EMPTY;
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int other = slots[slot];
+            if (other == EMPTY) {
+                return;
+            }
+            int home = spread(hashes[other]) & mask;
+            // Move the entry back unless its home slot lies cyclically within (free, slot]
+            boolean stays = free <= slot ? (home > free && home <= slot) : (home > free || home <= slot);
+            if (!stays) {
+                slots[free] = other;
+                slots[slot] = EMPTY;
+                free = slot;
+            }
+        }
+    }
+
+    private void siftUp(int position) {
+        int entry = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[entry]) {
+                break;
+            }
+            moveInHeap(heap[parent], position);
+            position = parent;
+        }
+        moveInHeap(entry, position);
+    }
+
+    private void siftDown(int position) {
+        int entry = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[entry] <= counts[heap[child]]) {
+                break;
+            }
+            moveInHeap(heap[child], position);
+            position = child;
+        }
+        moveInHeap(entry, position);
+    }
+
+    private void moveInHeap(int entry, int position) {
+        heap[position] = entry;
+        heapPositions[entry] = position;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        return b > Long.MAX_VALUE - a ? Long.MAX_VALUE : a + b;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long intArrayBytes(int length) {
+        return align(16 + 4L * length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
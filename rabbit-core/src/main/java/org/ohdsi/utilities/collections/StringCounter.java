@@ -0,0 +1,466 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.collections;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts the occurrences of strings. This is a specialised replacement for CountingSet&lt;String&gt; on the scan
+ * hot path: entries are kept in parallel primitive arrays and located through an open addressing (linear probing)
+ * table, so no Map.Entry or Count object is created per distinct value.
+ *
+ * Optionally, keys are stored as UTF-8 bytes in a single byte slab shared by all entries instead of as separate
+ * String objects, which roughly halves the memory needed for the mostly short values found in source data. Keys
+ * are then only turned back into Strings when they are requested. Note that, as with String.getBytes(), unpaired
+ * surrogate characters are stored as '?'.
+ *
+ * Entries are numbered 0 to size() - 1 in order of insertion, and can be read with getKey(int) and getCount(int).
+ * Where values are ordered by count, as in keepTopN and getDecliningCounts, values with equal counts are ordered as
+ * they would be iterated in the HashMap of an equivalent CountingSet, so that scan reports do not change when
+ * switching between the two. Instances are not thread safe.
+ */
+public class StringCounter {
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final int HASH_MAP_MIN_CAPACITY = 16;
+
+    private final boolean utf8Keys;
+    private int size = 0;
+    private int[] slots;
+    private int[] hashes;
+    private long[] counts;
+    private String[] keys;
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private byte[] slab;
+    private int slabSize = 0;
+    private int hashMapCapacity = HASH_MAP_MIN_CAPACITY;
+
+    public StringCounter() {
+        this(false);
+    }
+
+    /**
+     * @param utf8Keys if true, keys are stored as UTF-8 bytes in a shared slab instead of as String objects
+     */
+    public StringCounter(boolean utf8Keys) {
+        this.utf8Keys = utf8Keys;
+        allocate(MIN_CAPACITY);
+        if (utf8Keys) {
+            slab = new byte[MIN_CAPACITY * 8];
+        }
+    }
+
+    public boolean add(String key) {
+        return add(key, 1);
+    }
+
+    /**
+     * Adds inc to the count of the key.
+     *
+     * @return true if the key was not counted before
+     */
+    public boolean add(String key, long inc) {
+        return add(key, 0, key.length(), false, key.hashCode(), inc);
+    }
+
+    /**
+     * Adds inc to the count of source.substring(start, end).toLowerCase(), lowercasing character by character while
+     * hashing and comparing. The substring is only created if it is a new key and keys are not stored as UTF-8.
+     *
+     * @return true if the key was not counted before
+     */
+    public boolean addLowerCase(String source, int start, int end, long inc) {
+        // Same as String.hashCode() of the lowercase substring
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(source.charAt(i));
+        }
+        return add(source, start, end, true, hash, inc);
+    }
+
+    private boolean add(String source, int start, int end, boolean lowerCase, int hash, long inc) {
+        int keyLength = 0;
+        if (utf8Keys) {
+            // Encode once at the end of the slab; the bytes are only kept if the key turns out to be new
+            keyLength = encode(source, start, end, lowerCase) - slabSize;
+        }
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        int entry;
+        while ((entry = slots[slot]) != EMPTY) {
+            if (hashes[entry] == hash && keyEquals(entry, source, start, end, lowerCase, keyLength)) {
+                counts[entry] += inc;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == counts.length) {
+            grow();
+            // The slot table was rebuilt, so look up the free slot again
+            mask = slots.length - 1;
+            slot = spread(hash) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        entry = size++;
+        slots[slot] = entry;
+        hashes[entry] = hash;
+        counts[entry] = inc;
+        if (utf8Keys) {
+            keyOffsets[entry] = slabSize;
+            keyLengths[entry] = keyLength;
+            slabSize += keyLength;
+        } else if (lowerCase) {
+            char[] chars = new char[end - start];
+            for (int i = start; i < end; i++) {
+                chars[i - start] = Character.toLowerCase(source.charAt(i));
+            }
+            keys[entry] = new String(chars);
+        } else {
+            keys[entry] = source.substring(start, end);
+        }
+        updateHashMapCapacity();
+        return true;
+    }
+
+    public long getCount(String key) {
+        int entry = find(key);
+        return entry == EMPTY ? 0 : counts[entry];
+    }
+
+    public boolean contains(String key) {
+        return find(key) != EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the key of the entry with the given index (0 &lt;= index &lt; size()).
+     */
+    public String getKey(int index) {
+        checkIndex(index);
+        if (utf8Keys) {
+            return new String(slab, keyOffsets[index], keyLengths[index], StandardCharsets.UTF_8);
+        } else {
+            return keys[index];
+        }
+    }
+
+    /**
+     * Returns the count of the entry with the given index (0 &lt;= index &lt; size()).
+     */
+    public long getCount(int index) {
+        checkIndex(index);
+        return counts[index];
+    }
+
+    public void clear() {
+        size = 0;
+        slabSize = 0;
+        hashMapCapacity = HASH_MAP_MIN_CAPACITY;
+        Arrays.fill(slots, EMPTY);
+        if (keys != null) {
+            Arrays.fill(keys, null);
+        }
+    }
+
+    /**
+     * Keep the n most frequent values, remove the rest. As in CountingSet, nothing is removed if there are fewer
+     * than n values.
+     */
+    public void keepTopN(int n) {
+        if (size < n)
+            return;
+
+        Integer[] order = sortByDecliningCount(0);
+        int kept = Math.max(n, 0);
+        int[] oldHashes = Arrays.copyOf(hashes, size);
+        long[] oldCounts = Arrays.copyOf(counts, size);
+        String[] oldKeys = null;
+        byte[] oldSlab = null;
+        int[] oldKeyOffsets = null;
+        int[] oldKeyLengths = null;
+        if (utf8Keys) {
+            oldSlab = Arrays.copyOf(slab, slabSize);
+            oldKeyOffsets = Arrays.copyOf(keyOffsets, size);
+            oldKeyLengths = Arrays.copyOf(keyLengths, size);
+        } else {
+            oldKeys = Arrays.copyOf(keys, size);
+        }
+
+        // Re-insert the kept values from most to least frequent, like the HashMap that CountingSet creates
+        clear();
+        for (int i = 0; i < kept; i++) {
+            int index = order[i];
+            hashes[i] = oldHashes[index];
+            counts[i] = oldCounts[index];
+            if (utf8Keys) {
+                System.arraycopy(oldSlab, oldKeyOffsets[index], slab, slabSize, oldKeyLengths[index]);
+                keyOffsets[i] = slabSize;
+                keyLengths[i] = oldKeyLengths[index];
+                slabSize += oldKeyLengths[index];
+            } else {
+                keys[i] = oldKeys[index];
+            }
+            size++;
+            updateHashMapCapacity();
+        }
+        rehash(slots.length);
+    }
+
+    /**
+     * Returns the values with a count of at least minCount, ordered by declining count, limited to the first limit
+     * values.
+     */
+    public List<Pair<String, Long>> getDecliningCounts(long minCount, int limit) {
+        Integer[] order = sortByDecliningCount(minCount);
+        int n = Math.min(order.length, Math.max(limit, 0));
+        List<Pair<String, Long>> result = new ArrayList<>(n + 1);
+        for (int i = 0; i < n; i++) {
+            result.add(new Pair<>(getKey(order[i]), counts[order[i]]));
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the number of bytes of heap used by this counter, assuming compressed object references. For
+     * String keys, compact (Latin-1) strings are assumed.
+     */
+    public long getMemoryFootprint() {
+        long bytes = 48 + intArrayBytes(slots.length) + intArrayBytes(hashes.length) + longArrayBytes(counts.length);
+        if (utf8Keys) {
+            bytes += intArrayBytes(keyOffsets.length) + intArrayBytes(keyLengths.length) + align(16 + slab.length);
+        } else {
+            bytes += align(16 + 4L * keys.length);
+            for (int i = 0; i < size; i++) {
+                // String object plus its byte array
+                bytes += 24 + align(16 + keys[i].length());
+            }
+        }
+        return bytes;
+    }
+
+    private int find(String key) {
+        int hash = key.hashCode();
+        int keyLength = 0;
+        if (utf8Keys) {
+            keyLength = encode(key, 0, key.length(), false) - slabSize;
+        }
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        int entry;
+        while ((entry = slots[slot]) != EMPTY) {
+            if (hashes[entry] == hash && keyEquals(entry, key, 0, key.length(), false, keyLength)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Compares the key of the entry with the given key. In UTF-8 mode, the given key must have been encoded at the
+     * end of the slab.
+     */
+    private boolean keyEquals(int entry, String source, int start, int end, boolean lowerCase, int keyLength) {
+        if (!utf8Keys) {
+            String key = keys[entry];
+            if (!lowerCase && start == 0 && end == source.length()) {
+                return key.equals(source);
+            }
+            if (key.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                char c = source.charAt(i);
+                if (key.charAt(i - start) != (lowerCase ? Character.toLowerCase(c) : c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (keyLengths[entry] != keyLength) {
+            return false;
+        }
+        int offset = keyOffsets[entry];
+        for (int i = 0; i < keyLength; i++) {
+            if (slab[offset + i] != slab[slabSize + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the UTF-8 encoding of source.substring(start, end), lowercased if requested, after the used part of the
+     * slab, without marking it as used.
+     *
+     * @return the end offset of the encoded key
+     */
+    private int encode(String source, int start, int end, boolean lowerCase) {
+        ensureSlabCapacity(slabSize + 3L * (end - start));
+        byte[] bytes = slab;
+        int pos = slabSize;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (lowerCase) {
+                c = Character.toLowerCase(c);
+            }
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(source.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, source.charAt(++i));
+                bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[pos++] = (byte) '?';
+            } else {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    private void ensureSlabCapacity(long required) {
+        if (required > slab.length) {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many key bytes to store in StringCounter");
+            }
+            slab = Arrays.copyOf(slab, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * slab.length)));
+        }
+    }
+
+    private void allocate(int entryCapacity) {
+        hashes = new int[entryCapacity];
+        counts = new long[entryCapacity];
+        if (utf8Keys) {
+            keyOffsets = new int[entryCapacity];
+            keyLengths = new int[entryCapacity];
+        } else {
+            keys = new String[entryCapacity];
+        }
+        // Keep the load factor at or below 0.5
+        slots = new int[entryCapacity * 2];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    private void grow() {
+        int capacity = counts.length * 2;
+        hashes = Arrays.copyOf(hashes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        if (utf8Keys) {
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+        } else {
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        rehash(capacity * 2);
+    }
+
+    private void rehash(int slotCount) {
+        if (slots.length != slotCount) {
+            slots = new int[slotCount];
+        }
+        Arrays.fill(slots, EMPTY);
+        int mask = slotCount - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = spread(hashes[entry]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * Returns the indexes of the entries with a count of at least minCount, ordered by declining count. Ties are
+     * ordered by HashMap bucket, then by insertion order, which is how a HashMap iterates its entries.
+     */
+    private Integer[] sortByDecliningCount(long minCount) {
+        Integer[] order = new Integer[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] >= minCount) {
+                order[n++] = i;
+            }
+        }
+        order = Arrays.copyOf(order, n);
+        int bucketMask = hashMapCapacity - 1;
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -counts[i])
+                .thenComparingInt(i -> hashMapHash(hashes[i]) & bucketMask)
+                .thenComparingInt(i -> i));
+        return order;
+    }
+
+    /**
+     * Tracks the table size that a HashMap holding the same number of entries would have. A HashMap doubles its
+     * table when the number of entries exceeds 0.75 times its size, and never shrinks it.
+     */
+    private void updateHashMapCapacity() {
+        while (size > (hashMapCapacity / 4) * 3 && hashMapCapacity < (1 << 30)) {
+            hashMapCapacity <<= 1;
+        }
+    }
+
+    private static int hashMapHash(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int spread(int hash) {
+        // Linear probing on a power-of-two table only uses the lower bits, so mix in the upper bits
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long intArrayBytes(int length) {
+        return align(16 + 4L * length);
+    }
+
+    private static long longArrayBytes(int length) {
+        return align(16 + 8L * length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
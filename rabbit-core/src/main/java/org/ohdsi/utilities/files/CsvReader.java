@@ -0,0 +1,454 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reader for delimited text files that parses the UTF-8 bytes directly. Files are read through memory-mapped windows,
+ * streams through a direct buffer; in both cases a record is located and split into cells without copying, and a cell
+ * is only decoded into a String when {@link #getString(int)} is called for it.
+ *
+ * Quoting follows RFC 4180: a cell that starts with a double quote runs up to the matching closing quote, may contain
+ * delimiters and line breaks, and uses "" for a literal quote. For compatibility with files that were read with
+ * {@link org.ohdsi.utilities.StringUtilities#safeSplit(String, char)}, \" is also read as a literal quote. Records are
+ * terminated by \n, \r\n or \r, and a UTF-8 byte order mark at the start of the input is skipped.
+ *
+ * Typical use: {@code while (reader.next())}, then read the cells of the current record with {@link #getCellCount()}
+ * and {@link #getString(int)}.
+ */
+public class CsvReader implements AutoCloseable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_STREAM_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte BACKSLASH = '\\';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    // Cell flags
+    private static final byte QUOTED = 1;
+    private static final byte ESCAPED = 2;
+
+    private final byte delimiter;
+    private final FileChannel fileChannel;
+    private final ReadableByteChannel streamChannel;
+    private final long inputSize;
+    private final long end;
+
+    private ByteBuffer buffer;
+    private ByteBuffer view;
+    private long bufferOffset;
+    private int windowSize;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    private int cellCount;
+    private int[] cellStarts = new int[16];
+    private int[] cellEnds = new int[16];
+    private byte[] cellFlags = new byte[16];
+    private String[] strings = new String[16];
+    private long recordNumber;
+    private long recordOffset;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Opens the file for reading through memory-mapped windows of {@link #DEFAULT_WINDOW_SIZE} bytes.
+     */
+    public CsvReader(Path file, char delimiter) {
+        this(file, delimiter, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize the size of the memory-mapped windows. A window is grown when a single record does not fit.
+     */
+    public CsvReader(Path file, char delimiter, int windowSize) {
+        this(file, delimiter, 0, Long.MAX_VALUE, windowSize);
+    }
+
+    /**
+     * Reads only the records that start at a byte offset in [start, end). The last record may extend beyond end. Start
+     * must be the start of a record, for instance as found with {@link #skipLine()} or {@link #getPosition()}.
+     */
+    public CsvReader(Path file, char delimiter, long start, long end, int windowSize) {
+        this.delimiter = toByte(delimiter);
+        this.windowSize = windowSize;
+        this.end = end;
+        this.streamChannel = null;
+        try {
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+            inputSize = fileChannel.size();
+            map(Math.min(start, inputSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (start == 0)
+            skipByteOrderMark();
+    }
+
+    /**
+     * Reads the input stream through a direct buffer of {@link #DEFAULT_STREAM_BUFFER_SIZE} bytes. The stream is closed
+     * when the reader is closed.
+     */
+    public CsvReader(InputStream inputStream, char delimiter) {
+        this.delimiter = toByte(delimiter);
+        this.windowSize = DEFAULT_STREAM_BUFFER_SIZE;
+        this.fileChannel = null;
+        this.streamChannel = Channels.newChannel(inputStream);
+        this.inputSize = -1;
+        this.end = Long.MAX_VALUE;
+        buffer = ByteBuffer.allocateDirect(windowSize);
+        buffer.limit(0);
+        view = buffer.duplicate();
+        fill(0);
+        skipByteOrderMark();
+    }
+
+    private static byte toByte(char delimiter) {
+        if (delimiter >= 0x80 || delimiter == '"' || delimiter == '\r' || delimiter == '\n')
+            throw new IllegalArgumentException("Unsupported delimiter: '" + delimiter + "'");
+        return (byte) delimiter;
+    }
+
+    private void skipByteOrderMark() {
+        if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF)
+            position = 3;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false if there are no more records
+     */
+    public boolean next() {
+        while (true) {
+            if ((position >= limit && endOfInput) || bufferOffset + position >= end)
+                return false;
+            int recordEnd = scanRecord(position);
+            if (recordEnd >= 0) {
+                Arrays.fill(strings, 0, cellCount, null);
+                recordOffset = bufferOffset + position;
+                recordNumber++;
+                position = recordEnd;
+                return true;
+            }
+            // The record runs past the end of the buffer: move the buffer to the start of the record and try again
+            if (position == 0)
+                windowSize = (int) Math.min(Integer.MAX_VALUE - 8, 2L * windowSize);
+            moveBuffer(position);
+        }
+    }
+
+    /**
+     * Skips to the start of the next line without regard to quotes, so the position is a likely but not a certain
+     * record boundary. This is meant for starting to read at an arbitrary offset in a file.
+     *
+     * @return false if there is no next line
+     */
+    public boolean skipLine() {
+        while (true) {
+            while (position < limit) {
+                if (buffer.get(position++) == LF)
+                    return position < limit || !endOfInput;
+            }
+            if (endOfInput)
+                return false;
+            moveBuffer(position);
+        }
+    }
+
+    private void moveBuffer(int keepFrom) {
+        if (fileChannel != null)
+            map(bufferOffset + keepFrom);
+        else
+            fill(keepFrom);
+    }
+
+    /**
+     * Splits the record starting at the given position into cells.
+     *
+     * @return the position after the record terminator, or -1 if more input is needed to complete the record
+     */
+    private int scanRecord(int p) {
+        final ByteBuffer buffer = this.buffer;
+        final int limit = this.limit;
+        final byte delimiter = this.delimiter;
+        cellCount = 0;
+        while (true) {
+            int start;
+            int end;
+            byte flags = 0;
+            if (p < limit && buffer.get(p) == QUOTE) {
+                flags = QUOTED;
+                start = ++p;
+                while (true) {
+                    if (p >= limit) {
+                        if (!endOfInput)
+                            return -1;
+                        break; // Unterminated quote: the cell runs to the end of the input
+                    }
+                    byte b = buffer.get(p);
+                    if (b == QUOTE || b == BACKSLASH) {
+                        if (p + 1 >= limit && !endOfInput)
+                            return -1;
+                        if (p + 1 < limit && buffer.get(p + 1) == QUOTE) {
+                            flags |= ESCAPED;
+                            p += 2;
+                            continue;
+                        }
+                        if (b == QUOTE)
+                            break;
+                    }
+                    p++;
+                }
+                end = p;
+                if (p < limit)
+                    p++; // Closing quote
+                if (p < limit && !isCellEnd(buffer.get(p))) {
+                    // Text after the closing quote: keep the cell as it appears in the file
+                    flags = 0;
+                    start--;
+                    while (p < limit && !isCellEnd(buffer.get(p)))
+                        p++;
+                    end = p;
+                }
+            } else {
+                start = p;
+                while (p < limit) {
+                    byte b = buffer.get(p);
+                    if (b == delimiter || b == LF || b == CR)
+                        break;
+                    if (b == BACKSLASH && p + 1 < limit && buffer.get(p + 1) == QUOTE)
+                        flags = ESCAPED;
+                    p++;
+                }
+                end = p;
+            }
+            if (p >= limit && !endOfInput)
+                return -1;
+            addCell(start, end, flags);
+            if (p >= limit)
+                return p;
+            byte b = buffer.get(p++);
+            if (b == LF)
+                return p;
+            if (b == CR) {
+                if (p < limit) {
+                    if (buffer.get(p) == LF)
+                        p++;
+                } else if (!endOfInput)
+                    return -1;
+                return p;
+            }
+            // Delimiter: continue with the next cell
+        }
+    }
+
+    private boolean isCellEnd(byte b) {
+        return b == delimiter || b == LF || b == CR;
+    }
+
+    private void addCell(int start, int end, byte flags) {
+        if (cellCount == cellStarts.length) {
+            int newLength = cellCount * 2;
+            cellStarts = Arrays.copyOf(cellStarts, newLength);
+            cellEnds = Arrays.copyOf(cellEnds, newLength);
+            cellFlags = Arrays.copyOf(cellFlags, newLength);
+            strings = Arrays.copyOf(strings, newLength);
+        }
+        cellStarts[cellCount] = start;
+        cellEnds[cellCount] = end;
+        cellFlags[cellCount] = flags;
+        cellCount++;
+    }
+
+    private void map(long offset) {
+        try {
+            long size = Math.min(windowSize, inputSize - offset);
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            view = buffer.duplicate();
+            bufferOffset = offset;
+            position = 0;
+            limit = (int) size;
+            endOfInput = offset + size >= inputSize;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void fill(int keepFrom) {
+        try {
+            if (windowSize > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(windowSize);
+                buffer.position(keepFrom);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.position(keepFrom);
+                buffer.compact();
+            }
+            bufferOffset += keepFrom;
+            while (buffer.hasRemaining()) {
+                if (streamChannel.read(buffer) == -1) {
+                    endOfInput = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            view = buffer.duplicate();
+            position = 0;
+            limit = buffer.limit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of cells in the current record
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * @return true if the cell is empty (an empty quoted cell also counts as empty)
+     */
+    public boolean isEmpty(int cellIndex) {
+        return cellEnds[cellIndex] == cellStarts[cellIndex];
+    }
+
+    /**
+     * @return true if the cell was enclosed in quotes
+     */
+    public boolean isQuoted(int cellIndex) {
+        return (cellFlags[cellIndex] & QUOTED) != 0;
+    }
+
+    /**
+     * @return the number of bytes of the cell content as stored in the file, without enclosing quotes
+     */
+    public int getByteLength(int cellIndex) {
+        return cellEnds[cellIndex] - cellStarts[cellIndex];
+    }
+
+    /**
+     * Decodes the cell. The String is created on the first call for a cell and reused until the next record.
+     */
+    public String getString(int cellIndex) {
+        if (cellIndex >= cellCount)
+            throw new IndexOutOfBoundsException("Cell " + cellIndex + " of " + cellCount);
+        String string = strings[cellIndex];
+        if (string == null) {
+            string = decode(cellIndex);
+            strings[cellIndex] = string;
+        }
+        return string;
+    }
+
+    private String decode(int cellIndex) {
+        int start = cellStarts[cellIndex];
+        int length = cellEnds[cellIndex] - start;
+        if (length == 0)
+            return "";
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        view.limit(start + length).position(start);
+        view.get(scratch, 0, length);
+        if ((cellFlags[cellIndex] & ESCAPED) != 0)
+            length = unescape(scratch, length, (cellFlags[cellIndex] & QUOTED) != 0);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces \" and, in quoted cells, "" by a single quote in place.
+     *
+     * @return the new length
+     */
+    private static int unescape(byte[] bytes, int length, boolean quoted) {
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if ((b == BACKSLASH || (quoted && b == QUOTE)) && i + 1 < length && bytes[i + 1] == QUOTE)
+                i++;
+            bytes[j++] = bytes[i];
+        }
+        return j;
+    }
+
+    /**
+     * @return the cells of the current record as Strings
+     */
+    public String[] getStrings() {
+        String[] result = new String[cellCount];
+        for (int i = 0; i < cellCount; i++)
+            result[i] = getString(i);
+        return result;
+    }
+
+    /**
+     * @return the 1-based number of the current record
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @return the byte offset in the input at which the current record starts
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * @return the byte offset in the input at which the next record starts
+     */
+    public long getPosition() {
+        return bufferOffset + position;
+    }
+
+    /**
+     * @return the size of the file in bytes, or -1 when reading from a stream
+     */
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (fileChannel != null)
+                fileChannel.close();
+            if (streamChannel != null)
+                streamChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
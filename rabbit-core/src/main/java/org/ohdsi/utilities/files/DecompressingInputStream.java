@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream over the decompressed content of a gzip (.gz), bzip2 (.bz2) or Zstandard (.zst) file. Files that
+ * consist of several concatenated compressed members are read completely.
+ *
+ * Decompression runs on a separate thread, which stays up to QUEUE_DEPTH blocks ahead of the reader, so that the
+ * thread reading the stream only spends its time on processing the data. Reading .zst files requires zstd-jni
+ * (com.github.luben:zstd-jni) on the class path.
+ */
+public class DecompressingInputStream extends InputStream {
+    private static final String[] EXTENSIONS = {".gz", ".bz2", ".zst"};
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int QUEUE_DEPTH = 4;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] END_OF_DATA = new byte[0];
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+    private final Thread decompressor;
+    private volatile IOException error;
+    private byte[] block;
+    private int blockPosition;
+    private boolean ended = false;
+
+    public DecompressingInputStream(Path file) throws IOException {
+        // Open on the calling thread, so that a missing file or wrong format is reported right away
+        InputStream decompressed = open(file);
+        decompressor = new Thread(() -> decompress(decompressed), "Decompress " + file.getFileName());
+        decompressor.setDaemon(true);
+        decompressor.start();
+    }
+
+    /**
+     * @return true if the name of the file has the extension of a supported compression format
+     */
+    public static boolean isCompressed(String fileName) {
+        return getCompressionExtension(fileName) != null;
+    }
+
+    /**
+     * @return the file name without the extension of the compression format, e.g. person.csv for person.csv.gz
+     */
+    public static String removeCompressionExtension(String fileName) {
+        String extension = getCompressionExtension(fileName);
+        return extension == null ? fileName : fileName.substring(0, fileName.length() - extension.length());
+    }
+
+    private static String getCompressionExtension(String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension))
+                return extension;
+        }
+        return null;
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        String extension = getCompressionExtension(file.getFileName().toString());
+        if (extension == null)
+            throw new IllegalArgumentException("Not a compressed file: " + file);
+        if (extension.equals(".zst") && !ZstdUtils.isZstdCompressionAvailable())
+            throw new IOException("Reading " + file + " requires zstd-jni (com.github.luben:zstd-jni) on the class path");
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), READ_BUFFER_SIZE);
+        try {
+            switch (extension) {
+                case ".gz":
+                    return new GzipCompressorInputStream(in, true);
+                case ".bz2":
+                    return new BZip2CompressorInputStream(in, true);
+                default:
+                    return new ZstdCompressorInputStream(in);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private void decompress(InputStream decompressed) {
+        try (InputStream in = decompressed) {
+            while (true) {
+                byte[] data = new byte[BLOCK_SIZE];
+                int n = 0;
+                int read;
+                while (n < BLOCK_SIZE && (read = in.read(data, n, BLOCK_SIZE - n)) != -1)
+                    n += read;
+                if (n > 0)
+                    queue.put(n == BLOCK_SIZE ? data : Arrays.copyOf(data, n));
+                if (n < BLOCK_SIZE)
+                    break;
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            // The stream was closed before all data was read
+            return;
+        }
+        try {
+            queue.put(END_OF_DATA);
+        } catch (InterruptedException e) {
+            // The stream was closed, nobody is waiting for the end of the data
+        }
+    }
+
+    /**
+     * Makes sure there is unread data in the current block.
+     *
+     * @return false at the end of the data
+     */
+    private boolean fillBlock() throws IOException {
+        if (ended)
+            return false;
+        if (block != null && blockPosition < block.length)
+            return true;
+        try {
+            block = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+        }
+        blockPosition = 0;
+        if (block == END_OF_DATA) {
+            ended = true;
+            if (error != null)
+                throw new IOException(error.getMessage(), error);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillBlock())
+            return -1;
+        return block[blockPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        if (!fillBlock())
+            return -1;
+        int n = Math.min(length, block.length - blockPosition);
+        System.arraycopy(block, blockPosition, buffer, offset, n);
+        blockPosition += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        ended = true;
+        decompressor.interrupt();
+        queue.clear();
+    }
+}
@@ -17,195 +17,266 @@
  ******************************************************************************/
 package org.ohdsi.utilities.files;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.ohdsi.utilities.SimpleCounter;
-import org.ohdsi.utilities.StringUtilities;
-import org.ohdsi.utilities.collections.IntegerComparator;
 import org.ohdsi.utilities.files.QuickAndDirtyXlsxReader.Sheet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class QuickAndDirtyXlsxReader extends ArrayList<Sheet> {
+/**
+ * Reads the cell values of an xlsx file as strings. Only the workbook, its relations and the shared strings are read when
+ * the file is opened; the rows of a sheet are parsed from the zip file each time the sheet is iterated, so a sheet is
+ * never held in memory as a whole. Close the reader to release the file.
+ */
+public class QuickAndDirtyXlsxReader extends ArrayList<Sheet> implements Closeable {
 
 	static Logger logger = LoggerFactory.getLogger(QuickAndDirtyXlsxReader.class);
 	private static final long serialVersionUID = 25124428448185386L;
 	private static final Pattern DOUBLE_IGNORE_PATTERN = Pattern.compile("[<>= ]+");
+	private static final String WORKBOOK = "xl/workbook.xml";
+	private static final String WORKBOOK_RELS = "xl/_rels/workbook.xml.rels";
+	private static final String SHARED_STRINGS = "xl/sharedStrings.xml";
+	private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
 
-	private final List<String> sharedStrings = new ArrayList<>();
-
-	private final Map<String, Sheet> rIdToSheet = new HashMap<>();
+	private final SharedStrings sharedStrings = new SharedStrings();
 	private final Map<String, Sheet> nameToSheet = new HashMap<>();
-	private final Map<String, Sheet> filenameToSheet = new HashMap<>();
+	private transient ZipFile zipFile;
 
 	public QuickAndDirtyXlsxReader(String filename) {
 		try {
-			// Step 1: load the shared strings (if any), and the rels
-			FileInputStream inputStream = new FileInputStream(filename);
-			loadSharedStringsAndRels(inputStream);
+			zipFile = new ZipFile(filename);
+			Map<String, String> rIdToTarget = new HashMap<>();
+			String sharedStringsEntry = readRels(rIdToTarget);
+			readSharedStrings(sharedStringsEntry);
+			readWorkbook(rIdToTarget);
+		} catch (IOException | XMLStreamException e) {
+			close();
+			throw new RuntimeException("Could not read " + filename + ": " + e.getMessage(), e);
+		}
+	}
 
-			// Step 2: load the data:
-			inputStream = new FileInputStream(filename);
-			readFromStream(inputStream);
+	/**
+	 * Creates a workbook without sheets, to be filled with addSheet (used by ReadScanProfile)
+	 */
+	QuickAndDirtyXlsxReader() {
+	}
+
+	/**
+	 * Adds a sheet whose rows are produced by the rowSource each time the sheet is iterated
+	 */
+	Sheet addSheet(String name, Function<Sheet, Iterator<Row>> rowSource) {
+		Sheet sheet = new Sheet(name, rowSource);
+		add(sheet);
+		nameToSheet.put(name, sheet);
+		return sheet;
+	}
 
-			// Step 3: order the sheets:
-			this.sort((o1, o2) -> IntegerComparator.compare(o1.order, o2.order));
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+	public Sheet getByName(String sheetName) {
+		return nameToSheet.get(sheetName);
+	}
+
+	@Override
+	public void close() {
+		if (zipFile != null) {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				logger.warn("Could not close {}: {}", zipFile.getName(), e.getMessage());
+			}
+			zipFile = null;
 		}
 	}
 
-	private void loadSharedStringsAndRels(FileInputStream inputStream) {
+	private static XMLInputFactory createXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+
+	private XMLStreamReader openEntry(String entryName) throws IOException, XMLStreamException {
+		ZipFile zipFile = this.zipFile;
+		if (zipFile == null) {
+			throw new IOException("The xlsx file has been closed");
+		}
+		ZipEntry entry = zipFile.getEntry(entryName);
+		if (entry == null) {
+			return null;
+		}
+		InputStream inputStream = zipFile.getInputStream(entry);
 		try {
-			int tasksComplete = 0;
-			ZipInputStream zipInputStream = new ZipInputStream(inputStream);
-
-			ZipEntry zipEntry;
-			while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-				String filename = zipEntry.getName();
-				if (filename.equals("xl/sharedStrings.xml")) {
-					processSharedStrings(zipInputStream);
-					tasksComplete++;
-				} else if (filename.equals("xl/_rels/workbook.xml.rels")) {
-					processRels(zipInputStream);
-					tasksComplete++;
-				}
+			// The factory may hand out a cached reader, so sheets that are read in parallel must not create them at once
+			synchronized (XML_INPUT_FACTORY) {
+				return XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+			}
+		} catch (XMLStreamException e) {
+			inputStream.close();
+			throw e;
+		}
+	}
 
-				if (tasksComplete == 2) {
-					zipInputStream.close();
-					break;
+	/**
+	 * Reads the relations of the workbook into rIdToTarget, and returns the entry holding the shared strings
+	 */
+	private String readRels(Map<String, String> rIdToTarget) throws IOException, XMLStreamException {
+		String sharedStringsEntry = SHARED_STRINGS;
+		XMLStreamReader reader = openEntry(WORKBOOK_RELS);
+		if (reader == null) {
+			return sharedStringsEntry;
+		}
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("Relationship")) {
+					String target = toEntryName(reader.getAttributeValue(null, "Target"));
+					String type = reader.getAttributeValue(null, "Type");
+					rIdToTarget.put(reader.getAttributeValue(null, "Id"), target);
+					if (type != null && type.endsWith("/sharedStrings")) {
+						sharedStringsEntry = target;
+					}
 				}
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
+		} finally {
+			reader.close();
 		}
+		return sharedStringsEntry;
 	}
 
-	private void processRels(ZipInputStream inputStream) throws IOException {
-		BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-		String line;
-		while ((line = bufferedReader.readLine()) != null)
-			for (String tag : StringUtilities.multiFindBetween(line, "<Relationship", ">")) {
-				String rId = StringUtilities.findBetween(tag, "Id=\"", "\"");
-				String filename = "xl/" + StringUtilities.findBetween(tag, "Target=\"", "\"");
-				if (filename.contains("/sheet")) {
-					Sheet sheet = new Sheet();
-					add(sheet);
-					rIdToSheet.put(rId, sheet);
-					filenameToSheet.put(filename, sheet);
+	private static String toEntryName(String target) {
+		if (target == null) {
+			return "";
+		}
+		// Targets are relative to the workbook, unless they start with a slash
+		return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+	}
+
+	private void readSharedStrings(String entryName) throws IOException, XMLStreamException {
+		XMLStreamReader reader = openEntry(entryName);
+		if (reader == null) {
+			return;
+		}
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("si")) {
+					sharedStrings.add(readText(reader, "si"));
 				}
 			}
+		} finally {
+			reader.close();
+		}
 	}
 
-	private void readFromStream(InputStream inputStream) {
+	private void readWorkbook(Map<String, String> rIdToTarget) throws IOException, XMLStreamException {
+		XMLStreamReader reader = openEntry(WORKBOOK);
+		if (reader == null) {
+			throw new IOException("No " + WORKBOOK + " found, this is not an xlsx file");
+		}
 		try {
-			ZipInputStream zipInputStream = new ZipInputStream(inputStream);
-
-			ZipEntry zipEntry;
-			while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-				String filename = zipEntry.getName();
-				if (filename.equals("xl/workbook.xml"))
-					processWorkBook(zipInputStream);
-				else if (filename.startsWith("xl/worksheets/sheet"))
-					processSheet(filename, zipInputStream);
+			// Sheets are listed in the order of their tabs, which need not be the order of their sheetId
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("sheet")) {
+					String entryName = rIdToTarget.get(getRelationshipId(reader));
+					if (entryName != null) {
+						addSheet(reader.getAttributeValue(null, "name"), sheet -> new XlsxRowIterator(sheet, entryName));
+					}
+				}
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
+		} finally {
+			reader.close();
 		}
-
 	}
 
-	private void processSharedStrings(ZipInputStream inputStream) throws IOException {
-		BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-		StringBuilder fullFile = new StringBuilder();
-		String line;
-		while ((line = bufferedReader.readLine()) != null)
-			fullFile.append(line);
-
-		for (String string : StringUtilities.multiFindBetween(fullFile.toString(), "<si>", "</si>"))
-			if (string.trim().equals("</t>")) // Empty string
-				sharedStrings.add("");
-			else {
-				string = StringUtilities.findBetween(string, ">", "<");
-				sharedStrings.add(string);
+	private static String getRelationshipId(XMLStreamReader reader) {
+		// The r:id attribute, whatever the prefix of the relationships namespace is
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			if (reader.getAttributeLocalName(i).equals("id") && !reader.getAttributeNamespace(i).isEmpty()) {
+				return reader.getAttributeValue(i);
 			}
+		}
+		return null;
 	}
 
-	private void processSheet(String filename, ZipInputStream inputStream) throws IOException {
-		Sheet sheet = filenameToSheet.get(filename);
-		BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-		String line;
-		StringBuilder fullSheet = new StringBuilder();
-		while ((line = bufferedReader.readLine()) != null)
-			fullSheet.append(line);
-
-		for (String rowLine : StringUtilities.multiFindBetween(fullSheet.toString(), "<row", "</row>")) {
-			Row row = new Row(sheet);
-			row.addAll(findCellValues(rowLine));
-			if (!row.isEmpty()) {
-				sheet.add(row);
+	/**
+	 * Reads the text of a shared or inline string up to the end of the given element, skipping phonetic runs
+	 */
+	private static String readText(XMLStreamReader reader, String endElement) throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+		boolean phonetic = false;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (reader.getLocalName().equals("rPh")) {
+					phonetic = true;
+				} else if (reader.getLocalName().equals("t") && !phonetic) {
+					text.append(reader.getElementText());
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (reader.getLocalName().equals("rPh")) {
+					phonetic = false;
+				} else if (reader.getLocalName().equals(endElement)) {
+					break;
+				}
 			}
 		}
-
+		return decodeEscapes(text.toString());
 	}
 
-	public List<String> findCellValues(String string) {
-		List<String> result = new ArrayList<>();
-		int tagStart = -1;
-		int stringStart = -1;
-		int column = -1;
-		boolean sharedString = false;
-		for (int i = 0; i < string.length(); i++) {
-			char ch = string.charAt(i);
-			if (ch == '<')
-				tagStart = i + 1;
-			else if (ch == '>') {
-				if (tagStart != -1 && i > tagStart) {
-					String tag = string.substring(tagStart, i);
-					if (tag.charAt(0) == 'c') {
-						sharedString = tag.contains("t=\"s\"");
-						column = parseColumn(StringUtilities.findBetween(tag, "r=\"", "\""));
-					} else if (tag.startsWith("v") || tag.startsWith("t"))
-						stringStart = i + 1;
-					else if (tag.equals("/v") || tag.equals("/t")) {
-						if (stringStart != -1 && i > stringStart) {
-							for (int j = result.size(); j <= column; j++)
-								result.add("");
-							if (sharedString) {
-								int index = Integer.parseInt(string.substring(stringStart, tagStart - 1));
-								result.set(column, decode(sharedStrings.get(index)));
-							} else
-								result.set(column, decode(string.substring(stringStart, tagStart - 1)));
-						}
-						stringStart = -1;
-						column = -1;
-					}
-
-				}
+	/**
+	 * Decodes the _xHHHH_ escapes that xlsx uses for characters that cannot be written in XML
+	 */
+	static String decodeEscapes(String s) {
+		int start = s.indexOf("_x");
+		if (start == -1) {
+			return s;
+		}
+		StringBuilder result = new StringBuilder(s.length());
+		result.append(s, 0, start);
+		int i = start;
+		while (i < s.length()) {
+			char ch = s.charAt(i);
+			if (ch == '_' && i + 6 < s.length() && s.charAt(i + 1) == 'x' && s.charAt(i + 6) == '_' && isHex(s, i + 2, i + 6)) {
+				result.append((char) Integer.parseInt(s.substring(i + 2, i + 6), 16));
+				i += 7;
+			} else {
+				result.append(ch);
+				i++;
 			}
+		}
+		return result.toString();
+	}
 
+	private static boolean isHex(String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (Character.digit(s.charAt(i), 16) == -1) {
+				return false;
+			}
 		}
-		return result;
+		return true;
 	}
 
-	private int parseColumn(String cellIdString) {
+	private static int parseColumn(String cellIdString) {
 		int column = 0;
 		for (int i = 0; i < cellIdString.length(); i++) {
 			char ch = cellIdString.charAt(i);
-			if (Character.isDigit(cellIdString.charAt(i))) {
+			if (Character.isDigit(ch)) {
 				return column - 1;
 			} else {
 				column *= 26;
@@ -215,351 +286,193 @@ public class QuickAndDirtyXlsxReader extends ArrayList<Sheet> {
 		return -1;
 	}
 
-	private static final HashMap<String, Integer> htmlEntities = new HashMap<>();
-	static {
-		htmlEntities.put("nbsp", 160);
-		htmlEntities.put("iexcl", 161);
-		htmlEntities.put("cent", 162);
-		htmlEntities.put("pound", 163);
-		htmlEntities.put("curren", 164);
-		htmlEntities.put("yen", 165);
-		htmlEntities.put("brvbar", 166);
-		htmlEntities.put("sect", 167);
-		htmlEntities.put("uml", 168);
-		htmlEntities.put("copy", 169);
-		htmlEntities.put("ordf", 170);
-		htmlEntities.put("laquo", 171);
-		htmlEntities.put("not", 172);
-		htmlEntities.put("shy", 173);
-		htmlEntities.put("reg", 174);
-		htmlEntities.put("macr", 175);
-		htmlEntities.put("deg", 176);
-		htmlEntities.put("plusmn", 177);
-		htmlEntities.put("sup2", 178);
-		htmlEntities.put("sup3", 179);
-		htmlEntities.put("acute", 180);
-		htmlEntities.put("micro", 181);
-		htmlEntities.put("para", 182);
-		htmlEntities.put("middot", 183);
-		htmlEntities.put("cedil", 184);
-		htmlEntities.put("sup1", 185);
-		htmlEntities.put("ordm", 186);
-		htmlEntities.put("raquo", 187);
-		htmlEntities.put("frac14", 188);
-		htmlEntities.put("frac12", 189);
-		htmlEntities.put("frac34", 190);
-		htmlEntities.put("iquest", 191);
-		htmlEntities.put("Agrave", 192);
-		htmlEntities.put("Aacute", 193);
-		htmlEntities.put("Acirc", 194);
-		htmlEntities.put("Atilde", 195);
-		htmlEntities.put("Auml", 196);
-		htmlEntities.put("Aring", 197);
-		htmlEntities.put("AElig", 198);
-		htmlEntities.put("Ccedil", 199);
-		htmlEntities.put("Egrave", 200);
-		htmlEntities.put("Eacute", 201);
-		htmlEntities.put("Ecirc", 202);
-		htmlEntities.put("Euml", 203);
-		htmlEntities.put("Igrave", 204);
-		htmlEntities.put("Iacute", 205);
-		htmlEntities.put("Icirc", 206);
-		htmlEntities.put("Iuml", 207);
-		htmlEntities.put("ETH", 208);
-		htmlEntities.put("Ntilde", 209);
-		htmlEntities.put("Ograve", 210);
-		htmlEntities.put("Oacute", 211);
-		htmlEntities.put("Ocirc", 212);
-		htmlEntities.put("Otilde", 213);
-		htmlEntities.put("Ouml", 214);
-		htmlEntities.put("times", 215);
-		htmlEntities.put("Oslash", 216);
-		htmlEntities.put("Ugrave", 217);
-		htmlEntities.put("Uacute", 218);
-		htmlEntities.put("Ucirc", 219);
-		htmlEntities.put("Uuml", 220);
-		htmlEntities.put("Yacute", 221);
-		htmlEntities.put("THORN", 222);
-		htmlEntities.put("szlig", 223);
-		htmlEntities.put("agrave", 224);
-		htmlEntities.put("aacute", 225);
-		htmlEntities.put("acirc", 226);
-		htmlEntities.put("atilde", 227);
-		htmlEntities.put("auml", 228);
-		htmlEntities.put("aring", 229);
-		htmlEntities.put("aelig", 230);
-		htmlEntities.put("ccedil", 231);
-		htmlEntities.put("egrave", 232);
-		htmlEntities.put("eacute", 233);
-		htmlEntities.put("ecirc", 234);
-		htmlEntities.put("euml", 235);
-		htmlEntities.put("igrave", 236);
-		htmlEntities.put("iacute", 237);
-		htmlEntities.put("icirc", 238);
-		htmlEntities.put("iuml", 239);
-		htmlEntities.put("eth", 240);
-		htmlEntities.put("ntilde", 241);
-		htmlEntities.put("ograve", 242);
-		htmlEntities.put("oacute", 243);
-		htmlEntities.put("ocirc", 244);
-		htmlEntities.put("otilde", 245);
-		htmlEntities.put("ouml", 246);
-		htmlEntities.put("divide", 247);
-		htmlEntities.put("oslash", 248);
-		htmlEntities.put("ugrave", 249);
-		htmlEntities.put("uacute", 250);
-		htmlEntities.put("ucirc", 251);
-		htmlEntities.put("uuml", 252);
-		htmlEntities.put("yacute", 253);
-		htmlEntities.put("thorn", 254);
-		htmlEntities.put("yuml", 255);
-		htmlEntities.put("fnof", 402);
-		htmlEntities.put("Alpha", 913);
-		htmlEntities.put("Beta", 914);
-		htmlEntities.put("Gamma", 915);
-		htmlEntities.put("Delta", 916);
-		htmlEntities.put("Epsilon", 917);
-		htmlEntities.put("Zeta", 918);
-		htmlEntities.put("Eta", 919);
-		htmlEntities.put("Theta", 920);
-		htmlEntities.put("Iota", 921);
-		htmlEntities.put("Kappa", 922);
-		htmlEntities.put("Lambda", 923);
-		htmlEntities.put("Mu", 924);
-		htmlEntities.put("Nu", 925);
-		htmlEntities.put("Xi", 926);
-		htmlEntities.put("Omicron", 927);
-		htmlEntities.put("Pi", 928);
-		htmlEntities.put("Rho", 929);
-		htmlEntities.put("Sigma", 931);
-		htmlEntities.put("Tau", 932);
-		htmlEntities.put("Upsilon", 933);
-		htmlEntities.put("Phi", 934);
-		htmlEntities.put("Chi", 935);
-		htmlEntities.put("Psi", 936);
-		htmlEntities.put("Omega", 937);
-		htmlEntities.put("alpha", 945);
-		htmlEntities.put("beta", 946);
-		htmlEntities.put("gamma", 947);
-		htmlEntities.put("delta", 948);
-		htmlEntities.put("epsilon", 949);
-		htmlEntities.put("zeta", 950);
-		htmlEntities.put("eta", 951);
-		htmlEntities.put("theta", 952);
-		htmlEntities.put("iota", 953);
-		htmlEntities.put("kappa", 954);
-		htmlEntities.put("lambda", 955);
-		htmlEntities.put("mu", 956);
-		htmlEntities.put("nu", 957);
-		htmlEntities.put("xi", 958);
-		htmlEntities.put("omicron", 959);
-		htmlEntities.put("pi", 960);
-		htmlEntities.put("rho", 961);
-		htmlEntities.put("sigmaf", 962);
-		htmlEntities.put("sigma", 963);
-		htmlEntities.put("tau", 964);
-		htmlEntities.put("upsilon", 965);
-		htmlEntities.put("phi", 966);
-		htmlEntities.put("chi", 967);
-		htmlEntities.put("psi", 968);
-		htmlEntities.put("omega", 969);
-		htmlEntities.put("thetasym", 977);
-		htmlEntities.put("upsih", 978);
-		htmlEntities.put("piv", 982);
-		htmlEntities.put("bull", 8226);
-		htmlEntities.put("hellip", 8230);
-		htmlEntities.put("prime", 8242);
-		htmlEntities.put("Prime", 8243);
-		htmlEntities.put("oline", 8254);
-		htmlEntities.put("frasl", 8260);
-		htmlEntities.put("weierp", 8472);
-		htmlEntities.put("image", 8465);
-		htmlEntities.put("real", 8476);
-		htmlEntities.put("trade", 8482);
-		htmlEntities.put("alefsym", 8501);
-		htmlEntities.put("larr", 8592);
-		htmlEntities.put("uarr", 8593);
-		htmlEntities.put("rarr", 8594);
-		htmlEntities.put("darr", 8595);
-		htmlEntities.put("harr", 8596);
-		htmlEntities.put("crarr", 8629);
-		htmlEntities.put("lArr", 8656);
-		htmlEntities.put("uArr", 8657);
-		htmlEntities.put("rArr", 8658);
-		htmlEntities.put("dArr", 8659);
-		htmlEntities.put("hArr", 8660);
-		htmlEntities.put("forall", 8704);
-		htmlEntities.put("part", 8706);
-		htmlEntities.put("exist", 8707);
-		htmlEntities.put("empty", 8709);
-		htmlEntities.put("nabla", 8711);
-		htmlEntities.put("isin", 8712);
-		htmlEntities.put("notin", 8713);
-		htmlEntities.put("ni", 8715);
-		htmlEntities.put("prod", 8719);
-		htmlEntities.put("sum", 8721);
-		htmlEntities.put("minus", 8722);
-		htmlEntities.put("lowast", 8727);
-		htmlEntities.put("radic", 8730);
-		htmlEntities.put("prop", 8733);
-		htmlEntities.put("infin", 8734);
-		htmlEntities.put("ang", 8736);
-		htmlEntities.put("and", 8743);
-		htmlEntities.put("or", 8744);
-		htmlEntities.put("cap", 8745);
-		htmlEntities.put("cup", 8746);
-		htmlEntities.put("int", 8747);
-		htmlEntities.put("there4", 8756);
-		htmlEntities.put("sim", 8764);
-		htmlEntities.put("cong", 8773);
-		htmlEntities.put("asymp", 8776);
-		htmlEntities.put("ne", 8800);
-		htmlEntities.put("equiv", 8801);
-		htmlEntities.put("le", 8804);
-		htmlEntities.put("ge", 8805);
-		htmlEntities.put("sub", 8834);
-		htmlEntities.put("sup", 8835);
-		htmlEntities.put("nsub", 8836);
-		htmlEntities.put("sube", 8838);
-		htmlEntities.put("supe", 8839);
-		htmlEntities.put("oplus", 8853);
-		htmlEntities.put("otimes", 8855);
-		htmlEntities.put("perp", 8869);
-		htmlEntities.put("sdot", 8901);
-		htmlEntities.put("lceil", 8968);
-		htmlEntities.put("rceil", 8969);
-		htmlEntities.put("lfloor", 8970);
-		htmlEntities.put("rfloor", 8971);
-		htmlEntities.put("lang", 9001);
-		htmlEntities.put("rang", 9002);
-		htmlEntities.put("loz", 9674);
-		htmlEntities.put("spades", 9824);
-		htmlEntities.put("clubs", 9827);
-		htmlEntities.put("hearts", 9829);
-		htmlEntities.put("diams", 9830);
-		htmlEntities.put("quot", 34);
-		htmlEntities.put("amp", 38);
-		htmlEntities.put("lt", 60);
-		htmlEntities.put("gt", 62);
-		htmlEntities.put("OElig", 338);
-		htmlEntities.put("oelig", 339);
-		htmlEntities.put("Scaron", 352);
-		htmlEntities.put("scaron", 353);
-		htmlEntities.put("Yuml", 376);
-		htmlEntities.put("circ", 710);
-		htmlEntities.put("tilde", 732);
-		htmlEntities.put("ensp", 8194);
-		htmlEntities.put("emsp", 8195);
-		htmlEntities.put("thinsp", 8201);
-		htmlEntities.put("zwnj", 8204);
-		htmlEntities.put("zwj", 8205);
-		htmlEntities.put("lrm", 8206);
-		htmlEntities.put("rlm", 8207);
-		htmlEntities.put("ndash", 8211);
-		htmlEntities.put("mdash", 8212);
-		htmlEntities.put("lsquo", 8216);
-		htmlEntities.put("rsquo", 8217);
-		htmlEntities.put("sbquo", 8218);
-		htmlEntities.put("ldquo", 8220);
-		htmlEntities.put("rdquo", 8221);
-		htmlEntities.put("bdquo", 8222);
-		htmlEntities.put("dagger", 8224);
-		htmlEntities.put("Dagger", 8225);
-		htmlEntities.put("permil", 8240);
-		htmlEntities.put("lsaquo", 8249);
-		htmlEntities.put("rsaquo", 8250);
-		htmlEntities.put("euro", 8364);
+	/**
+	 * Shared strings concatenated into one buffer, so a string only costs its characters and an offset until it is read
+	 */
+	private static class SharedStrings {
+		private final StringBuilder text = new StringBuilder();
+		private int[] ends = new int[1024];
+		private int size = 0;
+
+		void add(String string) {
+			if (size == ends.length) {
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			text.append(string);
+			ends[size++] = text.length();
+		}
+
+		String get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Shared string " + index + " does not exist");
+			}
+			return text.substring(index == 0 ? 0 : ends[index - 1], ends[index]);
+		}
 	}
 
-	public static String decode(String s) {
-		StringBuilder result = new StringBuilder(s.length());
-		int ampInd = s.indexOf("&");
-		int lastEnd = 0;
-		while (ampInd >= 0) {
-			int nextAmp = s.indexOf("&", ampInd + 1);
-			int nextSemi = s.indexOf(";", ampInd + 1);
-			if (nextSemi != -1 && (nextAmp == -1 || nextSemi < nextAmp)) {
-				int value = -1;
-				String escape = s.substring(ampInd + 1, nextSemi);
-				try {
-					if (escape.startsWith("#")) {
-						value = Integer.parseInt(escape.substring(1), 10);
-					} else {
-						if (htmlEntities.containsKey(escape)) {
-							value = htmlEntities.get(escape);
-						}
-					}
-				} catch (NumberFormatException ignored) {
-				}
-				result.append(s, lastEnd, ampInd);
-				lastEnd = nextSemi + 1;
-				if (value >= 0 && value <= 0xffff) {
-					result.append((char) value);
-				} else {
-					result.append("&").append(escape).append(";");
+	/**
+	 * Streams the rows of a worksheet from the zip file. Rows without values are skipped, and missing cells before a
+	 * value are filled with empty strings.
+	 */
+	private class XlsxRowIterator implements Iterator<Row> {
+		private final Sheet sheet;
+		private XMLStreamReader reader;
+		private Row next;
+
+		XlsxRowIterator(Sheet sheet, String entryName) {
+			this.sheet = sheet;
+			try {
+				reader = openEntry(entryName);
+				if (reader == null) {
+					throw new IOException("Sheet " + entryName + " not found");
 				}
+				next = readNextRow();
+			} catch (IOException | XMLStreamException e) {
+				throw new RuntimeException("Could not read sheet " + sheet.getName() + ": " + e.getMessage(), e);
 			}
-			ampInd = nextAmp;
 		}
-		result.append(s.substring(lastEnd));
-		return result.toString();
-	}
 
-	private void processWorkBook(InputStream inputStream) throws NumberFormatException, IOException {
-		BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-		String line;
-		while ((line = bufferedReader.readLine()) != null) {
-			for (String sheetTag : StringUtilities.multiFindBetween(line, "<sheet ", "/>")) {
-				String name = StringUtilities.findBetween(sheetTag, "name=\"", "\"");
-				String order = StringUtilities.findBetween(sheetTag, "sheetId=\"", "\"");
-				String rId = StringUtilities.findBetween(sheetTag, "r:id=\"", "\"");
-				Sheet sheet = rIdToSheet.get(rId);
-				sheet.setName(name);
-				sheet.order = Integer.parseInt(order);
-				nameToSheet.put(name, sheet);
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Row next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Row row = next;
+			try {
+				next = readNextRow();
+			} catch (XMLStreamException e) {
+				throw new RuntimeException("Could not read sheet " + sheet.getName() + ": " + e.getMessage(), e);
 			}
+			return row;
 		}
-	}
 
-	public Sheet getByName(String sheetName) {
-		return nameToSheet.get(sheetName);
+		private Row readNextRow() throws XMLStreamException {
+			while (reader != null && reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("row")) {
+					Row row = readRow();
+					if (!row.isEmpty()) {
+						return row;
+					}
+				}
+			}
+			if (reader != null) {
+				reader.close();
+				reader = null;
+			}
+			return null;
+		}
+
+		private Row readRow() throws XMLStreamException {
+			Row row = new Row(sheet);
+			int column = -1;
+			String type = null;
+			String value = null;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					switch (reader.getLocalName()) {
+						case "c":
+							String cellId = reader.getAttributeValue(null, "r");
+							column = cellId == null ? column + 1 : parseColumn(cellId);
+							type = reader.getAttributeValue(null, "t");
+							value = null;
+							break;
+						case "v":
+							value = reader.getElementText();
+							break;
+						case "is":
+							value = readText(reader, "is");
+							break;
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if (reader.getLocalName().equals("c")) {
+						if (value != null && !value.isEmpty() && column >= 0) {
+							if ("s".equals(type)) {
+								value = sharedStrings.get(Integer.parseInt(value.trim()));
+							} else if ("str".equals(type)) {
+								value = decodeEscapes(value);
+							}
+							for (int j = row.size(); j <= column; j++)
+								row.add("");
+							row.set(column, value);
+						}
+					} else if (reader.getLocalName().equals("row")) {
+						break;
+					}
+				}
+			}
+			return row;
+		}
 	}
 
-	public class Sheet extends ArrayList<Row> {
-		private static final long	serialVersionUID	= -8597151681911998153L;
-		private String				name;
-		private int					order;
-		private final Map<String, Integer> fieldName2ColumnIndex = new HashMap<>();
+	/**
+	 * A sheet of the workbook. Its rows are not kept in memory, but read again each time the sheet is iterated. The first
+	 * row is the header, used to look up values by field name.
+	 */
+	public class Sheet implements Iterable<Row> {
+		private final String name;
+		private final Function<Sheet, Iterator<Row>> rowSource;
+		private volatile Map<String, Integer> fieldName2ColumnIndex;
 
-		public boolean add(Row row) {
-			// Assume first row is the header, preprocess it
-			if (this.size() == 0) {
-				createFieldNameIndex(row);
-			}
-			return super.add(row);
+		Sheet(String name, Function<Sheet, Iterator<Row>> rowSource) {
+			this.name = name;
+			this.rowSource = rowSource;
 		}
 
 		public String getName() {
 			return name;
 		}
 
-		public void setName(String name) {
-			this.name = name;
+		@Override
+		public Iterator<Row> iterator() {
+			Iterator<Row> rows = rowSource.apply(this);
+			if (fieldName2ColumnIndex == null && rows.hasNext()) {
+				// Assume first row is the header, preprocess it
+				return new Iterator<Row>() {
+					private boolean first = true;
+
+					@Override
+					public boolean hasNext() {
+						return rows.hasNext();
+					}
+
+					@Override
+					public Row next() {
+						Row row = rows.next();
+						if (first) {
+							createFieldNameIndex(row);
+							first = false;
+						}
+						return row;
+					}
+				};
+			}
+			return rows;
 		}
 
 		private void createFieldNameIndex(List<String> row) {
+			Map<String, Integer> index = new HashMap<>();
 			int i = 0;
 			for (String header : row) {
-				fieldName2ColumnIndex.put(header, i);
+				index.put(header, i);
 				i += 1;
 			}
+			fieldName2ColumnIndex = index;
 		}
 
 		private Integer getFieldIndex(String fieldName) {
+			if (fieldName2ColumnIndex == null) {
+				Iterator<Row> rows = rowSource.apply(this);
+				createFieldNameIndex(rows.hasNext() ? rows.next() : new ArrayList<>());
+			}
 			return fieldName2ColumnIndex.get(fieldName);
 		}
 	}
-
 	public class Row extends ArrayList<String> {
 		private static final long	serialVersionUID	= -6391290892840364766L;
 		private final Sheet sheet;
@@ -592,7 +505,8 @@ public class QuickAndDirtyXlsxReader extends ArrayList<Sheet> {
 			if (value != null) {
 				// Ignore operators and spaces from double values
 				value = DOUBLE_IGNORE_PATTERN.matcher(value).replaceAll("");
-				return Double.parseDouble(value);
+				// An empty cell means the value is not known
+				return value.isEmpty() ? null : Double.parseDouble(value);
 			} else {
 				return null;
 			}
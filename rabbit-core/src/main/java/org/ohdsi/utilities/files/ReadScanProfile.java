@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a scan profile written by WriteScanProfile into the same sheets and rows as QuickAndDirtyXlsxReader, so that it
+ * can be used wherever a scan report is read. The file is memory mapped and the rows of a sheet are decoded from the
+ * buffer, using RowCodec, each time the sheet is iterated. Numbers are returned as text, like QuickAndDirtyXlsxReader does; NaN and infinite values as empty strings,
+ * the same as in the xlsx report.
+ */
+public class ReadScanProfile {
+
+    /**
+     * @return true if the file starts with the magic number of a scan profile
+     */
+    public static boolean isScanProfile(String filename) {
+        Path path = Paths.get(filename);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return new DataInputStream(inputStream).readInt() == WriteScanProfile.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static QuickAndDirtyXlsxReader read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("A scan profile cannot be larger than 2 GB: " + filename);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, filename);
+        }
+    }
+
+    private static QuickAndDirtyXlsxReader read(ByteBuffer buffer, String filename) throws IOException {
+        if (buffer.limit() < 20 || buffer.getInt(0) != WriteScanProfile.MAGIC || buffer.getInt(buffer.limit() - 4) != WriteScanProfile.MAGIC) {
+            throw new IOException("Not a complete scan profile: " + filename);
+        }
+        int version = buffer.getInt(4);
+        if (version != WriteScanProfile.VERSION) {
+            throw new IOException("Unsupported scan profile version " + version + ": " + filename);
+        }
+
+        QuickAndDirtyXlsxReader workbook = new QuickAndDirtyXlsxReader();
+        ByteBuffer index = buffer.duplicate();
+        index.position((int) buffer.getLong(buffer.limit() - 12));
+        int nSheets = index.getInt();
+        for (int i = 0; i < nSheets; i++) {
+            String name = readModifiedUtf8(index);
+            int offset = (int) index.getLong();
+            int nRows = index.getInt();
+            workbook.addSheet(name, sheet -> new RowIterator(workbook, sheet, buffer, offset, nRows));
+        }
+        return workbook;
+    }
+
+    private static String toCell(Object value) {
+        if (value == null) {
+            return "";
+        } else if (value instanceof Double) {
+            double number = (Double) value;
+            return Double.isNaN(number) || Double.isInfinite(number) ? "" : Double.toString(number);
+        } else {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Decodes the rows of a sheet from the buffer as they are iterated
+     */
+    private static class RowIterator implements Iterator<QuickAndDirtyXlsxReader.Row> {
+        private final QuickAndDirtyXlsxReader workbook;
+        private final QuickAndDirtyXlsxReader.Sheet sheet;
+        private final DataInputStream rows;
+        private final int nRows;
+        private int rowIndex = 0;
+
+        RowIterator(QuickAndDirtyXlsxReader workbook, QuickAndDirtyXlsxReader.Sheet sheet, ByteBuffer buffer, int offset, int nRows) {
+            this.workbook = workbook;
+            this.sheet = sheet;
+            ByteBuffer sheetBuffer = buffer.duplicate();
+            sheetBuffer.position(offset);
+            this.rows = new DataInputStream(new ByteBufferInputStream(sheetBuffer));
+            this.nRows = nRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rowIndex < nRows;
+        }
+
+        @Override
+        public QuickAndDirtyXlsxReader.Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            QuickAndDirtyXlsxReader.Row row = workbook.new Row(sheet);
+            try {
+                for (Object value : RowCodec.readRow(rows)) {
+                    row.add(toCell(value));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read sheet " + sheet.getName() + ": " + e.getMessage(), e);
+            }
+            rowIndex++;
+            return row;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    private static String readModifiedUtf8(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[2 + (buffer.getShort(buffer.position()) & 0xffff)];
+        buffer.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes rows of values in the binary form that is used by scan profiles (WriteScanProfile, ReadScanProfile) and by
+ * the temporary file in which WhiteRabbit keeps the results of scanned tables.
+ *
+ * All numbers are big-endian. A row is its number of values (int), followed by the values, each a type byte and:
+ * <ul>
+ * <li>NULL: nothing</li>
+ * <li>STRING: the length (int) and UTF-8 bytes of the string</li>
+ * <li>LONG: a long</li>
+ * <li>DOUBLE: a double</li>
+ * </ul>
+ */
+public final class RowCodec {
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+
+    private RowCodec() {
+    }
+
+    /**
+     * Integer and Long values are written as LONG, Double values as DOUBLE, null as NULL and other values as the STRING
+     * of their toString().
+     */
+    public static void writeRow(DataOutput out, List<?> values) throws IOException {
+        out.writeInt(values.size());
+        for (Object value : values) {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Integer || value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong(((Number) value).longValue());
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else {
+                // writeUTF is limited to 64KB
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(STRING);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * @return the values of the row: null, Long, Double or String
+     */
+    public static List<Object> readRow(DataInput in) throws IOException {
+        int nValues = in.readInt();
+        List<Object> values = new ArrayList<>(nValues);
+        for (int i = 0; i < nValues; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case NULL:
+                    values.add(null);
+                    break;
+                case LONG:
+                    values.add(in.readLong());
+                    break;
+                case DOUBLE:
+                    values.add(in.readDouble());
+                    break;
+                case STRING:
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    values.add(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                default:
+                    throw new IOException("Unknown value type " + type);
+            }
+        }
+        return values;
+    }
+}
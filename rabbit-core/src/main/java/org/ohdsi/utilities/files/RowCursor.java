@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.util.List;
+
+/**
+ * Forward-only view on the rows of a query or file. Unlike an Iterator of {@link Row} objects, the column layout is
+ * resolved once, and the cells of the current row are accessed by column index in a buffer that is reused for every
+ * row. Callers that need to keep a value beyond the next call to {@link #next()} should copy it.
+ *
+ * Typical use: resolve the indexes of the needed columns with {@link #indexOf(String)}, then loop over the rows with
+ * {@code while (cursor.next())} and read the cells with {@link #get(int)}.
+ */
+public interface RowCursor extends AutoCloseable {
+
+    /**
+     * @return the names of the columns, in column index order
+     */
+    List<String> getFieldNames();
+
+    /**
+     * @return the index of the column with the given name, or -1 if there is no such column
+     */
+    int indexOf(String fieldName);
+
+    /**
+     * Moves the cursor to the next row.
+     *
+     * @return false if there are no more rows
+     */
+    boolean next();
+
+    /**
+     * @return the value of the given column in the current row
+     */
+    String get(int columnIndex);
+
+    /**
+     * @return a copy of the current row as a Row object
+     */
+    default Row toRow() {
+        List<String> fieldNames = getFieldNames();
+        Row row = new Row();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            row.add(fieldNames.get(i), get(i));
+        }
+        return row;
+    }
+
+    @Override
+    void close();
+}
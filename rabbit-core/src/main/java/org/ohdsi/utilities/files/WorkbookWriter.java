@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A workbook that is written sheet by sheet and row by row, such as an xlsx file or a scan profile.
+ */
+public interface WorkbookWriter extends AutoCloseable {
+
+    /**
+     * Ends the current sheet, if any, and starts a new one.
+     */
+    void createSheet(String name) throws IOException;
+
+    /**
+     * Formats numbers in the given (zero based) columns as percentages, in the rows added after this call to the current
+     * sheet. Formats that do not have cell styles ignore this.
+     */
+    void setPercentageColumns(int... columns);
+
+    void addRow(List<?> values) throws IOException;
+
+    default void addRow(Object... values) throws IOException {
+        addRow(Arrays.asList(values));
+    }
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a scan profile: the sheets of a scan report in a compact binary file that can be read without unzipping or
+ * parsing XML (see ReadScanProfile). The file is written row by row, like WriteXlsxFile.
+ *
+ * All numbers are big-endian. The file starts with the magic number and the format version (both int), followed by the
+ * rows of all sheets, encoded by RowCodec.
+ * The rows are followed by the index of the sheets: the number of sheets (int) and for each sheet its name (modified
+ * UTF-8, as DataOutput.writeUTF), the offset of its first row (long) and its number of rows (int). The file ends with the
+ * offset of the index (long) and the magic number again.
+ */
+public class WriteScanProfile implements WorkbookWriter {
+    public static final String EXTENSION = ".scanprofile";
+    public static final int MAGIC = 0x57525350; // "WRSP"
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<Long> sheetOffsets = new ArrayList<>();
+    private final List<Integer> sheetRowCounts = new ArrayList<>();
+
+    public WriteScanProfile(String filename) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 65536));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    @Override
+    public void createSheet(String name) {
+        sheetNames.add(name);
+        sheetOffsets.add(getPosition());
+        sheetRowCounts.add(0);
+    }
+
+    @Override
+    public void setPercentageColumns(int... columns) {
+        // Not a property of the values
+    }
+
+    @Override
+    public void addRow(List<?> values) throws IOException {
+        if (sheetNames.isEmpty()) {
+            throw new IllegalStateException("No sheet has been created");
+        }
+        RowCodec.writeRow(out, values);
+        int last = sheetRowCounts.size() - 1;
+        sheetRowCounts.set(last, sheetRowCounts.get(last) + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = getPosition();
+            out.writeInt(sheetNames.size());
+            for (int i = 0; i < sheetNames.size(); i++) {
+                out.writeUTF(sheetNames.get(i));
+                out.writeLong(sheetOffsets.get(i));
+                out.writeInt(sheetRowCounts.get(i));
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private long getPosition() {
+        // DataOutputStream.size() stops counting at Integer.MAX_VALUE
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IllegalStateException("A scan profile cannot be larger than 2 GB");
+        }
+        return out.size();
+    }
+}
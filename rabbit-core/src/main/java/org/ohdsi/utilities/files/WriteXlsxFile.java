@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes an xlsx workbook row by row, directly into the zip file. Rows are not kept in memory, so the memory used does
+ * not depend on the size of the workbook. As a consequence, sheets have to be written one after the other, and the
+ * rows of a sheet from top to bottom.
+ *
+ * Strings are written as inline strings, so no shared string table is built up. Integer, Long and Double values are
+ * written as numbers, except NaN and infinity, which are written as empty strings. Other values are written as their
+ * toString(), and null as an empty string.
+ */
+public class WriteXlsxFile implements WorkbookWriter {
+    public static final int MAX_SHEET_NAME_LENGTH = 31;
+    public static final int MAX_CELL_LENGTH = 32767;
+
+    private static final String PERCENTAGE_FORMAT = "0.0%";
+    private static final int PERCENTAGE_STYLE = 1;
+
+    private final ZipOutputStream zipOutputStream;
+    private final Writer writer;
+    private final List<String> sheetNames = new ArrayList<>();
+    private boolean inSheet = false;
+    private int rowCount;
+    private int[] percentageColumns = new int[0];
+
+    public WriteXlsxFile(String filename) throws IOException {
+        this(new FileOutputStream(filename));
+    }
+
+    public WriteXlsxFile(OutputStream outputStream) {
+        zipOutputStream = new ZipOutputStream(outputStream);
+        writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream, StandardCharsets.UTF_8), 65536);
+    }
+
+    /**
+     * Ends the current sheet, if any, and starts a new one. Sheets appear in the workbook in the order they are created.
+     */
+    @Override
+    public void createSheet(String name) throws IOException {
+        if (name.length() > MAX_SHEET_NAME_LENGTH) {
+            throw new IllegalArgumentException("Sheet name is longer than " + MAX_SHEET_NAME_LENGTH + " characters: " + name);
+        }
+        if (sheetNames.stream().anyMatch(name::equalsIgnoreCase)) {
+            throw new IllegalArgumentException("The workbook already contains a sheet named " + name);
+        }
+        endSheet();
+        sheetNames.add(name);
+        zipOutputStream.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNames.size() + ".xml"));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        writer.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+        inSheet = true;
+        rowCount = 0;
+        percentageColumns = new int[0];
+    }
+
+    @Override
+    public void setPercentageColumns(int... columns) {
+        percentageColumns = columns.clone();
+        Arrays.sort(percentageColumns);
+    }
+
+    @Override
+    public void addRow(List<?> values) throws IOException {
+        if (!inSheet) {
+            throw new IllegalStateException("No sheet has been created");
+        }
+        rowCount++;
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(rowCount));
+        writer.write("\">");
+        for (int i = 0; i < values.size(); i++) {
+            writeCell(i, values.get(i));
+        }
+        writer.write("</row>");
+    }
+
+    private void writeCell(int column, Object value) throws IOException {
+        writer.write("<c r=\"");
+        writeColumnName(column);
+        writer.write(Integer.toString(rowCount));
+        writer.write('"');
+        if (Arrays.binarySearch(percentageColumns, column) >= 0) {
+            writer.write(" s=\"" + PERCENTAGE_STYLE + "\"");
+        }
+
+        if (value instanceof Integer || value instanceof Long) {
+            writer.write("><v>");
+            writer.write(Double.toString(((Number) value).doubleValue()));
+            writer.write("</v></c>");
+        } else if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+            writer.write("><v>");
+            writer.write(value.toString());
+            writer.write("</v></c>");
+        } else {
+            String string = value == null || value instanceof Double ? "" : value.toString();
+            if (string.length() > MAX_CELL_LENGTH) {
+                throw new IllegalArgumentException("The maximum length of cell contents (text) is " + MAX_CELL_LENGTH + " characters");
+            }
+            writer.write(" t=\"inlineStr\"><is><t");
+            if (!string.isEmpty() && (Character.isWhitespace(string.charAt(0)) || Character.isWhitespace(string.charAt(string.length() - 1)))) {
+                writer.write(" xml:space=\"preserve\"");
+            }
+            writer.write('>');
+            writeEscaped(string);
+            writer.write("</t></is></c>");
+        }
+    }
+
+    private void writeColumnName(int column) throws IOException {
+        if (column >= 26) {
+            writeColumnName(column / 26 - 1);
+        }
+        writer.write((char) ('A' + column % 26));
+    }
+
+    /*
+     * Characters that are not allowed in XML, and underscores that would otherwise be read as the start of such an
+     * escaped character, are escaped as _xHHHH_, the same as Excel does.
+     */
+    private void writeEscaped(String string) throws IOException {
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            switch (ch) {
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                case '\t':
+                case '\n':
+                case '\r':
+                    writer.write(ch);
+                    break;
+                case '_':
+                    if (isEscapedCharacter(string, i)) {
+                        writer.write("_x005F_");
+                    } else {
+                        writer.write(ch);
+                    }
+                    break;
+                default:
+                    if (ch < 0x20 || ch == 0xfffe || ch == 0xffff) {
+                        writer.write(String.format("_x%04X_", (int) ch));
+                    } else {
+                        writer.write(ch);
+                    }
+            }
+        }
+    }
+
+    private static boolean isEscapedCharacter(String string, int start) {
+        if (start + 7 > string.length() || string.charAt(start + 1) != 'x' || string.charAt(start + 6) != '_') {
+            return false;
+        }
+        for (int i = start + 2; i < start + 6; i++) {
+            if (Character.digit(string.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void endSheet() throws IOException {
+        if (inSheet) {
+            writer.write("</sheetData></worksheet>");
+            writer.flush();
+            zipOutputStream.closeEntry();
+            inSheet = false;
+        }
+    }
+
+    /**
+     * Ends the current sheet and writes the parts of the workbook that list the sheets.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            endSheet();
+            writeEntry("[Content_Types].xml", contentTypes());
+            writeEntry("_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                    "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                    "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+                    "</Relationships>");
+            writeEntry("xl/workbook.xml", workbook());
+            writeEntry("xl/_rels/workbook.xml.rels", workbookRelationships());
+            writeEntry("xl/styles.xml", styles());
+            writer.flush();
+            zipOutputStream.finish();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zipOutputStream.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zipOutputStream.closeEntry();
+    }
+
+    private String contentTypes() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+                "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+                "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+                "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" +
+                "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= sheetNames.size(); i++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return xml.append("</Types>").toString();
+    }
+
+    private String workbook() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" " +
+                "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int i = 1; i <= sheetNames.size(); i++) {
+            xml.append("<sheet name=\"").append(escapeAttribute(sheetNames.get(i - 1)))
+                    .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return xml.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRelationships() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheetNames.size(); i++) {
+            xml.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                    .append(i).append(".xml\"/>");
+        }
+        xml.append("<Relationship Id=\"rId").append(sheetNames.size() + 1)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+        return xml.append("</Relationships>").toString();
+    }
+
+    private static String styles() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">" +
+                "<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"" + PERCENTAGE_FORMAT + "\"/></numFmts>" +
+                "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/><family val=\"2\"/></font></fonts>" +
+                "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>" +
+                "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>" +
+                "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" +
+                "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>" +
+                "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>" +
+                "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>" +
+                "</styleSheet>";
+    }
+
+    private static String escapeAttribute(String string) {
+        return string.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
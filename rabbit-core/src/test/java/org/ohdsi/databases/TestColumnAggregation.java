@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.databases.configuration.DbType;
+import org.ohdsi.utilities.files.RowCursor;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestColumnAggregation {
+
+    private static final List<ColumnAggregation.Kind> KINDS = Arrays.asList(ColumnAggregation.Kind.TEXT, ColumnAggregation.Kind.NUMERIC);
+
+    @Test
+    void testAggregateQuery() {
+        String query = ColumnAggregation.getAggregateQuery(DbType.POSTGRESQL, "\"person\"", Arrays.asList("name", "age"), KINDS);
+
+        assertEquals("SELECT COUNT(*), COUNT(NULLIF(TRIM(\"name\"), '')), MAX(LENGTH(\"name\")), COUNT(DISTINCT \"name\"), COUNT(\"name\"), "
+                + "COUNT(\"age\"), MAX(LENGTH(CAST(\"age\" AS VARCHAR))), COUNT(DISTINCT \"age\"), COUNT(\"age\"), "
+                + "MIN(\"age\"), MAX(\"age\"), AVG(\"age\") FROM \"person\"", query);
+        assertTrue(ColumnAggregation.getAggregateQuery(DbType.SQL_SERVER, "person", Arrays.asList("name", "age"), KINDS)
+                .startsWith("SELECT COUNT_BIG(*), COUNT_BIG(NULLIF(LTRIM(RTRIM([name])), '')), MAX(LEN([name]))"));
+    }
+
+    @Test
+    void testValueFrequencyQueryIsLimited() {
+        assertTrue(ColumnAggregation.getValueFrequencyQuery(DbType.POSTGRESQL, "person", "name", 1000).endsWith(" LIMIT 1000"));
+        assertTrue(ColumnAggregation.getValueFrequencyQuery(DbType.ORACLE, "person", "name", 1000).endsWith(" FETCH FIRST 1000 ROWS ONLY"));
+        assertTrue(ColumnAggregation.getValueFrequencyQuery(DbType.SQL_SERVER, "person", "name", 1000).startsWith("SELECT TOP 1000 "));
+    }
+
+    @Test
+    void testReadAggregates() {
+        String[] values = {"3000000000",
+                "2999999000", "12", "40", "2999999999",
+                "2999000000", "3", "2999999999", "2999000000", "1", "999", "50.5"};
+        ColumnAggregation.Aggregates aggregates = ColumnAggregation.readAggregates(new SingleRowCursor(values), KINDS);
+
+        assertEquals(3_000_000_000L, aggregates.getRowCount());
+        assertEquals(1000, aggregates.getEmptyCount(0));
+        assertEquals(12, aggregates.getMaxLength(0));
+        assertEquals(41, aggregates.getDistinctCount(0));
+        assertEquals("", aggregates.getMinimum(0));
+        assertEquals(1_000_000L, aggregates.getEmptyCount(1));
+        assertEquals(3, aggregates.getMaxLength(1));
+        // Null is counted as one more distinct value
+        assertEquals(3_000_000_000L, aggregates.getDistinctCount(1));
+        assertEquals("1", aggregates.getMinimum(1));
+        assertEquals("999", aggregates.getMaximum(1));
+        assertEquals("50.5", aggregates.getAverage(1));
+    }
+
+    @Test
+    void testKindFromSqlType() {
+        assertEquals(ColumnAggregation.Kind.NUMERIC, ColumnAggregation.Kind.fromSqlType(Types.DECIMAL));
+        assertEquals(ColumnAggregation.Kind.DATE, ColumnAggregation.Kind.fromSqlType(Types.TIMESTAMP));
+        assertEquals(ColumnAggregation.Kind.TEXT, ColumnAggregation.Kind.fromSqlType(Types.NVARCHAR));
+        assertEquals(ColumnAggregation.Kind.NOT_AGGREGATED, ColumnAggregation.Kind.fromSqlType(Types.CLOB));
+    }
+
+    private static class SingleRowCursor implements RowCursor {
+        private final String[] values;
+        private boolean read = false;
+
+        SingleRowCursor(String[] values) {
+            this.values = values;
+        }
+
+        public List<String> getFieldNames() {
+            return Arrays.asList(values);
+        }
+
+        public int indexOf(String fieldName) {
+            return -1;
+        }
+
+        public boolean next() {
+            boolean hasRow = !read;
+            read = true;
+            return hasRow;
+        }
+
+        public String get(int columnIndex) {
+            return values[columnIndex];
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.utilities.StringUtilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestFieldInfo {
+
+    static ScanParameters scanParameters(boolean calculateNumericStats) {
+        return scanParameters(calculateNumericStats, false);
+    }
+
+    static ScanParameters scanParameters(boolean calculateNumericStats, boolean trackHeavyHitters) {
+        return new ScanParameters() {
+            public boolean doCalculateNumericStats() { return calculateNumericStats; }
+            public int getNumStatsSamplerSize() { return 100; }
+            public int getMaxValues() { return 1000; }
+            public boolean doScanValues() { return true; }
+            public int getMinCellCount() { return 0; }
+            public int getSampleSize() { return -1; }
+            public int getFetchSize() { return 0; }
+            public SamplingMethod getSamplingMethod() { return SamplingMethod.DEFAULT; }
+            public long getSamplingSeed() { return SamplingMethod.NO_SEED; }
+            public boolean doTrackHeavyHitters() { return trackHeavyHitters; }
+            public boolean doUseQuantileSketch() { return false; }
+        };
+    }
+
+    @Test
+    void testWeightedValuesMatchRepeatedValues() {
+        FieldInfo repeated = new FieldInfo(scanParameters(true), "field");
+        FieldInfo weighted = new FieldInfo(scanParameters(true), "field");
+        String[] values = {"12", "", "7", "12345"};
+        long[] counts = {300, 20, 1, 2000};
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < counts[i]; j++) {
+                repeated.processValue(values[i]);
+            }
+            weighted.processValue(values[i], counts[i]);
+        }
+        repeated.trim();
+        weighted.trim();
+
+        assertEquals(repeated.nProcessed, weighted.nProcessed);
+        assertEquals(repeated.emptyCount, weighted.emptyCount);
+        assertEquals(repeated.uniqueCount, weighted.uniqueCount);
+        assertEquals(repeated.sumLength, weighted.sumLength);
+        assertEquals(repeated.maxLength, weighted.maxLength);
+        assertEquals(repeated.getTypeDescription(), weighted.getTypeDescription());
+        assertEquals(repeated.getSortedValuesWithoutSmallValues(), weighted.getSortedValuesWithoutSmallValues());
+        assertEquals(repeated.average, weighted.average);
+        assertEquals(repeated.minimum, weighted.minimum);
+        assertEquals(repeated.maximum, weighted.maximum);
+    }
+
+    @Test
+    void testCountsAboveIntRange() {
+        FieldInfo fieldInfo = new FieldInfo(scanParameters(false), "field");
+        fieldInfo.processValue("a", 3_000_000_000L);
+        fieldInfo.processValue("b", 3_000_000_000L);
+        fieldInfo.processValue("c", 1);
+        fieldInfo.trim();
+
+        assertEquals(6_000_000_001L, fieldInfo.nProcessed);
+        assertEquals(3_000_000_000L, (long) fieldInfo.getSortedValuesWithoutSmallValues().get(0).getItem2());
+        assertEquals(3_000_000_000L, fieldInfo.valueCounts.getCount("b"));
+    }
+
+    @Test
+    void testDatabaseAggregates() {
+        FieldInfo fieldInfo = new FieldInfo(scanParameters(true), "field");
+        fieldInfo.processValue("12", 300);
+        fieldInfo.processValue("7", 200);
+        fieldInfo.trim();
+        fieldInfo.setDatabaseAggregates(1000, 100, 4, 50, "1", "1234", "104.5", false);
+
+        assertEquals(1000, fieldInfo.nProcessed);
+        assertEquals(0.1, fieldInfo.getFractionEmpty(), 1e-9);
+        assertEquals(50, fieldInfo.uniqueCount);
+        assertTrue(fieldInfo.hasValuesTrimmed());
+        assertEquals(1d, fieldInfo.minimum);
+        assertEquals(1234d, fieldInfo.maximum);
+        assertEquals(104.5, fieldInfo.average);
+        // Quartiles of the most frequent values only would be misleading
+        assertEquals(Double.NaN, fieldInfo.q2);
+    }
+
+    @Test
+    void testFreeTextWordCounts() {
+        FieldInfo fieldInfo = new FieldInfo(scanParameters(false), "notes");
+        String note = "The patient's condition improved; THE PATIENT'S family was informed. Follow-up in 2 weeks, "
+                + "no changes to the medication were needed at this time.";
+        for (int i = 0; i < ScanParameters.N_FOR_FREE_TEXT_CHECK + 10; i++) {
+            fieldInfo.processValue(note);
+        }
+        assertTrue(fieldInfo.isFreeText);
+        long n = ScanParameters.N_FOR_FREE_TEXT_CHECK + 10;
+        for (String word : StringUtilities.mapToWords(note.toLowerCase())) {
+            assertEquals(n * StringUtilities.mapToWords(note.toLowerCase()).stream().filter(word::equals).count(),
+                    fieldInfo.valueCounts.getCount(word), word);
+        }
+        assertEquals(n * 2, fieldInfo.valueCounts.getCount("patient's"));
+        assertEquals(0, fieldInfo.valueCounts.getCount("PATIENT'S"));
+    }
+
+    @Test
+    void testHeavyHitterWordCountsStayInexact() {
+        // More distinct values than the heavy hitter sketch can track, so their counts are estimates
+        FieldInfo values = new FieldInfo(scanParameters(false, true), "notes");
+        for (int i = 0; i <= ScanParameters.MAX_VALUES_IN_MEMORY; i++) {
+            values.processValue("code " + i);
+        }
+        assertTrue(values.hasValuesTrimmed());
+        assertFalse(values.isFreeText);
+
+        FieldInfo text = new FieldInfo(scanParameters(false, true), "notes");
+        String note = "The patient's condition improved; the patient's family was informed. Follow-up in 2 weeks, "
+                + "no changes to the medication were needed at this time.";
+        for (int i = 0; i < ScanParameters.N_FOR_FREE_TEXT_CHECK; i++) {
+            text.processValue(note);
+        }
+        assertTrue(text.isFreeText);
+
+        // Converting the estimated value counts to word counts must keep their errors
+        values.merge(text);
+        assertTrue(values.isFreeText);
+        assertTrue(values.hasValuesTrimmed());
+        assertTrue(values.getMaxOvercount("code") > 0);
+        assertTrue(values.getSortedValuesWithoutSmallValues().stream().anyMatch(pair -> pair.getItem1().equals("List truncated...")));
+    }
+
+    @Test
+    void testMergeMatchesSequentialScan() {
+        FieldInfo sequential = new FieldInfo(scanParameters(true), "field");
+        FieldInfo first = new FieldInfo(scanParameters(true), "field");
+        FieldInfo second = new FieldInfo(scanParameters(true), "field");
+        for (int i = 0; i < 5000; i++) {
+            String value = i % 10 == 0 ? "" : Integer.toString(i % 37);
+            sequential.processValue(value);
+            (i < 3000 ? first : second).processValue(value);
+        }
+        second.processValue("1.5");
+        sequential.processValue("1.5");
+        first.merge(second);
+        first.trim();
+        sequential.trim();
+
+        assertEquals(sequential.nProcessed, first.nProcessed);
+        assertEquals(sequential.emptyCount, first.emptyCount);
+        assertEquals(sequential.uniqueCount, first.uniqueCount);
+        assertEquals(sequential.sumLength, first.sumLength);
+        assertEquals(sequential.maxLength, first.maxLength);
+        assertEquals(sequential.getTypeDescription(), first.getTypeDescription());
+        assertEquals(sequential.getUniqueCountEstimate(), first.getUniqueCountEstimate());
+        assertEquals(sequential.getSortedValuesWithoutSmallValues(), first.getSortedValuesWithoutSmallValues());
+        assertEquals(sequential.minimum, first.minimum);
+        assertEquals(sequential.maximum, first.maximum);
+        assertEquals((double) sequential.average, (double) first.average, 1e-9);
+    }
+
+    @Test
+    void testWeightedReservoirKeepsUniformSample() {
+        UniformSamplingReservoir reservoir = new UniformSamplingReservoir(100);
+        reservoir.add(1, 10);
+        reservoir.add(2, 1000000);
+
+        assertEquals(1000010, reservoir.getCount());
+        assertEquals(100, reservoir.getSamples().size());
+        // the chance that one of the ten 1's is still in the reservoir is about 1 in 1000
+        assertTrue(reservoir.getSamples().stream().filter(v -> v == 1).count() <= 2);
+        assertEquals(1, reservoir.getPopulationMinimum());
+        assertEquals(2, reservoir.getPopulationMaximum());
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestQuantileSketch {
+
+    @Test
+    void testRankErrorWithinBound() {
+        int n = 1000000;
+        double[] values = new double[n];
+        Random random = new Random(1);
+        QuantileSketch first = new QuantileSketch(1000);
+        QuantileSketch second = new QuantileSketch(1000);
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextGaussian();
+            (i % 2 == 0 ? first : second).add(values[i]);
+        }
+        first.merge(second);
+        Arrays.sort(values);
+
+        assertEquals(n, first.getCount());
+        assertTrue(first.getRankErrorBound() < n / 20);
+        assertEquals(values[0], first.getPopulationMinimum());
+        assertEquals(1, first.getSampleStandardDeviation(), 0.01);
+        for (double rank : new double[]{0.01, 0.25, 0.5, 0.75, 0.99}) {
+            double estimate = first.getQuantile(rank);
+            long trueRank = Arrays.binarySearch(values, estimate);
+            assertEquals(rank * n, trueRank, first.getRankErrorBound() + 1);
+        }
+        long[] histogram = first.getHistogram(new double[]{0});
+        assertEquals(n, histogram[0] + histogram[1]);
+        assertEquals(n / 2.0, histogram[0], first.getRankErrorBound() + 1);
+    }
+
+    @Test
+    void testWeightedValuesAndExactQuantiles() {
+        QuantileSketch sketch = new QuantileSketch(100);
+        sketch.add(1, 10);
+        sketch.add(2, 20);
+        sketch.add(3, 10);
+        assertEquals(0, sketch.getRankErrorBound());
+        assertEquals(Arrays.asList(1d, 2d, 2d), sketch.getSampleQuartiles());
+        assertEquals(2, sketch.getPopulationMean(), 1e-9);
+
+        sketch.add(4, 1L << 40);
+        assertEquals(4, sketch.getQuantile(0.5));
+        assertTrue(sketch.getRetainedCount() < 10);
+    }
+
+    @Test
+    void testReservoirMerge() {
+        UniformSamplingReservoir first = new UniformSamplingReservoir(100);
+        UniformSamplingReservoir second = new UniformSamplingReservoir(100);
+        for (int i = 0; i < 30; i++) {
+            first.add(i);
+            second.add(i + 100);
+        }
+        first.merge(second);
+        assertEquals(60, first.getCount());
+        assertEquals(60, first.getSamples().size());
+
+        for (int i = 0; i < 1000; i++) {
+            second.add(200);
+        }
+        first.merge(second);
+        assertEquals(1090, first.getCount());
+        assertEquals(100, first.getSamples().size());
+        assertEquals(200, first.getPopulationMaximum());
+        long[] histogram = first.getHistogram(new double[]{100});
+        assertEquals(1090, histogram[0] + histogram[1], 1);
+    }
+}
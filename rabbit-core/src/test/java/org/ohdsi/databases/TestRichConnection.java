@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.databases.configuration.DbType;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestRichConnection {
+
+    @Test
+    void testParseEstimate() {
+        // Tables that were never analyzed
+        assertEquals(-1, RichConnection.parseEstimate(""));
+        assertEquals(-1, RichConnection.parseEstimate(null));
+        assertEquals(-1, RichConnection.parseEstimate("0"));
+        assertEquals(-1, RichConnection.parseEstimate("-1"));
+
+        assertEquals(1, RichConnection.parseEstimate("1"));
+        assertEquals(150312, RichConnection.parseEstimate("150312"));
+        assertEquals(1500000, RichConnection.parseEstimate("1.5E6"));
+        assertThrows(NumberFormatException.class, () -> RichConnection.parseEstimate("unknown"));
+    }
+
+    @Test
+    void testQueryEstimate() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:estimate", "SA", "")) {
+            DBConnection dbConnection = new DBConnection(connection, DbType.MYSQL, false);
+            dbConnection.execute("CREATE TABLE stats (table_name VARCHAR(20), row_count INTEGER)");
+            dbConnection.execute("INSERT INTO stats VALUES ('person', 1000), ('visit', NULL), ('note', -1)");
+
+            assertEquals(1000, RichConnection.queryEstimate(dbConnection, "SELECT row_count FROM stats WHERE table_name = 'person'"));
+            assertEquals(-1, RichConnection.queryEstimate(dbConnection, "SELECT row_count FROM stats WHERE table_name = 'visit'"));
+            assertEquals(-1, RichConnection.queryEstimate(dbConnection, "SELECT row_count FROM stats WHERE table_name = 'note'"));
+            // No statistics at all
+            assertEquals(-1, RichConnection.queryEstimate(dbConnection, "SELECT row_count FROM stats WHERE table_name = 'death'"));
+            // A query that fails is logged, and gives no estimate
+            assertEquals(-1, RichConnection.queryEstimate(dbConnection, "SELECT row_count FROM no_such_table"));
+        }
+    }
+}
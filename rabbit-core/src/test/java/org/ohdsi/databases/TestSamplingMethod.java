@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.databases.configuration.DbType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSamplingMethod {
+
+    @Test
+    void testDefaultMatchesEarlierQueries() {
+        assertEquals("SELECT * FROM person ORDER BY RANDOM() LIMIT 100",
+                SamplingMethod.DEFAULT.getSampleQuery(DbType.POSTGRESQL, "person", null, 1000, 100, SamplingMethod.NO_SEED));
+        assertEquals("SELECT * FROM [dbo].[person] TABLESAMPLE (100 ROWS)",
+                SamplingMethod.DEFAULT.getSampleQuery(DbType.SQL_SERVER, "dbo.person", null, 1000, 100, SamplingMethod.NO_SEED));
+    }
+
+    @Test
+    void testSeedAndPercentage() {
+        assertEquals("SELECT * FROM person TABLESAMPLE SYSTEM (10.000000) REPEATABLE (42)",
+                SamplingMethod.BLOCKS.getSampleQuery(DbType.POSTGRESQL, "person", null, 1000, 100, 42));
+        assertEquals("SELECT * FROM person SAMPLE BERNOULLI (0.000100)",
+                SamplingMethod.ROWS.getSampleQuery(DbType.SNOWFLAKE, "person", null, 1000000000, 1000, SamplingMethod.NO_SEED));
+    }
+
+    @Test
+    void testUnsupportedCombinations() {
+        assertNull(SamplingMethod.BLOCKS.getSampleQuery(DbType.MYSQL, "person", null, 1000, 100, SamplingMethod.NO_SEED));
+        assertNull(SamplingMethod.KEY_HASH.getSampleQuery(DbType.POSTGRESQL, "person", null, 1000, 100, SamplingMethod.NO_SEED));
+        assertNotNull(SamplingMethod.KEY_HASH.getSampleQuery(DbType.POSTGRESQL, "person", "person_id", 1000, 100, SamplingMethod.NO_SEED));
+    }
+
+    @Test
+    void testRepeatable() {
+        assertFalse(SamplingMethod.DEFAULT.isRepeatable(DbType.POSTGRESQL, 42));
+        assertFalse(SamplingMethod.RANDOM_ORDER.isRepeatable(DbType.MYSQL, 42));
+        assertFalse(SamplingMethod.ROWS.isRepeatable(DbType.POSTGRESQL, SamplingMethod.NO_SEED));
+        assertTrue(SamplingMethod.ROWS.isRepeatable(DbType.POSTGRESQL, 42));
+        assertFalse(SamplingMethod.ROWS.isRepeatable(DbType.MYSQL, 42));
+        assertTrue(SamplingMethod.BLOCKS.isRepeatable(DbType.SQL_SERVER, 42));
+        assertFalse(SamplingMethod.BLOCKS.isRepeatable(DbType.BIGQUERY, 42));
+        assertTrue(SamplingMethod.KEY_HASH.isRepeatable(DbType.REDSHIFT, SamplingMethod.NO_SEED));
+    }
+
+    @Test
+    void testFromName() {
+        assertEquals(SamplingMethod.KEY_HASH, SamplingMethod.fromName("key hash"));
+        assertEquals(SamplingMethod.ROWS, SamplingMethod.fromName(" rows"));
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ohdsi.databases.configuration.DbType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestTableStructureCache {
+    private static final String SCHEMA_QUERY = "SELECT TABLE_NAME,COLUMN_NAME,DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS " +
+            "WHERE TABLE_SCHEMA = 'PUBLIC' ORDER BY TABLE_NAME,ORDINAL_POSITION";
+
+    private Connection connection;
+    private final AtomicInteger nStatements = new AtomicInteger();
+    private DBConnection dbConnection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:structure_" + System.nanoTime(), "SA", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE person (person_id INTEGER, year_of_birth INTEGER, gender VARCHAR(10))");
+            statement.execute("CREATE TABLE visit (visit_id BIGINT, visit_date DATE)");
+            statement.execute("CREATE TABLE \"Care_Site\" (\"Care_Site_Id\" INTEGER, \"Name\" VARCHAR(50))");
+        }
+        dbConnection = new DBConnection(countStatements(connection), DbType.MYSQL, false);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void testCacheHit() {
+        TableStructureCache cache = new TableStructureCache();
+        List<String[]> person = cache.getColumns(dbConnection, SCHEMA_QUERY, "PERSON", String::toUpperCase);
+        assertEquals(1, nStatements.get());
+        assertEquals("PERSON_ID,YEAR_OF_BIRTH,GENDER", getNames(person));
+        assertEquals("INTEGER", person.get(0)[1]);
+
+        // The other tables come from the result of the first query
+        List<String[]> visit = cache.getColumns(dbConnection, SCHEMA_QUERY, "visit", String::toUpperCase);
+        assertEquals("VISIT_ID,VISIT_DATE", getNames(visit));
+        assertEquals("DATE", visit.get(1)[1]);
+        assertNotNull(cache.getColumns(dbConnection, SCHEMA_QUERY, "PERSON", String::toUpperCase));
+        assertEquals(1, nStatements.get());
+    }
+
+    @Test
+    void testMissFallsBackToTableQuery() {
+        RichConnection richConnection = new RichConnection(dbConnection, DbType.MYSQL);
+        ScanParameters scanParameters = TestFieldInfo.scanParameters(false);
+        assertEquals(3, dbConnection.fetchTableStructure(richConnection, "PUBLIC", "PERSON", 10, scanParameters).size());
+        assertEquals(1, nStatements.get());
+
+        // A table that is created after the schema was cached is not in the cache, and is queried by itself
+        dbConnection.execute("CREATE TABLE NOTE (NOTE_ID INTEGER, NOTE_TEXT VARCHAR(100))");
+        int nStatementsBefore = nStatements.get();
+        List<FieldInfo> note = dbConnection.fetchTableStructure(richConnection, "PUBLIC", "NOTE", 10, scanParameters);
+        assertEquals(nStatementsBefore + 1, nStatements.get());
+        assertEquals("NOTE_ID", note.get(0).name);
+        assertEquals("CHARACTER VARYING", note.get(1).type);
+        assertEquals(10, note.get(1).rowCount);
+    }
+
+    @Test
+    void testMixedCaseTableNames() {
+        // Quoted names keep their case in the catalog, they are matched after normalization of both sides
+        TableStructureCache cache = new TableStructureCache();
+        List<String[]> careSite = cache.getColumns(dbConnection, SCHEMA_QUERY, "Care_Site", String::toLowerCase);
+        assertEquals("Care_Site_Id,Name", getNames(careSite));
+        assertSame(careSite, cache.getColumns(dbConnection, SCHEMA_QUERY, "CARE_SITE", String::toLowerCase));
+        assertNotNull(cache.getColumns(dbConnection, SCHEMA_QUERY, "person", String::toLowerCase));
+
+        // Without normalization, only the exact name matches
+        TableStructureCache exactCache = new TableStructureCache();
+        assertNotNull(exactCache.getColumns(dbConnection, SCHEMA_QUERY, "Care_Site", name -> name));
+        assertNull(exactCache.getColumns(dbConnection, SCHEMA_QUERY, "care_site", name -> name));
+        assertEquals(2, nStatements.get());
+    }
+
+    private static String getNames(List<String[]> columns) {
+        return columns.stream().map(column -> column[0]).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Wraps the connection so that the statements created through it are counted.
+     */
+    private Connection countStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("createStatement") || method.getName().equals("prepareStatement")) {
+                        nStatements.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
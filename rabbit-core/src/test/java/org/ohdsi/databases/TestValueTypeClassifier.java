@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.databases;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.utilities.DateUtilities;
+import org.ohdsi.utilities.StringUtilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestValueTypeClassifier {
+
+    private static final String[] VALUES = {
+            "0", "-0", "+7", "-", "+", "123456789012", "9223372036854775807", "9223372036854775808",
+            "-9223372036854775808", "-9223372036854775809", "١٢٣", "1.5", ".5", "5.", ".", "-.5e-3", "1e", "1e+",
+            "1E10", "2.5f", "3d", "1.0D", "1x", "NaN", "-Infinity", "Infinity1", "0x1p3", "0x1", "1,5", "abc",
+            "2020-01-15", "2020/12/31", "2020-02-31", "2021-02-29", "1699-01-01", "2201-01-01", "2020-13-01",
+            "2020-00-10", "2020.01.15", "20200115", "12-31-99", "02/29/24", "13-01-20", "01-32-20", "01/01/ab",
+            "2020-01-1", "99999999", "12345678", "10000000"
+    };
+
+    @Test
+    void testSameResultsAsParsing() {
+        ValueTypeClassifier classifier = new ValueTypeClassifier();
+        for (String value : VALUES) {
+            classifier.classify(value, true, true, true);
+            assertEquals(StringUtilities.isLong(value), classifier.isLong(), value);
+            assertEquals(StringUtilities.isNumber(value), classifier.isNumber(), value);
+            assertEquals(StringUtilities.isDate(value), classifier.isDate(), value);
+            if (classifier.isLong()) {
+                assertEquals(Long.parseLong(value), classifier.getLongValue(), value);
+            }
+            if (classifier.isNumber()) {
+                assertEquals(Double.parseDouble(value), classifier.getDoubleValue(), value);
+            }
+            if (classifier.isDate()) {
+                assertEquals(DateUtilities.parseDate(value), classifier.getEpochDay(), value);
+            }
+        }
+    }
+
+    @Test
+    void testOnlyRequestedTypesAreChecked() {
+        ValueTypeClassifier classifier = new ValueTypeClassifier();
+        classifier.classify("12", false, true, false);
+        assertFalse(classifier.isLong());
+        assertTrue(classifier.isNumber());
+        assertEquals(12d, classifier.getDoubleValue());
+    }
+}
@@ -2,9 +2,14 @@ package org.ohdsi.rabbitInAHat.dataModel;
 
 import org.apache.commons.io.input.BOMInputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.utilities.files.WriteXlsxFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,4 +32,83 @@ class TestDatabase {
         Database ignoredWithBom = Database.generateModelFromCSV(inWithBom, testFileWithBom);
 
     }
+
+    @Test
+    void testGenerateModelFromScanReport(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("ScanReport.xlsx");
+        try (WriteXlsxFile xlsxFile = new WriteXlsxFile(file.toString())) {
+            xlsxFile.createSheet("Field Overview");
+            xlsxFile.addRow(Arrays.asList("Table", "Field", "Type", "Max length", "N rows", "N rows checked",
+                    "Fraction empty", "N unique values", "Fraction unique"));
+            xlsxFile.addRow("person", "id", "INT", 2, 13, 13, 0.0, 3, 0.2);
+            xlsxFile.addRow("person", "name", "VARCHAR", 1, 13, 13, 0.0, 1, 0.1);
+            xlsxFile.addRow("person", "deleted", "VARCHAR", 1, 13, 13, 1.0, 0, 0.0);
+            xlsxFile.createSheet("person");
+            xlsxFile.addRow("id", "Frequency", "name", "Frequency");
+            xlsxFile.addRow("1", 10, "a", 13);
+            xlsxFile.addRow("2", 2);
+            xlsxFile.addRow("List truncated...", "", "", "");
+            xlsxFile.addRow("3", 1);
+        }
+
+        Database database = Database.generateModelFromScanReport(file.toString());
+        assertEquals(1, database.getTables().size());
+        Table person = database.getTables().get(0);
+        assertEquals(3, person.getFields().size());
+
+        ValueCounts ids = person.getFields().get(0).getValueCounts();
+        assertEquals(3, ids.size());
+        assertEquals("1", ids.get(0).getValue());
+        assertEquals("3", ids.get(2).getValue());
+        assertEquals(13, ids.getTotalFrequency());
+
+        ValueCounts names = person.getFields().get(1).getValueCounts();
+        assertEquals(1, names.size());
+        assertEquals("a", names.getMostFrequentValue());
+
+        // A column that was deleted from the value sheet has no values
+        assertTrue(person.getFields().get(2).getValueCounts().isEmpty());
+    }
+
+    @Test
+    void testGenerateModelFromScanReportWithEstimatedUniqueCount(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("ScanReport.xlsx");
+        try (WriteXlsxFile xlsxFile = new WriteXlsxFile(file.toString())) {
+            xlsxFile.createSheet("Field Overview");
+            xlsxFile.addRow(Arrays.asList("Table", "Field", "Type", "Max length", "N rows", "N rows checked",
+                    "Fraction empty", "N unique values", "Fraction unique", "N unique values error"));
+            // A field with more values than fit in memory gets an estimated unique count
+            xlsxFile.addRow("visit", "code", "VARCHAR", 8, 200000, 200000, 0.0, 150312, 0.752, 0.016);
+            xlsxFile.addRow("visit", "type", "INT", 1, 200000, 200000, 0.0, 2, 0.0, "");
+            xlsxFile.createSheet("visit");
+            xlsxFile.addRow("code", "Frequency", "type", "Frequency");
+            xlsxFile.addRow("A1", 5, "1", 150000);
+            xlsxFile.addRow("List truncated...", "", "2", 50000);
+        }
+
+        Database database = Database.generateModelFromScanReport(file.toString());
+        Table visit = database.getTables().get(0);
+        Field code = visit.getFields().get(0);
+        assertEquals(150312, (int) code.getUniqueCount());
+        assertEquals(0.752, (double) code.getFractionUnique(), 1e-9);
+        assertEquals(2, (int) visit.getFields().get(1).getUniqueCount());
+    }
+
+    @Test
+    void testGenerateModelFromStructureOnlyScanReport(@TempDir Path tempDir) throws IOException {
+        // Parquet statistics give the fraction empty of some columns only, without scanning values
+        Path file = tempDir.resolve("ScanReport.xlsx");
+        try (WriteXlsxFile xlsxFile = new WriteXlsxFile(file.toString())) {
+            xlsxFile.createSheet("Field Overview");
+            xlsxFile.addRow(Arrays.asList("Table", "Field", "Description", "Type", "Max length", "N rows",
+                    "Fraction empty", "Min", "Max"));
+            xlsxFile.addRow("visit.parquet", "id", "", "INT64", 0, 250, 0.0, 0, 249);
+            xlsxFile.addRow("visit.parquet", "weight", "", "DOUBLE", 0, 250, "", "", "");
+        }
+
+        Database database = Database.generateModelFromScanReport(file.toString());
+        List<Field> fields = database.getTables().get(0).getFields();
+        assertEquals(0.0, fields.get(0).getFractionEmpty());
+        assertNull(fields.get(1).getFractionEmpty());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.collections;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestHyperLogLog {
+
+    @Test
+    void testSmallCardinalitiesAreExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("value" + (i % 300));
+        }
+        assertEquals(300, sketch.estimate());
+        assertEquals(0, sketch.getRelativeError());
+    }
+
+    @Test
+    void testLargeCardinalityAndMerge() {
+        int n = 1000000;
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (int i = 0; i < n; i++) {
+            // The two halves overlap by a quarter of the values
+            if (i < n * 5 / 8) {
+                first.add(Integer.toString(i));
+            }
+            if (i >= n * 3 / 8) {
+                second.add(Integer.toString(i));
+            }
+        }
+        first.merge(second);
+        assertEquals(n, first.estimate(), n * 4 * first.getRelativeError());
+        assertEquals(1 << HyperLogLog.DEFAULT_PRECISION, first.getMemoryFootprint());
+
+        HyperLogLog small = new HyperLogLog();
+        small.add("0");
+        small.add("extra");
+        small.merge(first);
+        assertEquals(n + 1, small.estimate(), n * 4 * small.getRelativeError());
+    }
+}
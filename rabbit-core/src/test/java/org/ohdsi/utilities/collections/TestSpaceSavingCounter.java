@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSpaceSavingCounter {
+
+    @Test
+    void testErrorBounds() {
+        int capacity = 100;
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        Map<String, Integer> trueCounts = new HashMap<>();
+        Random random = new Random(1);
+        long total = 0;
+        for (int i = 0; i < 100000; i++) {
+            // A few frequent values, mixed with many rare ones, and frequent values arriving late
+            String value = random.nextInt(4) == 0 ? "rare" + random.nextInt(20000) : "frequent" + random.nextInt(i < 50000 ? 10 : 20);
+            int inc = 1 + random.nextInt(3);
+            counter.add(value, inc);
+            trueCounts.merge(value, inc, Integer::sum);
+            total += inc;
+        }
+        assertEquals(capacity, counter.size());
+        assertFalse(counter.isExact());
+
+        for (Map.Entry<String, Integer> entry : trueCounts.entrySet()) {
+            long count = counter.getCount(entry.getKey());
+            if (entry.getValue() > total / capacity) {
+                assertTrue(count > 0, entry.getKey() + " should be tracked");
+            }
+            if (count > 0) {
+                assertTrue(count >= entry.getValue());
+                assertTrue(count - counter.getError(entry.getKey()) <= entry.getValue());
+            }
+        }
+
+        counter.keepTopN(20);
+        List<Pair<String, Long>> top = counter.getDecliningCounts(0, 100);
+        assertEquals(20, top.size());
+        for (Pair<String, Long> valueCount : top) {
+            assertTrue(valueCount.getItem1().startsWith("frequent"));
+        }
+        assertTrue(counter.add("new"));
+        assertTrue(counter.getCount("new") - counter.getError("new") <= 1);
+    }
+
+    @Test
+    void testExactWithinCapacity() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(counter.add("v" + i, i + 1));
+        }
+        assertFalse(counter.add("v9"));
+        assertTrue(counter.isExact());
+        assertEquals(11, counter.getCount("v9"));
+        assertEquals(0, counter.getError("v9"));
+        assertEquals(1, counter.getDecliningCounts(10, 10).size());
+    }
+
+    @Test
+    void testAddWithErrorAndFloor() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(10);
+        counter.raiseFloor(3);
+        assertFalse(counter.isExact());
+        counter.add("a", 10, 2);
+        counter.add("a", 5, 1);
+        assertEquals(18, counter.getCount("a"));
+        assertEquals(6, counter.getError("a"));
+        assertEquals(3, counter.getUntrackedBound());
+    }
+
+    @Test
+    void testMergeKeepsErrorBounds() {
+        int capacity = 50;
+        SpaceSavingCounter first = new SpaceSavingCounter(capacity);
+        SpaceSavingCounter second = new SpaceSavingCounter(capacity);
+        Map<String, Integer> trueCounts = new HashMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 20000; i++) {
+            // The second half has different frequent values than the first
+            String value = random.nextInt(3) == 0 ? "rare" + random.nextInt(5000) : "frequent" + (random.nextInt(10) + (i < 10000 ? 0 : 5));
+            (i < 10000 ? first : second).add(value);
+            trueCounts.merge(value, 1, Integer::sum);
+        }
+        first.merge(second);
+        assertEquals(capacity, first.size());
+        for (Map.Entry<String, Integer> entry : trueCounts.entrySet()) {
+            long count = first.getCount(entry.getKey());
+            if (entry.getKey().startsWith("frequent")) {
+                assertTrue(count > 0, entry.getKey() + " should be tracked");
+            }
+            if (count > 0) {
+                assertTrue(count >= entry.getValue());
+                assertTrue(count - first.getError(entry.getKey()) <= entry.getValue());
+            }
+        }
+
+        SpaceSavingCounter exact = new SpaceSavingCounter(10);
+        SpaceSavingCounter other = new SpaceSavingCounter(10);
+        exact.add("a", 2);
+        other.add("a", 3);
+        other.add("b");
+        exact.merge(other);
+        assertTrue(exact.isExact());
+        assertEquals(5, exact.getCount("a"));
+        assertEquals(1, exact.getCount("b"));
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestStringCounter {
+
+    @Test
+    void testCountsMatchCountingSet() {
+        for (boolean utf8Keys : new boolean[]{false, true}) {
+            StringCounter counter = new StringCounter(utf8Keys);
+            CountingSet<String> reference = new CountingSet<>();
+            String[] values = {"", "a", "ä", "日本", "😀", "value"};
+            for (int i = 0; i < 10000; i++) {
+                String value = values[i % values.length] + (i % 997);
+                assertEquals(reference.add(value, i % 3 + 1), counter.add(value, i % 3 + 1));
+            }
+            assertEquals(reference.size(), counter.size());
+            for (int i = 0; i < counter.size(); i++) {
+                assertEquals(reference.getCount(counter.getKey(i)), counter.getCount(i));
+                assertEquals(counter.getCount(i), counter.getCount(counter.getKey(i)));
+            }
+            assertEquals(0, counter.getCount("absent"));
+
+            // Equal counts are ordered as CountingSet's HashMap iterates them
+            List<String> expectedOrder = reference.key2count.entrySet().stream()
+                    .sorted(Comparator.<Map.Entry<String, CountingSet.Count>>comparingInt(e -> e.getValue().count).reversed())
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            List<String> order = counter.getDecliningCounts(0, Integer.MAX_VALUE).stream()
+                    .map(Pair::getItem1)
+                    .collect(Collectors.toList());
+            assertEquals(expectedOrder, order);
+            assertTrue(counter.getMemoryFootprint() > 0);
+        }
+    }
+
+    @Test
+    void testAddLowerCaseSpan() {
+        for (boolean utf8Keys : new boolean[]{false, true}) {
+            StringCounter counter = new StringCounter(utf8Keys);
+            String text = "The PATIENT's Ärztin said: the patient's ärztin";
+            assertTrue(counter.addLowerCase(text, 0, 3, 1));
+            assertFalse(counter.addLowerCase(text, 27, 30, 2));
+            assertTrue(counter.addLowerCase(text, 14, 20, 1));
+            assertFalse(counter.add("ärztin", 1));
+            assertEquals(3, counter.getCount("the"));
+            assertEquals(2, counter.getCount("ärztin"));
+            assertEquals(2, counter.size());
+        }
+    }
+
+    @Test
+    void testKeepTopNAndDecliningCounts() {
+        StringCounter counter = new StringCounter(true);
+        for (int i = 1; i <= 100; i++) {
+            counter.add("v" + i, i);
+        }
+        counter.keepTopN(200);
+        assertEquals(100, counter.size());
+
+        counter.keepTopN(10);
+        assertEquals(10, counter.size());
+        assertEquals(100, counter.getCount("v100"));
+        assertEquals(0, counter.getCount("v90"));
+        assertTrue(counter.add("v90", 1));
+
+        List<Pair<String, Long>> top = counter.getDecliningCounts(95, 3);
+        assertEquals(3, top.size());
+        assertEquals("v100", top.get(0).getItem1());
+        assertEquals(98, (long) top.get(2).getItem2());
+        assertEquals(6, counter.getDecliningCounts(95, 100).size());
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import org.ohdsi.utilities.StringUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark that compares reading all cells of a delimited file with {@link CsvReader} against the line-based path
+ * that was used before ({@link ReadTextFile}, {@link StringUtilities#safeSplit(String, char)} and removal of the
+ * enclosing quotes per cell). Not run by the test suite, see CONTRIBUTING.md for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvReaderBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void generateFile() throws IOException {
+        file = Files.createTempFile("benchmark", ".csv");
+        Random random = new Random(0);
+        WriteTextFile out = new WriteTextFile(file.toString());
+        out.writeln("person_id,gender,year_of_birth,race,comment");
+        for (int i = 0; i < rows; i++) {
+            out.writeln(i + "," + (random.nextBoolean() ? "M" : "F") + "," + (1920 + random.nextInt(100)) + ",\"" +
+                    random.nextInt(10) + "\",\"Comment, number " + random.nextInt(1000) + "\"");
+        }
+        out.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long readLines() {
+        long characters = 0;
+        for (String line : new ReadTextFile(file.toString())) {
+            List<String> row = StringUtilities.safeSplit(line, ',');
+            for (String column : row) {
+                if (column.startsWith("\"") && column.endsWith("\"") && column.length() > 1)
+                    column = column.substring(1, column.length() - 1);
+                column = column.replace("\\\"", "\"");
+                characters += column.length();
+            }
+        }
+        return characters;
+    }
+
+    @Benchmark
+    public long readCsv() {
+        long characters = 0;
+        try (CsvReader reader = new CsvReader(file, ',')) {
+            while (reader.next()) {
+                for (int i = 0; i < reader.getCellCount(); i++)
+                    characters += reader.getString(i).length();
+            }
+        }
+        return characters;
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestCsvReader {
+
+    private static final String CONTENT = "﻿id,name,comment\r\n" +
+            "1,\"Smith, John\",\"Says \"\"hi\"\"\"\r\n" +
+            "2,\"Multi\nline\",\"back\\\"slash\"\r\n" +
+            "3,Ünïcödé,\n" +
+            "4,\"\",\"x\"y\r" +
+            "5";
+
+    private static final String[][] EXPECTED = {
+            {"id", "name", "comment"},
+            {"1", "Smith, John", "Says \"hi\""},
+            {"2", "Multi\nline", "back\"slash"},
+            {"3", "Ünïcödé", ""},
+            {"4", "", "\"x\"y"},
+            {"5"}
+    };
+
+    @Test
+    void testReadFile(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("test.csv");
+        Files.write(file, CONTENT.getBytes(StandardCharsets.UTF_8));
+        // A tiny window forces records to cross window boundaries and the window to grow
+        for (int windowSize : new int[]{4, 1024}) {
+            try (CsvReader reader = new CsvReader(file, ',', windowSize)) {
+                assertRecords(reader);
+            }
+        }
+    }
+
+    @Test
+    void testReadStream() {
+        try (CsvReader reader = new CsvReader(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)), ',')) {
+            assertRecords(reader);
+        }
+    }
+
+    @Test
+    void testEmptyInput(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("empty.csv");
+        Files.write(file, new byte[0]);
+        try (CsvReader reader = new CsvReader(file, '\t')) {
+            assertFalse(reader.next());
+        }
+    }
+
+    private static void assertRecords(CsvReader reader) {
+        List<String[]> records = new ArrayList<>();
+        while (reader.next()) {
+            records.add(reader.getStrings());
+            assertEquals(records.size(), reader.getRecordNumber());
+        }
+        assertEquals(EXPECTED.length, records.size());
+        for (int i = 0; i < EXPECTED.length; i++)
+            assertArrayEquals(EXPECTED[i], records.get(i), Arrays.toString(records.get(i)));
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestDecompressingInputStream {
+
+    @Test
+    void testReadsAllMembers(@TempDir Path tempDir) throws IOException {
+        StringBuilder builder = new StringBuilder("id,name\n");
+        for (int i = 0; i < 200000; i++)
+            builder.append(i).append(",name").append(i % 100).append('\n');
+        byte[] first = builder.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] second = "200000,last\n".getBytes(StandardCharsets.UTF_8);
+
+        Path gzFile = tempDir.resolve("data.csv.gz");
+        // Two concatenated gzip members, as produced by e.g. appending to a .gz file or by pigz
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzFile))) {
+            out.write(first);
+        }
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzFile, StandardOpenOption.APPEND))) {
+            out.write(second);
+        }
+        Path bz2File = tempDir.resolve("data.csv.bz2");
+        try (OutputStream out = new BZip2CompressorOutputStream(Files.newOutputStream(bz2File))) {
+            out.write(first);
+            out.write(second);
+        }
+
+        byte[] expected = new byte[first.length + second.length];
+        System.arraycopy(first, 0, expected, 0, first.length);
+        System.arraycopy(second, 0, expected, first.length, second.length);
+        for (Path file : new Path[]{gzFile, bz2File}) {
+            try (InputStream in = new DecompressingInputStream(file)) {
+                assertArrayEquals(expected, IOUtils.toByteArray(in), file.toString());
+            }
+            try (CsvReader reader = new CsvReader(new DecompressingInputStream(file), ',')) {
+                long records = 0;
+                while (reader.next())
+                    records++;
+                assertEquals(200002, records);
+            }
+        }
+    }
+
+    @Test
+    void testFileNames() {
+        assertTrue(DecompressingInputStream.isCompressed("person.csv.GZ"));
+        assertFalse(DecompressingInputStream.isCompressed("person.csv"));
+        assertEquals("person.csv", DecompressingInputStream.removeCompressionExtension("person.csv.zst"));
+        assertEquals("person.csv", DecompressingInputStream.removeCompressionExtension("person.csv"));
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestQuickAndDirtyXlsxReader {
+
+    @Test
+    void testReadSharedStrings(@TempDir Path tempDir) throws IOException {
+        // POI writes strings to the shared strings table, unlike WriteXlsxFile
+        Path file = tempDir.resolve("test.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream outputStream = Files.newOutputStream(file)) {
+            XSSFSheet second = workbook.createSheet("Table & values");
+            XSSFSheet first = workbook.createSheet("Field Overview");
+            workbook.setSheetOrder("Field Overview", 0);
+            XSSFRow header = first.createRow(0);
+            header.createCell(0).setCellValue("Table");
+            header.createCell(1).setCellValue("Field");
+            header.createCell(2).setCellValue("N rows");
+            XSSFRow row = first.createRow(1);
+            row.createCell(0).setCellValue("person");
+            row.createCell(2).setCellValue(42);
+            first.createRow(2); // Empty rows are skipped
+            XSSFRow last = first.createRow(3);
+            last.createCell(0).setCellValue("person");
+            last.createCell(1).setCellValue("<id>");
+            second.createRow(0).createCell(3).setCellValue("Table");
+            workbook.write(outputStream);
+        }
+
+        try (QuickAndDirtyXlsxReader reader = new QuickAndDirtyXlsxReader(file.toString())) {
+            assertEquals(2, reader.size());
+            assertEquals("Table & values", reader.get(1).getName());
+            List<QuickAndDirtyXlsxReader.Row> rows = new ArrayList<>();
+            reader.get(0).forEach(rows::add);
+            assertEquals(3, rows.size());
+            assertEquals(Arrays.asList("Table", "Field", "N rows"), rows.get(0));
+            assertEquals(Arrays.asList("person", "", "42.0"), rows.get(1));
+            assertEquals(42, rows.get(1).getIntByHeaderName("N rows"));
+            assertEquals("<id>", rows.get(2).getByHeaderName("Field"));
+            assertNull(rows.get(2).getByHeaderName("N rows"));
+            assertNull(rows.get(2).getByHeaderName("Unknown"));
+
+            // Sheets are read again on every iteration, and can be iterated at the same time
+            for (QuickAndDirtyXlsxReader.Row row : reader.getByName("Field Overview")) {
+                assertEquals(Arrays.asList("", "", "", "Table"), reader.getByName("Table & values").iterator().next());
+                assertEquals("Table", row.get(0));
+                break;
+            }
+        }
+    }
+}
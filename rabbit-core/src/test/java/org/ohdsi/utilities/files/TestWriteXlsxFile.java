@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.utilities.files;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestWriteXlsxFile {
+
+    @Test
+    void testWriteWorkbook(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("test.xlsx");
+        try (WriteXlsxFile xlsxFile = new WriteXlsxFile(file.toString())) {
+            xlsxFile.createSheet("Overview");
+            xlsxFile.addRow(Arrays.asList("Name", "Count", "Fraction"));
+            xlsxFile.setPercentageColumns(2);
+            xlsxFile.addRow("a < b & \"c\"", 3, 0.25);
+            xlsxFile.addRow(" padded ", 5000000000L, Double.NaN);
+            xlsxFile.addRow("");
+            xlsxFile.createSheet("Values & more");
+            Object[] row = new Object[30];
+            Arrays.fill(row, "x");
+            row[29] = "control\u0001_x0041_";
+            xlsxFile.addRow(row);
+            xlsxFile.addRow(null, true, 'c');
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(file.toString())) {
+            assertEquals(2, workbook.getNumberOfSheets());
+            XSSFSheet overview = workbook.getSheetAt(0);
+            assertEquals("Overview", overview.getSheetName());
+            assertEquals(4, overview.getPhysicalNumberOfRows());
+            assertEquals("a < b & \"c\"", overview.getRow(1).getCell(0).getStringCellValue());
+            assertEquals(3, overview.getRow(1).getCell(1).getNumericCellValue());
+            XSSFCell fraction = overview.getRow(1).getCell(2);
+            assertEquals(0.25, fraction.getNumericCellValue());
+            assertEquals("0.0%", fraction.getCellStyle().getDataFormatString());
+            assertEquals("General", overview.getRow(0).getCell(2).getCellStyle().getDataFormatString());
+            assertEquals(" padded ", overview.getRow(2).getCell(0).getStringCellValue());
+            assertEquals(5000000000.0, overview.getRow(2).getCell(1).getNumericCellValue());
+            assertEquals(CellType.STRING, overview.getRow(2).getCell(2).getCellType());
+            assertEquals("", overview.getRow(2).getCell(2).getStringCellValue());
+
+            XSSFSheet values = workbook.getSheetAt(1);
+            assertEquals("Values & more", values.getSheetName());
+            assertEquals("control\u0001_x0041_", values.getRow(0).getCell(29).getStringCellValue());
+            assertEquals("AD1", values.getRow(0).getCell(29).getReference());
+            assertEquals("", values.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("true", values.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("c", values.getRow(1).getCell(2).getStringCellValue());
+        }
+
+        // The reader used to load scan reports into Rabbit-In-A-Hat
+        try (QuickAndDirtyXlsxReader reader = new QuickAndDirtyXlsxReader(file.toString())) {
+            List<QuickAndDirtyXlsxReader.Row> overview = new ArrayList<>();
+            reader.getByName("Overview").forEach(overview::add);
+            assertEquals(3, overview.size());
+            assertEquals(Arrays.asList("Name", "Count", "Fraction"), overview.get(0));
+            assertEquals("a < b & \"c\"", overview.get(1).getByHeaderName("Name"));
+            assertEquals(3, overview.get(1).getIntByHeaderName("Count"));
+            assertEquals(0.25, overview.get(1).getDoubleByHeaderName("Fraction"));
+            assertEquals(" padded ", overview.get(2).get(0));
+            QuickAndDirtyXlsxReader.Row values = reader.get(1).iterator().next();
+            assertEquals(30, values.size());
+            assertEquals("control\u0001_x0041_", values.get(29));
+        }
+    }
+}
@@ -105,6 +105,7 @@ public class RabbitInAHatMain implements ResizeListener {
 	private final static FileFilter FILE_FILTER_CSV = new FileNameExtensionFilter("Text Files (*.csv)", "csv");
 	private final static FileFilter FILE_FILTER_R = new FileNameExtensionFilter("R script (*.r)", "r");
 	private final static FileFilter FILE_FILTER_XLSX = new FileNameExtensionFilter("XLSX files (*.xlsx)", "xlsx");
+	private final static FileFilter FILE_FILTER_SCAN_PROFILE = new FileNameExtensionFilter("Scan profiles (*.scanprofile)", "scanprofile");
 
 	private JFrame					frame;
 	private JScrollPane				scrollPane1;
@@ -588,7 +589,7 @@ public class RabbitInAHatMain implements ResizeListener {
 	}
 
 	private void doOpenScanReport() {
-		String filename = chooseOpenPath(FILE_FILTER_XLSX);
+		String filename = chooseOpenPath(FILE_FILTER_XLSX, FILE_FILTER_SCAN_PROFILE);
 		if (filename != null) {
 			doOpenScanReport(filename);
 		}
@@ -49,6 +49,7 @@ import org.ohdsi.databases.configuration.*;
 import org.ohdsi.utilities.DirectoryUtilities;
 import org.ohdsi.utilities.StringUtilities;
 import org.ohdsi.utilities.Version;
+import org.ohdsi.utilities.files.DecompressingInputStream;
 import org.ohdsi.utilities.files.IniFile;
 import org.ohdsi.whiterabbit.fakeDataGenerator.FakeDataGenerator;
 import org.ohdsi.whiterabbit.gui.LocationsPanel;
@@ -81,6 +82,7 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 	public static final String TITLE_WARNINGS_ABOUT_DATABASE_CONFIGURATION = "There are warnings about the database configuration";
 	public static final String NAME_CHECKBOX_CALC_NUMERIC_STATS = "CheckboxCalcNumericStats";
 	public static final String NAME_STATS_SAMPLE_SIZE = "StatsSampleSize";
+	public static final String NAME_SCAN_THREADS = "ScanThreads";
 
 	private JFrame				frame;
 	private JTextField			scanReportFileField;
@@ -90,6 +92,7 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 	private JCheckBox			scanValueScan;
 	private JCheckBox 			calculateNumericStats;
 	private JComboBox<String>	numericStatsSampleSize;
+	private JSpinner			scanThreads;
 	private JSpinner			scanMinCellCount;
 	private JSpinner			generateRowCount;
 	private JComboBox<String>	targetType;
@@ -173,6 +176,10 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 					dbSettings.delimiter = iniFile.get("DELIMITER").charAt(0);
 			} else if (iniFile.get(DBConfiguration.DATA_TYPE_FIELD).equalsIgnoreCase(DbType.SAS7BDAT.label())) {
 				dbSettings.sourceType = DbSettings.SourceType.SAS_FILES;
+			} else if (iniFile.get(DBConfiguration.DATA_TYPE_FIELD).equalsIgnoreCase(DbType.AVRO.label())) {
+				dbSettings.sourceType = DbSettings.SourceType.AVRO_FILES;
+			} else if (iniFile.get(DBConfiguration.DATA_TYPE_FIELD).equalsIgnoreCase(DbType.PARQUET.label())) {
+				dbSettings.sourceType = DbSettings.SourceType.PARQUET_FILES;
 			} else {
 				dbSettings.sourceType = DbSettings.SourceType.DATABASE;
 				dbSettings.user = iniFile.get("USER_NAME");
@@ -224,6 +231,10 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 				String extension;
 				if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES) {
 					extension = ".csv";
+				} else if (dbSettings.sourceType == DbSettings.SourceType.AVRO_FILES) {
+					extension = ".avro";
+				} else if (dbSettings.sourceType == DbSettings.SourceType.PARQUET_FILES) {
+					extension = ".parquet";
 				} else {
 					extension = ".sas7bdat";
 				}
@@ -232,7 +243,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 					for (File file : folder.listFiles()) {
 						if (file.isFile()) {
 							String filename = file.getAbsolutePath();
-							if (filename.endsWith(extension)) {
+							if (filename.endsWith(extension) || (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES
+									&& DecompressingInputStream.removeCompressionExtension(filename).endsWith(extension))) {
 								dbSettings.tables.add(filename);
 							}
 						}
@@ -241,7 +253,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 			}
 		} else {
 			for (String table : iniFile.get("TABLES_TO_SCAN").split(",")) {
-				if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES)
+				if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES || dbSettings.sourceType == DbSettings.SourceType.AVRO_FILES
+						|| dbSettings.sourceType == DbSettings.SourceType.PARQUET_FILES)
 					table = iniFile.get("WORKING_FOLDER") + "/" + table;
 				dbSettings.tables.add(table);
 			}
@@ -271,6 +284,34 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 		sourceDataScan.setMaxValues(maxValues);
 		sourceDataScan.setCalculateNumericStats(calculateNumericStats);
 		sourceDataScan.setNumStatsSamplerSize(numericStatsSamplerSize);
+		if (!iniFile.get("SCAN_THREADS").isEmpty()) {
+			sourceDataScan.setScanThreads(Integer.parseInt(iniFile.get("SCAN_THREADS")));
+		}
+		if (!iniFile.get("PROFILING_THREADS").isEmpty()) {
+			sourceDataScan.setProfilingThreads(Integer.parseInt(iniFile.get("PROFILING_THREADS")));
+		}
+		if (!iniFile.get("ROW_BATCH_SIZE").isEmpty()) {
+			sourceDataScan.setRowBatchSize(Integer.parseInt(iniFile.get("ROW_BATCH_SIZE")));
+		}
+		if (!iniFile.get("ROW_QUEUE_DEPTH").isEmpty()) {
+			sourceDataScan.setRowQueueDepth(Integer.parseInt(iniFile.get("ROW_QUEUE_DEPTH")));
+		}
+		sourceDataScan.setEstimateRowCounts(iniFile.get("ESTIMATE_ROW_COUNTS").equalsIgnoreCase("yes"));
+		sourceDataScan.setAggregateInDatabase(iniFile.get("AGGREGATE_IN_DATABASE").equalsIgnoreCase("yes"));
+		sourceDataScan.setTrackHeavyHitters(iniFile.get("HEAVY_HITTERS").equalsIgnoreCase("yes"));
+		sourceDataScan.setUseQuantileSketch(iniFile.get("QUANTILE_SKETCH").equalsIgnoreCase("yes"));
+		if (!iniFile.get("SAMPLING_METHOD").isEmpty()) {
+			sourceDataScan.setSamplingMethod(SamplingMethod.fromName(iniFile.get("SAMPLING_METHOD")));
+		}
+		if (!iniFile.get("SAMPLING_SEED").isEmpty()) {
+			sourceDataScan.setSamplingSeed(Long.parseLong(iniFile.get("SAMPLING_SEED")));
+		}
+		if (!iniFile.get("FETCH_SIZE").isEmpty()) {
+			sourceDataScan.setFetchSize(Integer.parseInt(iniFile.get("FETCH_SIZE")));
+		}
+		String scanProfile = iniFile.get("SCAN_PROFILE");
+		sourceDataScan.setWriteScanProfile(scanProfile.equalsIgnoreCase("yes") || scanProfile.equalsIgnoreCase("only"));
+		sourceDataScan.setWriteXlsxReport(!scanProfile.equalsIgnoreCase("only"));
 		reportFilePath = iniFile.get("WORKING_FOLDER") + "/" + SourceDataScan.SCAN_REPORT_FILE_NAME;
 		sourceDataScan.process(dbSettings, reportFilePath);
 	}
@@ -399,6 +440,13 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 		scanOptionsLowerPanel.add(numericStatsSampleSize);
 		scanOptionsLowerPanel.add(Box.createHorizontalGlue());
 
+		scanOptionsLowerPanel.add(new JLabel("Scan threads "));
+		scanThreads = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+		scanThreads.setName(NAME_SCAN_THREADS);
+		scanThreads.setToolTipText("Number of database tables that are scanned in parallel, each over its own connection, or of threads scanning parts of a large delimited text file");
+		scanOptionsLowerPanel.add(scanThreads);
+		scanOptionsLowerPanel.add(Box.createHorizontalGlue());
+
 		southPanel.add(scanOptionsLowerPanel);
 
 		southPanel.add(Box.createVerticalStrut(3));
@@ -658,7 +706,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 	private void pickTables() {
 		DbSettings sourceDbSettings = getSourceDbSettings(null);
 		if (sourceDbSettings != null) {
-			if (sourceDbSettings.sourceType == DbSettings.SourceType.CSV_FILES || sourceDbSettings.sourceType == DbSettings.SourceType.SAS_FILES) {
+			if (sourceDbSettings.sourceType == DbSettings.SourceType.CSV_FILES || sourceDbSettings.sourceType == DbSettings.SourceType.SAS_FILES
+					|| sourceDbSettings.sourceType == DbSettings.SourceType.AVRO_FILES || sourceDbSettings.sourceType == DbSettings.SourceType.PARQUET_FILES) {
 				JFileChooser fileChooser = getjFileChooser(sourceDbSettings, locationsPanel);
 
 				int returnVal = fileChooser.showDialog(frame, "Select tables");
@@ -699,9 +748,13 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 		fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
 
 		if (sourceDbSettings.sourceType == DbSettings.SourceType.CSV_FILES) {
-			fileChooser.setFileFilter(new FileNameExtensionFilter(DELIMITED_TEXT_FILES, "csv", "txt"));
+			fileChooser.setFileFilter(new FileNameExtensionFilter(DELIMITED_TEXT_FILES, "csv", "txt", "gz", "bz2", "zst"));
 		} else if (sourceDbSettings.sourceType == DbSettings.SourceType.SAS_FILES) {
 			fileChooser.setFileFilter(new FileNameExtensionFilter("SAS Data Files", DbType.SAS7BDAT.name().toLowerCase()));
+		} else if (sourceDbSettings.sourceType == DbSettings.SourceType.AVRO_FILES) {
+			fileChooser.setFileFilter(new FileNameExtensionFilter("Avro Data Files", DbType.AVRO.name().toLowerCase()));
+		} else if (sourceDbSettings.sourceType == DbSettings.SourceType.PARQUET_FILES) {
+			fileChooser.setFileFilter(new FileNameExtensionFilter("Parquet Data Files", DbType.PARQUET.name().toLowerCase()));
 		}
 		return fileChooser;
 	}
@@ -731,6 +784,12 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
             } else if (sourceType.equalsIgnoreCase(DbType.SAS7BDAT.label())) {
                 dbSettings.sourceType = DbSettings.SourceType.SAS_FILES;
                 dbSettings.dbType = DbType.SAS7BDAT;
+            } else if (sourceType.equalsIgnoreCase(DbType.AVRO.label())) {
+                dbSettings.sourceType = DbSettings.SourceType.AVRO_FILES;
+                dbSettings.dbType = DbType.AVRO;
+            } else if (sourceType.equalsIgnoreCase(DbType.PARQUET.label())) {
+                dbSettings.sourceType = DbSettings.SourceType.PARQUET_FILES;
+                dbSettings.dbType = DbType.PARQUET;
             } else {
                 dbSettings.sourceType = DbSettings.SourceType.DATABASE;
                 dbSettings.user = locationsPanel.getSourceUserField();
@@ -778,7 +837,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 			return;
 		}
 		String folder = locationsPanel.getFolderField().getText();
-		if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES || dbSettings.sourceType == DbSettings.SourceType.SAS_FILES) {
+		if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES || dbSettings.sourceType == DbSettings.SourceType.SAS_FILES
+				|| dbSettings.sourceType == DbSettings.SourceType.AVRO_FILES || dbSettings.sourceType == DbSettings.SourceType.PARQUET_FILES) {
 			if (new File(folder).exists()) {
 				String message = "Folder " + folder + " found";
 				JOptionPane.showMessageDialog(frame, StringUtilities.wordWrap(message, 80), "Working folder found", JOptionPane.INFORMATION_MESSAGE);
@@ -960,7 +1020,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 
 	private void scanRun() {
 		if (tables.size() == 0) {
-			if (locationsPanel.sourceIsFiles() || locationsPanel.sourceIsSas()) {
+			if (locationsPanel.sourceIsFiles() || locationsPanel.sourceIsSas() || locationsPanel.sourceIsAvro()
+					|| locationsPanel.sourceIsParquet()) {
 				String message = "No files selected for scanning";
 				JOptionPane.showMessageDialog(frame, StringUtilities.wordWrap(message, 80), "No files selected", JOptionPane.ERROR_MESSAGE);
 				return;
@@ -985,7 +1046,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 				scanValueScan.isSelected(),
 				Integer.parseInt(scanMinCellCount.getValue().toString()),
 				calculateNumericStats.isSelected(),
-				numStatsSamplerSize
+				numStatsSamplerSize,
+				Integer.parseInt(scanThreads.getValue().toString())
 		);
 		scanscanRunner.run();
 	}
@@ -1005,13 +1067,14 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 
 		SourceDataScan sourceDataScan = new SourceDataScan();
 
-		public ScanRunner(int maxRows, int maxValues, boolean scanValues, int minCellCount, boolean calculateNumericStats, int numericStatsSampleSize) {
+		public ScanRunner(int maxRows, int maxValues, boolean scanValues, int minCellCount, boolean calculateNumericStats, int numericStatsSampleSize, int scanThreads) {
 			sourceDataScan.setSampleSize(maxRows);
 			sourceDataScan.setScanValues(scanValues);
 			sourceDataScan.setMinCellCount(minCellCount);
 			sourceDataScan.setMaxValues(maxValues);
 			sourceDataScan.setCalculateNumericStats(calculateNumericStats);
 			sourceDataScan.setNumStatsSamplerSize(numericStatsSampleSize);
+			sourceDataScan.setScanThreads(scanThreads);
 		}
 
 		public void run() {
@@ -1021,7 +1084,8 @@ public class WhiteRabbitMain implements ActionListener, PanelsManager {
 				DbSettings dbSettings = getSourceDbSettings(null);
 				if (dbSettings != null) {
 					for (String table : tables) {
-						if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES || dbSettings.sourceType == DbSettings.SourceType.SAS_FILES)
+						if (dbSettings.sourceType == DbSettings.SourceType.CSV_FILES || dbSettings.sourceType == DbSettings.SourceType.SAS_FILES
+								|| dbSettings.sourceType == DbSettings.SourceType.AVRO_FILES || dbSettings.sourceType == DbSettings.SourceType.PARQUET_FILES)
 							table = locationsPanel.getFolderField().getText() + "/" + table;
 						dbSettings.tables.add(table);
 					}
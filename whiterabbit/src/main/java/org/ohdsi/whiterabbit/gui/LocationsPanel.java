@@ -66,6 +66,8 @@ public class LocationsPanel extends JPanel {
     private SourcePanel sourcePanel;
     private boolean sourceIsFiles = true;
     private boolean sourceIsSas = false;
+    private boolean sourceIsAvro = false;
+    private boolean sourceIsParquet = false;
 
     private final transient PanelsManager panelsManager;
 
@@ -198,13 +200,23 @@ public class LocationsPanel extends JPanel {
         return sourceType.equalsIgnoreCase(DbType.SAS7BDAT.label());
     }
 
+    private boolean sourceIsAvro(String sourceType) {
+        return sourceType.equalsIgnoreCase(DbType.AVRO.label());
+    }
+
+    private boolean sourceIsParquet(String sourceType) {
+        return sourceType.equalsIgnoreCase(DbType.PARQUET.label());
+    }
+
     private boolean sourceIsDatabase(String sourceType) {
-        return (!sourceIsFiles(sourceType) && !sourceIsSas(sourceType));
+        return (!sourceIsFiles(sourceType) && !sourceIsSas(sourceType) && !sourceIsAvro(sourceType) && !sourceIsParquet(sourceType));
     }
 
     private void createDatabaseFields(String selectedSourceType) {
         sourceIsFiles = sourceIsFiles(selectedSourceType);
         sourceIsSas = sourceIsSas(selectedSourceType);
+        sourceIsAvro = sourceIsAvro(selectedSourceType);
+        sourceIsParquet = sourceIsParquet(selectedSourceType);
         boolean sourceIsDatabase = sourceIsDatabase(selectedSourceType);
 
         sourcePanel.addReplacable(new JLabel(LABEL_SERVER_LOCATION));
@@ -315,6 +327,14 @@ public class LocationsPanel extends JPanel {
         return sourceIsSas;
     }
 
+    public boolean sourceIsAvro() {
+        return sourceIsAvro;
+    }
+
+    public boolean sourceIsParquet() {
+        return sourceIsParquet;
+    }
+
     public String getSourceServerField() {
         return sourceServerField.getText();
     }
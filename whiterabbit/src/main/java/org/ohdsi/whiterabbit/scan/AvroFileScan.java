@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.databases.ScanParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Scans an Avro container file. The fields are taken from the schema in the file header, so when values are not
+ * scanned, no data block is read. Values are decoded with their types: integers, floating point numbers and dates are
+ * passed to the FieldInfo objects as such, instead of being parsed from their text.
+ *
+ * Only the top-level fields of the records are profiled; nested records, arrays and maps are counted as their JSON
+ * text. When all records are scanned, the file is divided into byte ranges that are scanned by separate threads. A
+ * range covers the data blocks of which the sync marker that precedes them lies within the range (the same way Hadoop
+ * splits Avro files), so every block is read exactly once.
+ */
+class AvroFileScan {
+    static final long DEFAULT_MIN_SPLIT_SIZE = 64L * 1024 * 1024;
+    private static final int SPLITS_PER_THREAD = 4;
+
+    private static final Conversions.DecimalConversion DECIMAL_CONVERSION = new Conversions.DecimalConversion();
+
+    private final File file;
+    private final ScanParameters scanParameters;
+    private final int nThreads;
+    private final long minSplitSize;
+
+    AvroFileScan(File file, ScanParameters scanParameters, int nThreads) {
+        this(file, scanParameters, nThreads, DEFAULT_MIN_SPLIT_SIZE);
+    }
+
+    AvroFileScan(File file, ScanParameters scanParameters, int nThreads, long minSplitSize) {
+        this.file = file;
+        this.scanParameters = scanParameters;
+        this.nThreads = Math.max(1, nThreads);
+        this.minSplitSize = Math.max(1, minSplitSize);
+    }
+
+    /**
+     * Scans the file, or only its schema if values are not scanned.
+     *
+     * @return the FieldInfo objects in the order of the fields in the schema. These have not been trimmed yet.
+     */
+    List<FieldInfo> process() {
+        Schema schema;
+        try (DataFileReader<GenericRecord> reader = openReader()) {
+            schema = reader.getSchema();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (schema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("The schema of " + file + " is not a record schema");
+        }
+        if (!scanParameters.doScanValues()) {
+            List<FieldInfo> fieldInfos = createFieldInfos(schema);
+            for (int i = 0; i < fieldInfos.size(); i++) {
+                fieldInfos.get(i).type = getTypeName(schema.getFields().get(i).schema());
+            }
+            return fieldInfos;
+        }
+
+        long length = file.length();
+        int nSplits = (int) Math.max(1, Math.min((long) nThreads * SPLITS_PER_THREAD, length / minSplitSize));
+        if (scanParameters.getSampleSize() != -1 || nThreads == 1 || nSplits == 1) {
+            return scan(schema, 0, length, scanParameters.getSampleSize());
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(nThreads, nSplits));
+        try {
+            List<Future<List<FieldInfo>>> futures = new ArrayList<>(nSplits);
+            for (int i = 0; i < nSplits; i++) {
+                final long start = length * i / nSplits;
+                final long end = length * (i + 1) / nSplits;
+                futures.add(executorService.submit(() -> scan(schema, start, end, -1)));
+            }
+            List<FieldInfo> fieldInfos = futures.get(0).get();
+            for (int i = 1; i < nSplits; i++) {
+                List<FieldInfo> splitFieldInfos = futures.get(i).get();
+                for (int j = 0; j < fieldInfos.size(); j++) {
+                    fieldInfos.get(j).merge(splitFieldInfos.get(j));
+                }
+            }
+            return fieldInfos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private DataFileReader<GenericRecord> openReader() throws IOException {
+        return new DataFileReader<>(file, new GenericDatumReader<>());
+    }
+
+    private List<FieldInfo> createFieldInfos(Schema schema) {
+        List<FieldInfo> fieldInfos = new ArrayList<>(schema.getFields().size());
+        for (Schema.Field field : schema.getFields()) {
+            FieldInfo fieldInfo = new FieldInfo(scanParameters, field.name());
+            fieldInfo.label = field.doc();
+            fieldInfos.add(fieldInfo);
+        }
+        return fieldInfos;
+    }
+
+    /**
+     * Scans the data blocks of which the preceding sync marker lies in [start, end), up to maxRecords records (-1 for
+     * no maximum).
+     */
+    private List<FieldInfo> scan(Schema schema, long start, long end, long maxRecords) {
+        List<FieldInfo> fieldInfos = createFieldInfos(schema);
+        List<Schema.Field> fields = schema.getFields();
+        try (DataFileReader<GenericRecord> reader = openReader()) {
+            if (start > reader.tell()) {
+                reader.sync(start);
+            }
+            GenericRecord record = null;
+            long nRecords = 0;
+            while (reader.hasNext() && !reader.pastSync(end) && (maxRecords == -1 || nRecords < maxRecords)) {
+                record = reader.next(record);
+                nRecords++;
+                for (int i = 0; i < fieldInfos.size(); i++) {
+                    processValue(fieldInfos.get(i), fields.get(i).schema(), record.get(i));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return fieldInfos;
+    }
+
+    static void processValue(FieldInfo fieldInfo, Schema schema, Object value) {
+        if (value == null) {
+            fieldInfo.processValue("");
+            return;
+        }
+        if (schema.getType() == Schema.Type.UNION) {
+            schema = schema.getTypes().get(GenericData.get().resolveUnion(schema, value));
+        }
+        LogicalType logicalType = schema.getLogicalType();
+        switch (schema.getType()) {
+            case INT:
+                int intValue = (Integer) value;
+                if (logicalType instanceof LogicalTypes.Date) {
+                    fieldInfo.processDate(LocalDate.ofEpochDay(intValue));
+                } else if (logicalType instanceof LogicalTypes.TimeMillis) {
+                    fieldInfo.processValue(LocalTime.ofNanoOfDay(intValue * 1_000_000L).toString());
+                } else {
+                    fieldInfo.processLong(intValue);
+                }
+                break;
+            case LONG:
+                long longValue = (Long) value;
+                if (logicalType instanceof LogicalTypes.TimestampMillis) {
+                    fieldInfo.processValue(Instant.ofEpochMilli(longValue).toString());
+                } else if (logicalType instanceof LogicalTypes.TimestampMicros) {
+                    fieldInfo.processValue(ofEpochMicros(longValue).toString());
+                } else if (logicalType instanceof LogicalTypes.LocalTimestampMillis) {
+                    fieldInfo.processValue(LocalDateTime.ofInstant(Instant.ofEpochMilli(longValue), ZoneOffset.UTC).toString());
+                } else if (logicalType instanceof LogicalTypes.LocalTimestampMicros) {
+                    fieldInfo.processValue(LocalDateTime.ofInstant(ofEpochMicros(longValue), ZoneOffset.UTC).toString());
+                } else if (logicalType instanceof LogicalTypes.TimeMicros) {
+                    fieldInfo.processValue(LocalTime.ofNanoOfDay(longValue * 1_000L).toString());
+                } else {
+                    fieldInfo.processLong(longValue);
+                }
+                break;
+            case FLOAT:
+            case DOUBLE:
+                fieldInfo.processDouble(((Number) value).doubleValue(), value.toString());
+                break;
+            case BYTES:
+            case FIXED:
+                if (logicalType instanceof LogicalTypes.Decimal) {
+                    BigDecimal decimal = value instanceof ByteBuffer
+                            ? DECIMAL_CONVERSION.fromBytes(((ByteBuffer) value).duplicate(), schema, logicalType)
+                            : DECIMAL_CONVERSION.fromFixed((GenericFixed) value, schema, logicalType);
+                    if (decimal.scale() <= 0 && decimal.abs().compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0) {
+                        fieldInfo.processLong(decimal.longValueExact());
+                    } else {
+                        fieldInfo.processDouble(decimal.doubleValue(), decimal.toPlainString());
+                    }
+                } else {
+                    fieldInfo.processValue(GenericData.get().toString(value));
+                }
+                break;
+            case STRING:
+            case ENUM:
+            case BOOLEAN:
+                fieldInfo.processValue(value.toString());
+                break;
+            default:
+                // Records, arrays and maps
+                fieldInfo.processValue(GenericData.get().toString(value));
+        }
+    }
+
+    private static Instant ofEpochMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    /**
+     * Returns the type of the field as declared in the schema: the logical type if there is one, and the non-null type
+     * of a union of null and one other type.
+     */
+    static String getTypeName(Schema schema) {
+        if (schema.getType() == Schema.Type.UNION) {
+            List<Schema> types = new ArrayList<>(schema.getTypes());
+            types.removeIf(type -> type.getType() == Schema.Type.NULL);
+            if (types.size() != 1) {
+                return schema.getType().getName();
+            }
+            schema = types.get(0);
+        }
+        return schema.getLogicalType() != null ? schema.getLogicalType().getName() : schema.getType().getName();
+    }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.databases.ScanParameters;
+import org.ohdsi.utilities.files.CsvReader;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Scans all records of a large delimited file with several threads. The part of the file after the header is divided
+ * into byte ranges, each of which is profiled by its own set of FieldInfo objects; the results are merged in file
+ * order at the end.
+ *
+ * A range must start at a record boundary, but from an arbitrary offset it is impossible to tell whether a line break
+ * ends a record or lies within a quoted cell. The start of each range is therefore found speculatively: the first
+ * line after the nominal offset is taken if the records that follow it have as many cells as the header. Each range
+ * is read up to the first record that starts at or after the end of the range, so if all boundaries were right, every
+ * range stops exactly where the next one starts. When a range stops elsewhere, its successor was started inside a
+ * record; that range is then scanned again from where its predecessor actually stopped, so the result is always the
+ * same as reading the file from start to end.
+ */
+class ChunkedCsvScan {
+    static final long DEFAULT_MIN_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int RESYNC_RECORDS = 16;
+    private static final int RESYNC_MAX_LINES = 1000;
+    private static final int RESYNC_WINDOW_SIZE = 1024 * 1024;
+
+    private final Path file;
+    private final char delimiter;
+    private final ScanParameters scanParameters;
+    private final List<String> fieldNames;
+    private final int nThreads;
+    private final long minChunkSize;
+
+    ChunkedCsvScan(Path file, char delimiter, ScanParameters scanParameters, List<String> fieldNames, int nThreads) {
+        this(file, delimiter, scanParameters, fieldNames, nThreads, DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    ChunkedCsvScan(Path file, char delimiter, ScanParameters scanParameters, List<String> fieldNames, int nThreads,
+                   long minChunkSize) {
+        this.file = file;
+        this.delimiter = delimiter;
+        this.scanParameters = scanParameters;
+        this.fieldNames = fieldNames;
+        this.nThreads = Math.max(1, nThreads);
+        this.minChunkSize = Math.max(1, minChunkSize);
+    }
+
+    /**
+     * @return true if the data of the given size is large enough to be divided over more than one chunk
+     */
+    boolean isWorthSplitting(long dataSize) {
+        return nThreads > 1 && dataSize >= 2 * minChunkSize;
+    }
+
+    /**
+     * Scans the records from dataStart, the offset of the first record after the header, to the end of the file.
+     *
+     * @return the merged FieldInfo objects, in the order of the field names. These have not been trimmed yet.
+     */
+    List<FieldInfo> process(long dataStart, long fileSize) {
+        long dataSize = fileSize - dataStart;
+        int nChunks = (int) Math.max(1, Math.min((long) nThreads * CHUNKS_PER_THREAD, dataSize / minChunkSize));
+        long[] starts = new long[nChunks + 1];
+        starts[0] = dataStart;
+        for (int i = 1; i < nChunks; i++) {
+            starts[i] = Math.max(starts[i - 1], findRecordStart(dataStart + dataSize * i / nChunks));
+        }
+        starts[nChunks] = fileSize;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(nThreads, nChunks));
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>(nChunks);
+            for (int i = 0; i < nChunks; i++) {
+                final long start = starts[i];
+                final long end = starts[i + 1];
+                futures.add(executorService.submit(() -> scan(start, end)));
+            }
+            List<FieldInfo> fieldInfos = null;
+            long expectedStart = dataStart;
+            for (int i = 0; i < nChunks; i++) {
+                Chunk chunk = futures.get(i).get();
+                if (chunk.start != expectedStart) {
+                    // The speculative boundary was inside a record, so scan this range again from the right offset
+                    chunk = scan(expectedStart, chunk.end);
+                }
+                if (fieldInfos == null) {
+                    fieldInfos = chunk.fieldInfos;
+                } else {
+                    for (int j = 0; j < fieldInfos.size(); j++) {
+                        fieldInfos.get(j).merge(chunk.fieldInfos.get(j));
+                    }
+                }
+                expectedStart = chunk.stop;
+            }
+            return fieldInfos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the offset of the first line after the given offset that is followed by records with the expected
+     * number of cells, or of the first line if there is no such line nearby.
+     */
+    long findRecordStart(long offset) {
+        long firstLine = -1;
+        long candidate = offset;
+        for (int line = 0; line < RESYNC_MAX_LINES; line++) {
+            try (CsvReader reader = new CsvReader(file, delimiter, candidate, Long.MAX_VALUE, RESYNC_WINDOW_SIZE)) {
+                if (!reader.skipLine()) {
+                    return firstLine == -1 ? reader.getPosition() : firstLine;
+                }
+                candidate = reader.getPosition();
+                if (firstLine == -1) {
+                    firstLine = candidate;
+                }
+                boolean consistent = true;
+                for (int i = 0; i < RESYNC_RECORDS && consistent && reader.next(); i++) {
+                    consistent = reader.getCellCount() == fieldNames.size();
+                }
+                if (consistent) {
+                    return candidate;
+                }
+            }
+        }
+        return firstLine;
+    }
+
+    private Chunk scan(long start, long end) {
+        List<FieldInfo> fieldInfos = new ArrayList<>(fieldNames.size());
+        for (String fieldName : fieldNames) {
+            fieldInfos.add(new FieldInfo(scanParameters, fieldName));
+        }
+        try (CsvReader reader = new CsvReader(file, delimiter, start, end, CsvReader.DEFAULT_WINDOW_SIZE)) {
+            while (reader.next()) {
+                if (reader.getCellCount() == fieldInfos.size()) { // Else there appears to be a formatting error, so skip
+                    for (int i = 0; i < fieldInfos.size(); i++) {
+                        fieldInfos.get(i).processValue(reader.getString(i));
+                    }
+                }
+            }
+            return new Chunk(start, end, reader.getPosition(), fieldInfos);
+        }
+    }
+
+    private static class Chunk {
+        final long start;
+        final long end;
+        // Offset of the first record that was not read, which is where the next range should start
+        final long stop;
+        final List<FieldInfo> fieldInfos;
+
+        Chunk(long start, long end, long stop, List<FieldInfo> fieldInfos) {
+            this.start = start;
+            this.end = end;
+            this.stop = stop;
+            this.fieldInfos = fieldInfos;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.DummyRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.databases.ScanParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Scans a Parquet file with the Apache Parquet library. The columns, their types and the row count are taken from the
+ * footer of the file, so when values are not scanned, no data page is read; the null counts and minimum and maximum
+ * values in the statistics of the footer are then also passed on, as these cover all rows. When values are scanned,
+ * every column is read separately, straight into its own FieldInfo, so the columns can be scanned by separate threads
+ * without merging anything afterwards. Column chunks that the statistics show to contain only nulls are not read.
+ */
+class ParquetFileScan {
+    private static final int JULIAN_DAY_OF_EPOCH = 2440588;
+
+    private final File file;
+    private final ScanParameters scanParameters;
+    private final int nThreads;
+
+    ParquetFileScan(File file, ScanParameters scanParameters, int nThreads) {
+        this.file = file;
+        this.scanParameters = scanParameters;
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Scans the file, or only its footer if values are not scanned.
+     *
+     * @return the FieldInfo objects in the order of the columns in the file. These have not been trimmed yet.
+     */
+    List<FieldInfo> process() {
+        ParquetMetadata footer;
+        try (ParquetFileReader reader = openReader()) {
+            footer = reader.getFooter();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<ColumnDescriptor> columns = footer.getFileMetaData().getSchema().getColumns();
+        long rowCount = footer.getBlocks().stream().mapToLong(BlockMetaData::getRowCount).sum();
+        List<FieldInfo> fieldInfos = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            FieldInfo fieldInfo = new FieldInfo(scanParameters, String.join(".", columns.get(i).getPath()));
+            fieldInfo.rowCount = rowCount;
+            if (!scanParameters.doScanValues()) {
+                fieldInfo.type = getTypeName(columns.get(i).getPrimitiveType());
+                addStatistics(fieldInfo, footer, i);
+            }
+            fieldInfos.add(fieldInfo);
+        }
+        if (!scanParameters.doScanValues()) {
+            return fieldInfos;
+        }
+
+        int nColumnThreads = Math.min(nThreads, columns.size());
+        if (nColumnThreads <= 1) {
+            for (int i = 0; i < columns.size(); i++) {
+                readColumn(footer, i, fieldInfos.get(i));
+            }
+            return fieldInfos;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(nColumnThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                final int columnIndex = i;
+                futures.add(executorService.submit(() -> readColumn(footer, columnIndex, fieldInfos.get(columnIndex))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return fieldInfos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private ParquetFileReader openReader() throws IOException {
+        // The plain configuration keeps the reader away from the Hadoop configuration files and file systems
+        ParquetReadOptions options = ParquetReadOptions.builder(new PlainParquetConfiguration()).build();
+        return new ParquetFileReader(new LocalInputFile(file.toPath()), options);
+    }
+
+    /**
+     * Passes the values of a column to its FieldInfo, in the order of the rows, up to the sample size. Every column has
+     * its own reader, which only reads the pages of that column.
+     */
+    private void readColumn(ParquetMetadata footer, int columnIndex, FieldInfo fieldInfo) {
+        MessageType schema = footer.getFileMetaData().getSchema();
+        ColumnDescriptor column = schema.getColumns().get(columnIndex);
+        MessageType projection = getProjection(schema, column);
+        long maxValues = scanParameters.getSampleSize();
+        long nValues = 0;
+        try (ParquetFileReader reader = openReader()) {
+            reader.setRequestedSchema(projection);
+            List<BlockMetaData> rowGroups = footer.getBlocks();
+            for (int i = 0; i < rowGroups.size() && (maxValues == -1 || nValues < maxValues); i++) {
+                ColumnChunkMetaData chunk = rowGroups.get(i).getColumns().get(columnIndex);
+                long limit = maxValues == -1 ? chunk.getValueCount() : Math.min(chunk.getValueCount(), maxValues - nValues);
+                if (limit == 0) {
+                    continue;
+                } else if (chunk.getStatistics().isNumNullsSet() && chunk.getStatistics().getNumNulls() == chunk.getValueCount()) {
+                    fieldInfo.processValue("", limit);
+                } else {
+                    PageReadStore pages = reader.readRowGroup(i);
+                    ColumnReader columnReader = new ColumnReadStoreImpl(pages, new DummyRecordConverter(projection).getRootConverter(),
+                            projection, footer.getFileMetaData().getCreatedBy()).getColumnReader(column);
+                    for (long j = 0; j < limit; j++) {
+                        if (columnReader.getCurrentDefinitionLevel() < column.getMaxDefinitionLevel()) {
+                            fieldInfo.processValue("");
+                        } else {
+                            processValue(fieldInfo, convert(readValue(columnReader, column.getPrimitiveType()), column.getPrimitiveType()));
+                        }
+                        columnReader.consume();
+                    }
+                }
+                nValues += limit;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the schema with only the given column, and the groups that contain it
+     */
+    private static MessageType getProjection(MessageType schema, ColumnDescriptor column) {
+        String[] path = column.getPath();
+        Type type = column.getPrimitiveType();
+        for (int i = path.length - 1; i > 0; i--) {
+            type = schema.getType(Arrays.copyOf(path, i)).asGroupType().withNewFields(type);
+        }
+        return new MessageType(schema.getName(), type);
+    }
+
+    /**
+     * Passes the number of nulls and the minimum and maximum of the statistics of all column chunks to the FieldInfo,
+     * as far as all chunks have them.
+     */
+    private static void addStatistics(FieldInfo fieldInfo, ParquetMetadata footer, int columnIndex) {
+        PrimitiveType type = footer.getFileMetaData().getSchema().getColumns().get(columnIndex).getPrimitiveType();
+        Statistics<?> statistics = Statistics.createStats(type);
+        long nullCount = 0;
+        boolean hasMinMax = true;
+        for (BlockMetaData rowGroup : footer.getBlocks()) {
+            ColumnChunkMetaData chunk = rowGroup.getColumns().get(columnIndex);
+            Statistics<?> chunkStatistics = chunk.getStatistics();
+            if (!chunkStatistics.isNumNullsSet()) {
+                nullCount = -1;
+            } else if (nullCount != -1) {
+                nullCount += chunkStatistics.getNumNulls();
+            }
+            if (chunkStatistics.isNumNullsSet() && chunkStatistics.getNumNulls() == chunk.getValueCount()) {
+                continue;
+            }
+            if (chunkStatistics.hasNonNullValue()) {
+                statistics.mergeStatistics(chunkStatistics);
+            } else {
+                hasMinMax = false;
+            }
+        }
+        if (nullCount != -1) {
+            // The statistics have checked every row for nulls
+            fieldInfo.nProcessed = fieldInfo.rowCount;
+            fieldInfo.emptyCount = nullCount;
+        }
+        if (hasMinMax && statistics.hasNonNullValue()) {
+            fieldInfo.minimum = toReportValue(convert(statistics.genericGetMin(), type));
+            fieldInfo.maximum = toReportValue(convert(statistics.genericGetMax(), type));
+        } else {
+            fieldInfo.minimum = "";
+            fieldInfo.maximum = "";
+        }
+    }
+
+    /**
+     * @return the logical type of the column if it has one, or else its physical type
+     */
+    private static String getTypeName(PrimitiveType type) {
+        LogicalTypeAnnotation logicalType = type.getLogicalTypeAnnotation();
+        if (logicalType instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation) {
+            LogicalTypeAnnotation.IntLogicalTypeAnnotation intType = (LogicalTypeAnnotation.IntLogicalTypeAnnotation) logicalType;
+            return (intType.isSigned() ? "INT" : "UINT") + intType.getBitWidth();
+        } else if (logicalType instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) {
+            LogicalTypeAnnotation.DecimalLogicalTypeAnnotation decimalType = (LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) logicalType;
+            return "DECIMAL(" + decimalType.getPrecision() + "," + decimalType.getScale() + ")";
+        } else if (logicalType instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) {
+            return "TIMESTAMP";
+        } else if (logicalType instanceof LogicalTypeAnnotation.TimeLogicalTypeAnnotation) {
+            return "TIME";
+        } else if (logicalType != null) {
+            return logicalType.toString();
+        } else if (type.getPrimitiveTypeName() == PrimitiveType.PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY) {
+            return "FIXED_LEN_BYTE_ARRAY(" + type.getTypeLength() + ")";
+        }
+        return type.getPrimitiveTypeName().name();
+    }
+
+    private static Object readValue(ColumnReader columnReader, PrimitiveType type) {
+        switch (type.getPrimitiveTypeName()) {
+            case BOOLEAN:
+                return columnReader.getBoolean();
+            case INT32:
+                return columnReader.getInteger();
+            case INT64:
+                return columnReader.getLong();
+            case FLOAT:
+                return columnReader.getFloat();
+            case DOUBLE:
+                return columnReader.getDouble();
+            default:
+                return columnReader.getBinary();
+        }
+    }
+
+    /**
+     * Converts a value of the column, as it is read or as it is in the statistics, to a Long, Float, Double,
+     * BigDecimal, LocalDate or String, depending on the logical type of the column.
+     */
+    private static Object convert(Object value, PrimitiveType type) {
+        LogicalTypeAnnotation logicalType = type.getLogicalTypeAnnotation();
+        switch (type.getPrimitiveTypeName()) {
+            case INT32:
+            case INT64:
+                long longValue = ((Number) value).longValue();
+                if (logicalType instanceof LogicalTypeAnnotation.DateLogicalTypeAnnotation) {
+                    return LocalDate.ofEpochDay(longValue);
+                } else if (logicalType instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) {
+                    return BigDecimal.valueOf(longValue, ((LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) logicalType).getScale());
+                } else if (logicalType instanceof LogicalTypeAnnotation.TimeLogicalTypeAnnotation) {
+                    LogicalTypeAnnotation.TimeUnit unit = ((LogicalTypeAnnotation.TimeLogicalTypeAnnotation) logicalType).getUnit();
+                    return LocalTime.ofNanoOfDay(longValue * getNanosPerUnit(unit)).toString();
+                } else if (logicalType instanceof LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) {
+                    LogicalTypeAnnotation.TimestampLogicalTypeAnnotation timestampType = (LogicalTypeAnnotation.TimestampLogicalTypeAnnotation) logicalType;
+                    long nanosPerUnit = getNanosPerUnit(timestampType.getUnit());
+                    long unitsPerSecond = 1_000_000_000L / nanosPerUnit;
+                    Instant instant = Instant.ofEpochSecond(Math.floorDiv(longValue, unitsPerSecond), Math.floorMod(longValue, unitsPerSecond) * nanosPerUnit);
+                    return timestampType.isAdjustedToUTC() ? instant.toString() : LocalDateTime.ofInstant(instant, ZoneOffset.UTC).toString();
+                } else if (logicalType instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation && !((LogicalTypeAnnotation.IntLogicalTypeAnnotation) logicalType).isSigned()) {
+                    if (value instanceof Integer) {
+                        return longValue & 0xffffffffL;
+                    }
+                    return longValue >= 0 ? (Object) longValue : Long.toUnsignedString(longValue);
+                }
+                return longValue;
+            case INT96:
+                ByteBuffer buffer = ((Binary) value).toByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+                long nanosOfDay = buffer.getLong();
+                LocalDate date = LocalDate.ofEpochDay(buffer.getInt() - JULIAN_DAY_OF_EPOCH);
+                return LocalDateTime.of(date, LocalTime.ofNanoOfDay(nanosOfDay)).toString();
+            case BINARY:
+            case FIXED_LEN_BYTE_ARRAY:
+                Binary binary = (Binary) value;
+                if (logicalType instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) {
+                    return new BigDecimal(new BigInteger(binary.getBytes()), ((LogicalTypeAnnotation.DecimalLogicalTypeAnnotation) logicalType).getScale());
+                } else if (logicalType instanceof LogicalTypeAnnotation.UUIDLogicalTypeAnnotation) {
+                    ByteBuffer uuid = binary.toByteBuffer();
+                    return new UUID(uuid.getLong(), uuid.getLong()).toString();
+                }
+                return binary.toStringUsingUTF8();
+            default:
+                // Booleans as true or false, floats and doubles as such
+                return value instanceof Boolean ? value.toString() : value;
+        }
+    }
+
+    private static long getNanosPerUnit(LogicalTypeAnnotation.TimeUnit unit) {
+        switch (unit) {
+            case MILLIS:
+                return 1_000_000L;
+            case MICROS:
+                return 1_000L;
+            default:
+                return 1L;
+        }
+    }
+
+    private static void processValue(FieldInfo fieldInfo, Object value) {
+        if (value instanceof Long) {
+            fieldInfo.processLong((Long) value);
+        } else if (value instanceof Float) {
+            fieldInfo.processDouble((Float) value, value.toString());
+        } else if (value instanceof Double) {
+            fieldInfo.processDouble((Double) value, value.toString());
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            if (isWholeNumber(decimal)) {
+                fieldInfo.processLong(decimal.longValueExact());
+            } else {
+                fieldInfo.processDouble(decimal.doubleValue(), decimal.toPlainString());
+            }
+        } else if (value instanceof LocalDate) {
+            fieldInfo.processDate((LocalDate) value);
+        } else {
+            fieldInfo.processValue((String) value);
+        }
+    }
+
+    /**
+     * Numbers are reported as such, dates as text, like the minimum and maximum of scanned date fields.
+     */
+    private static Object toReportValue(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return isWholeNumber(decimal) ? (Object) decimal.longValueExact() : (Object) decimal.doubleValue();
+        } else if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        return value instanceof Number ? value : value.toString();
+    }
+
+    private static boolean isWholeNumber(BigDecimal decimal) {
+        return decimal.scale() <= 0 && decimal.abs().compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0;
+    }
+}
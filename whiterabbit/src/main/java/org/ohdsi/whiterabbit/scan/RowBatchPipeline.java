@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.utilities.files.RowCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Two-stage pipeline for scanning the values of a table: the calling thread fetches rows and collects them in batches,
+ * while one or more profiling threads feed the values to the FieldInfo objects.
+ *
+ * Each profiling thread owns a fixed subset of the columns, so a FieldInfo is only ever touched by one thread and sees
+ * the values in the same order as in a sequential scan. Every batch is handed to all profiling threads through a
+ * bounded queue per thread; when a queue is full the fetching thread blocks, which limits the memory use to roughly
+ * queueDepth * batchSize rows, independent of the size of the table.
+ */
+class RowBatchPipeline {
+    private static final List<String[]> END_OF_DATA = Collections.emptyList();
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final List<FieldInfo> fieldInfos;
+    private final int nProfilers;
+    private final int batchSize;
+    private final int queueDepth;
+
+    RowBatchPipeline(List<FieldInfo> fieldInfos, int nProfilers, int batchSize, int queueDepth) {
+        this.fieldInfos = fieldInfos;
+        this.nProfilers = Math.max(1, Math.min(nProfilers, fieldInfos.size()));
+        this.batchSize = Math.max(1, batchSize);
+        this.queueDepth = Math.max(1, queueDepth);
+    }
+
+    /**
+     * Processes the rows from the cursor until it is exhausted, or maxRows rows have been read.
+     *
+     * @param cursor cursor over the rows of the table
+     * @param columnIndexes for each FieldInfo, the index of its column in the cursor
+     * @param maxRows maximum number of rows to process, -1 for no maximum
+     * @return the number of rows processed
+     */
+    long process(RowCursor cursor, int[] columnIndexes, long maxRows) {
+        List<BlockingQueue<List<String[]>>> queues = new ArrayList<>(nProfilers);
+        List<Future<?>> profilers = new ArrayList<>(nProfilers);
+        ExecutorService executorService = Executors.newFixedThreadPool(nProfilers);
+        long rowCount = 0;
+        try {
+            for (int i = 0; i < nProfilers; i++) {
+                BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<>(queueDepth);
+                final int firstColumn = i;
+                queues.add(queue);
+                profilers.add(executorService.submit(() -> {
+                    profile(queue, firstColumn);
+                    return null;
+                }));
+            }
+
+            List<String[]> batch = new ArrayList<>(batchSize);
+            while ((maxRows == -1 || rowCount < maxRows) && cursor.next()) {
+                String[] cells = new String[columnIndexes.length];
+                for (int i = 0; i < cells.length; i++) {
+                    cells[i] = cursor.get(columnIndexes[i]);
+                }
+                batch.add(cells);
+                rowCount++;
+                if (batch.size() == batchSize) {
+                    publish(batch, queues, profilers);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                publish(batch, queues, profilers);
+            }
+            publish(END_OF_DATA, queues, profilers);
+
+            for (Future<?> profiler : profilers) {
+                profiler.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        return rowCount;
+    }
+
+    private void publish(List<String[]> batch, List<BlockingQueue<List<String[]>>> queues, List<Future<?>> profilers)
+            throws InterruptedException, ExecutionException {
+        for (int i = 0; i < queues.size(); i++) {
+            while (!queues.get(i).offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // a profiler that stopped early will never drain its queue, surface its exception instead of waiting
+                if (profilers.get(i).isDone()) {
+                    profilers.get(i).get();
+                    throw new IllegalStateException("Profiling thread stopped before the end of the data");
+                }
+            }
+        }
+    }
+
+    private void profile(BlockingQueue<List<String[]>> queue, int firstColumn) throws InterruptedException {
+        List<String[]> batch;
+        while ((batch = queue.take()) != END_OF_DATA) {
+            for (String[] cells : batch) {
+                for (int i = firstColumn; i < cells.length; i += nProfilers) {
+                    fieldInfos.get(i).processValue(cells[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import com.epam.parso.Column;
+import com.epam.parso.SasFileProperties;
+import com.epam.parso.SasFileReader;
+import com.epam.parso.impl.DateTimeConstants;
+import com.epam.parso.impl.SasFileReaderImpl;
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.databases.ScanParameters;
+import org.ohdsi.utilities.StringUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/*
+ * Scans a SAS7BDAT file. When only a sample of the rows is scanned, the sample is taken from pages spread evenly over
+ * the file, instead of being the first rows of the file, which are often sorted on some key. The pages in between are
+ * not read at all: the file is passed to the parser through a stream that jumps to the next sampled page whenever the
+ * parser starts reading a new page.
+ *
+ * Numbers and dates are passed to the FieldInfo objects as such, so that their type does not have to be derived from
+ * their text. Date times are passed as yyyy-MM-dd HH:mm:ss text, times keep the text representation of earlier versions.
+ */
+class SasFileScan {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final File file;
+    private final ScanParameters scanParameters;
+    private String tableComment;
+
+    SasFileScan(File file, ScanParameters scanParameters) {
+        this.file = file;
+        this.scanParameters = scanParameters;
+    }
+
+    /**
+     * @return the name of the data set in the file, available after process()
+     */
+    String getTableComment() {
+        return tableComment;
+    }
+
+    /**
+     * @return the FieldInfo objects in the order of the columns in the file. When values are scanned, these have been
+     * trimmed.
+     */
+    List<FieldInfo> process() throws IOException {
+        try (PageSamplingInputStream inputStream = new PageSamplingInputStream(file)) {
+            SasFileReader sasFileReader = new SasFileReaderImpl(inputStream);
+            SasFileProperties sasFileProperties = sasFileReader.getSasFileProperties();
+            tableComment = sasFileProperties.getName();
+
+            List<FieldInfo> fieldInfos = new ArrayList<>();
+            List<Column> columns = sasFileReader.getColumns();
+            boolean[] isDateColumn = new boolean[columns.size()];
+            for (Column column : columns) {
+                isDateColumn[fieldInfos.size()] = DateTimeConstants.DATE_FORMAT_STRINGS.containsKey(column.getFormat().getName());
+                FieldInfo fieldInfo = new FieldInfo(scanParameters, column.getName());
+                fieldInfo.label = column.getLabel();
+                fieldInfo.rowCount = sasFileProperties.getRowCount();
+                if (!scanParameters.doScanValues()) {
+                    // Either NUMBER or STRING; scanning values produces a more granular type and is preferred
+                    fieldInfo.type = column.getType().getName().replace("java.lang.", "");
+                    fieldInfo.maxLength = column.getLength();
+                }
+                fieldInfos.add(fieldInfo);
+            }
+
+            if (!scanParameters.doScanValues()) {
+                return fieldInfos;
+            }
+
+            // As before, the number of rows scanned is one more than the sample size
+            long maxRows = scanParameters.getSampleSize() == -1 ? sasFileProperties.getRowCount() : scanParameters.getSampleSize() + 1L;
+            if (maxRows < sasFileProperties.getRowCount()) {
+                inputStream.samplePages(sasFileProperties.getHeaderLength(), sasFileProperties.getPageLength(),
+                        sasFileProperties.getPageCount(), sasFileProperties.getRowCount(), maxRows);
+            }
+            for (long lineNr = 0; lineNr < Math.min(maxRows, sasFileProperties.getRowCount()); lineNr++) {
+                Object[] row = sasFileReader.readNext();
+                if (row == null) {
+                    // All sampled pages have been read
+                    break;
+                }
+
+                if (row.length != fieldInfos.size()) {
+                    StringUtilities.outputWithTime("WARNING: row " + lineNr + " not scanned due to field count mismatch.");
+                    continue;
+                }
+
+                for (int i = 0; i < row.length; i++) {
+                    processValue(fieldInfos.get(i), row[i], isDateColumn[i]);
+                }
+            }
+
+            for (FieldInfo fieldInfo : fieldInfos) {
+                fieldInfo.trim();
+            }
+            return fieldInfos;
+        }
+    }
+
+    /**
+     * The parser returns whole numbers as Long and other numbers as Double; the text of these is the same as before.
+     * Values of columns with a date or date time format are returned as Date, at UTC.
+     */
+    static void processValue(FieldInfo fieldInfo, Object value, boolean isDateColumn) {
+        if (value == null) {
+            fieldInfo.processValue("");
+        } else if (value instanceof Long) {
+            fieldInfo.processLong((Long) value);
+        } else if (value instanceof Double && !((Double) value).isInfinite()) {
+            fieldInfo.processDouble((Double) value, value.toString());
+        } else if (value instanceof Date) {
+            LocalDateTime dateTime = LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneOffset.UTC);
+            if (isDateColumn) {
+                fieldInfo.processDate(dateTime.toLocalDate());
+            } else {
+                fieldInfo.processValue(DATE_TIME_FORMATTER.format(dateTime));
+            }
+        } else {
+            fieldInfo.processValue(value.toString());
+        }
+    }
+
+    /*
+     * Reads the file from the start, until samplePages is called. After that, every read that starts at the
+     * beginning of a page starts at the next sampled page instead, and the end of the file is reported after the last
+     * sampled page. The parser reads the file without buffering, a page at a time, so the parser only notices that
+     * there are fewer pages (and rows) than the header says, which it handles as the end of the file.
+     */
+    static class PageSamplingInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position = 0;
+        private long headerLength;
+        private long pageLength;
+        private long[] sampledPages;
+        private int nextSampledPage;
+
+        PageSamplingInputStream(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        /**
+         * Selects pages, spread evenly over the pages that the parser has not read yet, that together hold about
+         * nRows rows. The parser has already read the page with the first rows, which counts as a sampled page.
+         */
+        void samplePages(long headerLength, long pageLength, long pageCount, long rowCount, long nRows) {
+            if (pageLength <= 0 || pageCount <= 0 || rowCount <= 0) {
+                return;
+            }
+            this.headerLength = headerLength;
+            this.pageLength = pageLength;
+            long firstPage = (position - headerLength + pageLength - 1) / pageLength;
+            long nPages = pageCount - firstPage;
+            if (nPages <= 0) {
+                return;
+            }
+            double rowsPerPage = rowCount / (double) pageCount;
+            long nSampledPages = Math.min(nPages, (long) Math.ceil(nRows / Math.max(1, rowsPerPage)));
+            sampledPages = new long[(int) nSampledPages];
+            for (int i = 0; i < nSampledPages; i++) {
+                sampledPages[i] = firstPage + i * nPages / nSampledPages;
+            }
+            nextSampledPage = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (sampledPages != null && (position - headerLength) % pageLength == 0) {
+                long page = (position - headerLength) / pageLength;
+                while (nextSampledPage < sampledPages.length && sampledPages[nextSampledPage] < page) {
+                    nextSampledPage++;
+                }
+                if (nextSampledPage == sampledPages.length) {
+                    return -1;
+                }
+                position = headerLength + sampledPages[nextSampledPage++] * pageLength;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.ohdsi.rabbitInAHat.dataModel.Table;
+import org.ohdsi.utilities.files.RowCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Keeps the results of the scanned tables on disk until the scan report is written. As soon as a table has been
+ * scanned, its rows for the field overview, table overview and value sheets are written to a temporary file, so that
+ * the FieldInfo objects of the table, with their value counts, can be released. Only the tables and the positions of
+ * their rows in the file are kept in memory.
+ *
+ * Tables are added from the scanning threads in any order; they are returned in the order of the report (TreeMap,
+ * combined with Table implementing Comparable). When a table is added twice, the first result is kept.
+ */
+class ScanResultStore implements AutoCloseable {
+    private final Path file;
+    private final CountingOutputStream countingOutputStream;
+    private final DataOutputStream out;
+    private final Map<Table, Long> tableToOffset = new TreeMap<>();
+
+    ScanResultStore() throws IOException {
+        file = Files.createTempFile("ScanReport", ".tmp");
+        file.toFile().deleteOnExit();
+        countingOutputStream = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 65536));
+        out = new DataOutputStream(countingOutputStream);
+    }
+
+    /**
+     * Stores the rows of a scanned table. The rows of the field overview and table overview do not include the
+     * table name, because the (indexed) name that is used in the report is only known when all tables have been scanned.
+     * The first value row is the header of the value sheet; valueRows is empty when values have not been scanned.
+     */
+    synchronized void add(Table table, List<List<Object>> fieldOverviewRows, List<Object> tableOverviewRow, List<Object[]> valueRows) throws IOException {
+        if (tableToOffset.containsKey(table)) {
+            return;
+        }
+        tableToOffset.put(table, countingOutputStream.count);
+        out.writeInt(fieldOverviewRows.size());
+        for (List<Object> row : fieldOverviewRows) {
+            RowCodec.writeRow(out, row);
+        }
+        RowCodec.writeRow(out, tableOverviewRow);
+        out.writeInt(valueRows.size());
+        for (Object[] row : valueRows) {
+            RowCodec.writeRow(out, Arrays.asList(row));
+        }
+    }
+
+    synchronized List<Table> getTables() {
+        return new ArrayList<>(tableToOffset.keySet());
+    }
+
+    List<List<Object>> getFieldOverviewRows(Table table) throws IOException {
+        try (DataInputStream in = openTable(table)) {
+            return readRows(in);
+        }
+    }
+
+    List<Object> getTableOverviewRow(Table table) throws IOException {
+        try (DataInputStream in = openTable(table)) {
+            readRows(in);
+            return RowCodec.readRow(in);
+        }
+    }
+
+    List<List<Object>> getValueRows(Table table) throws IOException {
+        try (DataInputStream in = openTable(table)) {
+            readRows(in);
+            RowCodec.readRow(in);
+            return readRows(in);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private synchronized DataInputStream openTable(Table table) throws IOException {
+        out.flush();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(tableToOffset.get(table));
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 65536));
+    }
+
+    private static List<List<Object>> readRows(DataInputStream in) throws IOException {
+        int nRows = in.readInt();
+        List<List<Object>> rows = new ArrayList<>(nRows);
+        for (int i = 0; i < nRows; i++) {
+            rows.add(RowCodec.readRow(in));
+        }
+        return rows;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -23,20 +23,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
-import com.epam.parso.Column;
-import com.epam.parso.SasFileProperties;
-import com.epam.parso.SasFileReader;
-import com.epam.parso.impl.SasFileReaderImpl;
 import org.apache.commons.lang.StringUtils;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.commons.io.FileUtils;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.ohdsi.databases.configuration.DbSettings;
 import org.ohdsi.databases.configuration.DbType;
 import org.ohdsi.databases.RichConnection;
@@ -45,7 +40,12 @@ import org.ohdsi.databases.*;
 import org.ohdsi.rabbitInAHat.dataModel.Table;
 import org.ohdsi.utilities.*;
 import org.ohdsi.utilities.collections.Pair;
-import org.ohdsi.utilities.files.ReadTextFile;
+import org.ohdsi.utilities.files.CsvReader;
+import org.ohdsi.utilities.files.DecompressingInputStream;
+import org.ohdsi.utilities.files.RowCursor;
+import org.ohdsi.utilities.files.WorkbookWriter;
+import org.ohdsi.utilities.files.WriteScanProfile;
+import org.ohdsi.utilities.files.WriteXlsxFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,7 +58,7 @@ public class SourceDataScan implements ScanParameters {
 	public static final String POI_TMP_DIR_ENVIRONMENT_VARIABLE_NAME = "ORG_OHDSI_WHITERABBIT_POI_TMPDIR";
 	public static final String POI_TMP_DIR_PROPERTY_NAME = "org.ohdsi.whiterabbit.poi.tmpdir";
 
-	private XSSFWorkbook workbook;
+	private WorkbookWriter workbook;
 	private char delimiter = ',';
 	private int sampleSize;
 	private boolean scanValues = false;
@@ -66,21 +66,28 @@ public class SourceDataScan implements ScanParameters {
 	private int numStatsSamplerSize;
 	private int minCellCount;
 	private int maxValues;
+	private int scanThreads = 1;
+	private int profilingThreads = 0;
+	private int rowBatchSize = 1000;
+	private int rowQueueDepth = 4;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	private boolean estimateRowCounts = false;
+	private SamplingMethod samplingMethod = SamplingMethod.DEFAULT;
+	private boolean aggregateInDatabase = false;
+	private long samplingSeed = SamplingMethod.NO_SEED;
+	private boolean trackHeavyHitters = false;
+	private boolean useQuantileSketch = false;
+	private boolean writeXlsxReport = true;
+	private boolean writeScanProfile = false;
 	private DbSettings.SourceType sourceType;
 	private DbType dbType;
-	private Map<Table, List<FieldInfo>> tableToFieldInfos;
+	private ScanResultStore resultStore;
 	private Map<String, String> indexedTableNameLookup;
 
 	private LocalDateTime startTimeStamp;
 
 	static final String poiTmpPath;
 
-	/*
-	 * Supplier for the tableToFieldInfos Map. TreeMap, combined with Table implementing Comparable, enforces a consistent
-	 * ordering by table in the reports
-	 */
-	private Supplier<Map<Table, List<FieldInfo>>> mapSupplier = TreeMap::new;
-
 	static {
 		try {
 			poiTmpPath = setUniqueTempDirStrategyForApachePoi();
@@ -138,24 +145,135 @@ public class SourceDataScan implements ScanParameters {
 		this.numStatsSamplerSize = numStatsSamplerSize;
 	}
 
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	public void setScanThreads(int scanThreads) {
+		// values below 1 fall back to the sequential scan
+		this.scanThreads = Math.max(1, scanThreads);
+	}
+
+	public int getProfilingThreads() {
+		return profilingThreads;
+	}
+
+	public void setProfilingThreads(int profilingThreads) {
+		// 0 profiles the values on the thread that fetches the rows
+		this.profilingThreads = Math.max(0, profilingThreads);
+	}
+
+	public int getRowBatchSize() {
+		return rowBatchSize;
+	}
+
+	public void setRowBatchSize(int rowBatchSize) {
+		this.rowBatchSize = Math.max(1, rowBatchSize);
+	}
+
+	public int getRowQueueDepth() {
+		return rowQueueDepth;
+	}
+
+	public void setRowQueueDepth(int rowQueueDepth) {
+		this.rowQueueDepth = Math.max(1, rowQueueDepth);
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public void setFetchSize(int fetchSize) {
+		// 0 leaves the fetch behaviour to the JDBC driver
+		this.fetchSize = Math.max(0, fetchSize);
+	}
+
+	public boolean doEstimateRowCounts() {
+		return estimateRowCounts;
+	}
+
+	public void setEstimateRowCounts(boolean estimateRowCounts) {
+		this.estimateRowCounts = estimateRowCounts;
+	}
+
+	public SamplingMethod getSamplingMethod() {
+		return samplingMethod;
+	}
+
+	public void setSamplingMethod(SamplingMethod samplingMethod) {
+		this.samplingMethod = samplingMethod;
+	}
+
+	public boolean doAggregateInDatabase() {
+		return aggregateInDatabase;
+	}
+
+	public void setAggregateInDatabase(boolean aggregateInDatabase) {
+		this.aggregateInDatabase = aggregateInDatabase;
+	}
+
+	public long getSamplingSeed() {
+		return samplingSeed;
+	}
+
+	public void setSamplingSeed(long samplingSeed) {
+		this.samplingSeed = samplingSeed;
+	}
+
+	public boolean doTrackHeavyHitters() {
+		return trackHeavyHitters;
+	}
+
+	public void setTrackHeavyHitters(boolean trackHeavyHitters) {
+		this.trackHeavyHitters = trackHeavyHitters;
+	}
+
+	public boolean doUseQuantileSketch() {
+		return useQuantileSketch;
+	}
+
+	public void setUseQuantileSketch(boolean useQuantileSketch) {
+		this.useQuantileSketch = useQuantileSketch;
+	}
+
+	public void setWriteXlsxReport(boolean writeXlsxReport) {
+		this.writeXlsxReport = writeXlsxReport;
+	}
+
+	/**
+	 * Also writes the scan report as a scan profile, a binary file with the same sheets that is much faster to load
+	 * (see getScanProfileFileName for its name)
+	 */
+	public void setWriteScanProfile(boolean writeScanProfile) {
+		this.writeScanProfile = writeScanProfile;
+	}
+
 	public void process(DbSettings dbSettings, String outputFileName) throws IOException {
 		startTimeStamp = LocalDateTime.now();
 		sourceType = dbSettings.sourceType;
 		dbType = dbSettings.dbType;
 
-		tableToFieldInfos = mapSupplier.get();
 		StringUtilities.outputWithTime("Started new scan of " + dbSettings.tables.size() + " tables...");
-		if (sourceType == DbSettings.SourceType.CSV_FILES) {
-			if (!scanValues)
-				this.minCellCount = Math.max(minCellCount, MIN_CELL_COUNT_FOR_CSV);
-			processCsvFiles(dbSettings);
-		} else if (sourceType == DbSettings.SourceType.SAS_FILES) {
-			processSasFiles(dbSettings);
-		} else {
-			processDatabase(dbSettings);
-		}
+		try (ScanResultStore scanResultStore = new ScanResultStore()) {
+			resultStore = scanResultStore;
+			if (sourceType == DbSettings.SourceType.CSV_FILES) {
+				if (!scanValues)
+					this.minCellCount = Math.max(minCellCount, MIN_CELL_COUNT_FOR_CSV);
+				processCsvFiles(dbSettings);
+			} else if (sourceType == DbSettings.SourceType.SAS_FILES) {
+				processSasFiles(dbSettings);
+			} else if (sourceType == DbSettings.SourceType.AVRO_FILES) {
+				processAvroFiles(dbSettings);
+			} else if (sourceType == DbSettings.SourceType.PARQUET_FILES) {
+				processParquetFiles(dbSettings);
+			} else {
+				processDatabase(dbSettings);
+			}
 
-		generateReport(outputFileName);
+			generateReport(outputFileName);
+		} finally {
+			resultStore = null;
+		}
 	}
 
 	/*
@@ -235,16 +353,62 @@ public class SourceDataScan implements ScanParameters {
 		if (dbSettings.dbType == DbType.BIGQUERY) {
 			dbSettings.domain = dbSettings.database;
 		}
+		int nThreads = Math.min(scanThreads, dbSettings.tables.size());
+		if (nThreads > 1 && dbSettings.dbType.supportsStorageHandler()) {
+			// storage handlers share a single connection, so tables cannot be fetched concurrently
+			logger.info("Parallel scanning is not supported for {}, scanning tables sequentially", dbSettings.dbType.label());
+			nThreads = 1;
+		}
+		if (nThreads > 1) {
+			processDatabaseInParallel(dbSettings, nThreads);
+			return;
+		}
+
 		try (RichConnection connection = new RichConnection(dbSettings)) {
 			connection.setVerbose(false);
 			connection.use(dbSettings.database);
 
-			tableToFieldInfos = dbSettings.tables.stream()
-					.collect(Collectors.toMap(
-							Table::new,
-							table -> processDatabaseTable(table, connection, dbSettings.database),
-							(o1, o2) -> o1, mapSupplier
-					));
+			for (String table : new LinkedHashSet<>(dbSettings.tables)) {
+				addTableResult(new Table(table), processDatabaseTable(table, connection, dbSettings.database));
+			}
+		}
+	}
+
+	/*
+	 * Scans the tables with a pool of nThreads workers. Each worker opens its own connection and takes tables from a
+	 * shared queue until it is empty. The results are stored as soon as a table is done; the ordering in the report is
+	 * the same as for a sequential scan.
+	 */
+	private void processDatabaseInParallel(DbSettings dbSettings, int nThreads) {
+		StringUtilities.outputWithTime("Scanning tables using " + nThreads + " threads");
+		Queue<String> tableQueue = new ConcurrentLinkedQueue<>(new LinkedHashSet<>(dbSettings.tables));
+
+		ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < nThreads; i++) {
+				futures.add(executorService.submit(() -> {
+					try (RichConnection connection = new RichConnection(dbSettings)) {
+						connection.setVerbose(false);
+						connection.use(dbSettings.database);
+						String table;
+						while ((table = tableQueue.poll()) != null) {
+							addTableResult(new Table(table), processDatabaseTable(table, connection, dbSettings.database));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			tableQueue.clear(); // let the other workers stop after their current table
+			throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			executorService.shutdown();
 		}
 	}
 
@@ -252,69 +416,130 @@ public class SourceDataScan implements ScanParameters {
 		delimiter = dbSettings.delimiter;
 		for (String fileName : dbSettings.tables) {
 			Table table = new Table();
-			table.setName(new File(fileName).getName());
+			table.setName(DecompressingInputStream.removeCompressionExtension(new File(fileName).getName()));
 			List<FieldInfo> fieldInfos = processCsvFile(fileName);
-			tableToFieldInfos.put(table, fieldInfos);
+			addTableResult(table, fieldInfos);
 		}
 	}
 
+	/*
+	 * The files are scanned with a pool of at most scanThreads workers, each taking files from a shared queue. As for
+	 * databases, the results are stored as soon as a file is done. A file that cannot be read is skipped.
+	 */
 	private void processSasFiles(DbSettings dbSettings) {
-		for (String fileName : dbSettings.tables) {
-			try(FileInputStream inputStream = new FileInputStream(new File(fileName))) {
-				SasFileReader sasFileReader = new SasFileReaderImpl(inputStream);
-				SasFileProperties sasFileProperties = sasFileReader.getSasFileProperties();
-
-				Table table = new Table(new File(fileName).getName());
-				table.setName(new File(fileName).getName());
-				table.setComment(sasFileProperties.getName());
-
-				StringUtilities.outputWithTime("Scanning table " + fileName);
-				List<FieldInfo> fieldInfos = processSasFile(sasFileReader);
-				tableToFieldInfos.put(table, fieldInfos);
+		int nThreads = Math.max(1, Math.min(scanThreads, dbSettings.tables.size()));
+		if (nThreads > 1) {
+			StringUtilities.outputWithTime("Scanning files using " + nThreads + " threads");
+		}
+		Queue<String> fileQueue = new ConcurrentLinkedQueue<>(new LinkedHashSet<>(dbSettings.tables));
 
-			} catch (IOException e) {
-				e.printStackTrace();
+		ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < nThreads; i++) {
+				futures.add(executorService.submit(() -> {
+					String fileName;
+					while ((fileName = fileQueue.poll()) != null) {
+						try {
+							StringUtilities.outputWithTime("Scanning table " + fileName);
+							SasFileScan sasFileScan = new SasFileScan(new File(fileName), this);
+							List<FieldInfo> fieldInfos = sasFileScan.process();
+
+							Table table = new Table(new File(fileName).getName());
+							table.setName(new File(fileName).getName());
+							table.setComment(sasFileScan.getTableComment());
+							addTableResult(table, fieldInfos);
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			fileQueue.clear(); // let the other workers stop after their current file
+			throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			executorService.shutdown();
 		}
 	}
 
 	private void generateReport(String filename) throws IOException {
 		StringUtilities.outputWithTime("Generating scan report");
-		removeEmptyTables();
-
-		workbook = new XSSFWorkbook();
 
-		int i = 0;
+		List<Table> tables = resultStore.getTables();
+		assert isSorted(tables, Table::compareTo);
 		indexedTableNameLookup = new HashMap<>();
-		assert isSorted(new ArrayList<>(tableToFieldInfos.keySet()), Table::compareTo);
-		for (Table table : tableToFieldInfos.keySet()) {
-			String tableNameIndexed = Table.indexTableNameForSheet(table.getName(), i);
-			indexedTableNameLookup.put(table.getName(), tableNameIndexed);
-			i++;
+		for (int i = 0; i < tables.size(); i++) {
+			Table table = tables.get(i);
+			indexedTableNameLookup.put(table.getName(), Table.indexTableNameForSheet(table.getName(), i));
 		}
 
-		createFieldOverviewSheet();
-		createTableOverviewSheet();
-
-		if (scanValues) {
-			createValueSheet();
+		if (writeXlsxReport) {
+			writeReport(new WriteXlsxFile(filename), filename);
 		}
+		if (writeScanProfile) {
+			String profileFilename = getScanProfileFileName(filename);
+			writeReport(new WriteScanProfile(profileFilename), profileFilename);
+		}
+	}
 
-		createMetaSheet();
+	/**
+	 * @return the name of the scan profile written next to (or instead of) the xlsx scan report with the given name
+	 */
+	public static String getScanProfileFileName(String reportFileName) {
+		return reportFileName.replaceFirst("(?i)\\.xlsx$", "") + WriteScanProfile.EXTENSION;
+	}
+
+	private void writeReport(WorkbookWriter workbookWriter, String filename) {
+		List<Table> tables = resultStore.getTables();
+		// The report is written to the file while it is generated, so it is never held in memory as a whole
+		try (WorkbookWriter writer = workbookWriter) {
+			workbook = writer;
+			createFieldOverviewSheet(tables);
+			createTableOverviewSheet(tables);
+
+			if (scanValues) {
+				createValueSheet(tables);
+			}
 
-		try (FileOutputStream out = new FileOutputStream(new File(filename))) {
-			workbook.write(out);
-			out.close();
-			StringUtilities.outputWithTime("Scan report generated: " + Paths.get(filename).toAbsolutePath().toString());
+			createMetaSheet();
 		} catch (IOException ex) {
 			throw new RuntimeException(ex.getMessage());
+		} finally {
+			workbook = null;
 		}
+		StringUtilities.outputWithTime("Scan report generated: " + Paths.get(filename).toAbsolutePath().toString());
 	}
 
-	private void createFieldOverviewSheet() {
-		Sheet overviewSheet = workbook.createSheet(ScanSheetName.FIELD_OVERVIEW);
-		CellStyle percentageStyle = workbook.createCellStyle();
-		percentageStyle.setDataFormat(workbook.createDataFormat().getFormat("0.0%"));
+	/*
+	 * Called as soon as a table has been scanned, possibly from several threads at the same time. The rows of the table
+	 * in the report are stored on disk, after which the FieldInfo objects are no longer needed. Tables without fields
+	 * are left out of the report.
+	 */
+	private void addTableResult(Table table, List<FieldInfo> fieldInfos) {
+		if (fieldInfos.isEmpty()) {
+			return;
+		}
+		List<List<Object>> fieldOverviewRows = new ArrayList<>();
+		for (FieldInfo fieldInfo : fieldInfos) {
+			fieldOverviewRows.add(getFieldOverviewValues(fieldInfo));
+		}
+		try {
+			resultStore.add(table, fieldOverviewRows, getTableOverviewValues(table, fieldInfos),
+					scanValues ? getValueRows(fieldInfos) : Collections.emptyList());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void createFieldOverviewSheet(List<Table> tables) throws IOException {
+		workbook.createSheet(ScanSheetName.FIELD_OVERVIEW);
 
 		// Create heading
 		List<String> overviewHeader = new ArrayList<>(Arrays.asList(
@@ -344,191 +569,297 @@ public class SourceDataScan implements ScanParameters {
 				));
 			}
 		}
-		addRow(overviewSheet, overviewHeader.toArray());
+		if (hasFooterStatistics()) {
+			overviewHeader.addAll(Arrays.asList(
+					ScanFieldName.FRACTION_EMPTY,
+					ScanFieldName.MIN,
+					ScanFieldName.MAX
+			));
+		}
+		if (estimateRowCounts) {
+			overviewHeader.add(ScanFieldName.N_ROWS_IS_ESTIMATE);
+		}
+		// Only when needed, so that reports without estimates keep the same columns as before
+		boolean hasEstimatedUniqueCounts = scanValues && hasEstimatedUniqueCounts(tables);
+		if (hasEstimatedUniqueCounts) {
+			overviewHeader.add(ScanFieldName.UNIQUE_COUNT_ERROR);
+		}
+		workbook.addRow(overviewHeader);
+		if (hasEstimatedUniqueCounts) {
+			workbook.setPercentageColumns(7, 9, overviewHeader.size() - 1);
+		} else if (scanValues) {
+			workbook.setPercentageColumns(7, 9);
+		} else if (hasFooterStatistics()) {
+			workbook.setPercentageColumns(6);
+		}
 
 		// Add fields
-		for (Table table : tableToFieldInfos.keySet()) {
-			String tableName = table.getName();
-			String tableNameIndexed = indexedTableNameLookup.get(tableName);
-
-			for (FieldInfo fieldInfo : tableToFieldInfos.get(table)) {
-				List<Object> values = new ArrayList<>(Arrays.asList(
-						tableNameIndexed,
-						fieldInfo.name,
-						fieldInfo.label,
-						fieldInfo.getTypeDescription(),
-						fieldInfo.maxLength,
-						fieldInfo.rowCount
-				));
-
-				if (scanValues) {
-					Long uniqueCount = fieldInfo.uniqueCount;
-					Double fractionUnique = fieldInfo.getFractionUnique();
-					values.addAll(Arrays.asList(
-							fieldInfo.nProcessed,
-							fieldInfo.getFractionEmpty(),
-							fieldInfo.hasValuesTrimmed() ? String.format("<= %d", uniqueCount) : uniqueCount,
-							fieldInfo.hasValuesTrimmed() ? String.format(Locale.ENGLISH, "<= %.3f", fractionUnique) : fractionUnique
-					));
-					if (calculateNumericStats) {
-						values.addAll(Arrays.asList(
-								fieldInfo.average,
-								fieldInfo.stdev,
-								fieldInfo.minimum,
-								fieldInfo.q1,
-								fieldInfo.q2,
-								fieldInfo.q3,
-								fieldInfo.maximum
-						));
-					}
+		for (Table table : tables) {
+			String tableNameIndexed = indexedTableNameLookup.get(table.getName());
+			for (List<Object> values : resultStore.getFieldOverviewRows(table)) {
+				if (scanValues && !hasEstimatedUniqueCounts) {
+					values.remove(values.size() - 1);
 				}
-				Row row = addRow(overviewSheet, values.toArray());
-				if (scanValues) {
-					setColumnStyles(row, percentageStyle, 7, 9);
+				values.add(0, tableNameIndexed);
+				workbook.addRow(values);
+			}
+			workbook.addRow("");
+		}
+	}
+
+	/*
+	 * The last value of a stored field overview row is the relative error of the unique count when values are scanned,
+	 * null when the count is exact
+	 */
+	private boolean hasEstimatedUniqueCounts(List<Table> tables) throws IOException {
+		for (Table table : tables) {
+			for (List<Object> values : resultStore.getFieldOverviewRows(table)) {
+				if (values.get(values.size() - 1) != null) {
+					return true;
 				}
 			}
-			addRow(overviewSheet, "");
 		}
+		return false;
+	}
+
+	private List<Object> getFieldOverviewValues(FieldInfo fieldInfo) {
+		boolean uniqueCountIsEstimate = scanValues && fieldInfo.hasValuesTrimmed() && fieldInfo.getUniqueCountRelativeError() > 0;
+		List<Object> values = new ArrayList<>(Arrays.asList(
+				fieldInfo.name,
+				fieldInfo.label,
+				fieldInfo.getTypeDescription(),
+				fieldInfo.maxLength,
+				fieldInfo.rowCount
+		));
+
+		if (scanValues) {
+			values.addAll(Arrays.asList(
+					fieldInfo.nProcessed,
+					fieldInfo.getFractionEmpty(),
+					uniqueCountIsEstimate ? fieldInfo.getUniqueCountEstimate() : fieldInfo.uniqueCount,
+					uniqueCountIsEstimate ? fieldInfo.getFractionUniqueEstimate() : fieldInfo.getFractionUnique()
+			));
+			if (calculateNumericStats) {
+				values.addAll(Arrays.asList(
+						fieldInfo.average,
+						fieldInfo.stdev,
+						fieldInfo.minimum,
+						fieldInfo.q1,
+						fieldInfo.q2,
+						fieldInfo.q3,
+						fieldInfo.maximum
+				));
+			}
+		}
+		if (hasFooterStatistics()) {
+			// Fields of which the statistics do not give the null count have not been checked
+			values.add(fieldInfo.nProcessed > 0 ? fieldInfo.getFractionEmpty() : "");
+			values.add(fieldInfo.minimum);
+			values.add(fieldInfo.maximum);
+		}
+		if (estimateRowCounts) {
+			values.add(fieldInfo.rowCountIsEstimate);
+		}
+		if (scanValues) {
+			// Removed again when the report has no estimated unique counts, see createFieldOverviewSheet
+			values.add(uniqueCountIsEstimate ? fieldInfo.getUniqueCountRelativeError() : null);
+		}
+		return values;
 	}
 
-	private void createTableOverviewSheet() {
-		Sheet tableOverviewSheet = workbook.createSheet(ScanSheetName.TABLE_OVERVIEW);
+	private void createTableOverviewSheet(List<Table> tables) throws IOException {
+		workbook.createSheet(ScanSheetName.TABLE_OVERVIEW);
 
-		addRow(tableOverviewSheet,
+		List<String> tableOverviewHeader = new ArrayList<>(Arrays.asList(
 				ScanFieldName.TABLE,
 				ScanFieldName.DESCRIPTION,
 				ScanFieldName.N_ROWS,
 				ScanFieldName.N_ROWS_CHECKED,
 				ScanFieldName.N_FIELDS,
 				ScanFieldName.N_FIELDS_EMPTY
-		);
-
-		for (Table table : tableToFieldInfos.keySet()) {
-			String tableName = table.getName();
-			String tableNameIndexed = indexedTableNameLookup.get(tableName);
-			String description = table.getComment();
-			long rowCount = -1;
-			long rowCheckedCount = -1;
-			long nFields = 0;
-			long nFieldsEmpty = 0;
-			for (FieldInfo fieldInfo : tableToFieldInfos.get(table)) {
-				rowCount = max(rowCount, fieldInfo.rowCount);
-				rowCheckedCount = max(rowCheckedCount, fieldInfo.nProcessed);
-				nFields += 1;
-				if (scanValues) {
-					nFieldsEmpty += fieldInfo.getFractionEmpty() == 1 ? 1 : 0;
-				}
-			}
-			addRow(tableOverviewSheet,
-					tableNameIndexed,
-					description,
-					rowCount,
-					rowCheckedCount,
-					nFields,
-					scanValues ? nFieldsEmpty : -1
-			);
+		));
+		if (estimateRowCounts) {
+			tableOverviewHeader.add(ScanFieldName.N_ROWS_IS_ESTIMATE);
+		}
+		workbook.addRow(tableOverviewHeader);
+
+		for (Table table : tables) {
+			List<Object> values = resultStore.getTableOverviewRow(table);
+			values.add(0, indexedTableNameLookup.get(table.getName()));
+			workbook.addRow(values);
 		}
 	}
 
-	private void createValueSheet() {
-		// Make a copy of the tableNames, such that we can dereference the table at the end of each loop to save memory
-		Table[] tables = tableToFieldInfos.keySet().toArray(new Table[0]);
+	/*
+	 * Without scanning values, Parquet files still provide the null count, minimum and maximum of their columns from the
+	 * statistics in the footer
+	 */
+	private boolean hasFooterStatistics() {
+		return !scanValues && sourceType == DbSettings.SourceType.PARQUET_FILES;
+	}
+
+	private List<Object> getTableOverviewValues(Table table, List<FieldInfo> fieldInfos) {
+		String description = table.getComment();
+		long rowCount = -1;
+		long rowCheckedCount = -1;
+		long nFields = 0;
+		long nFieldsEmpty = 0;
+		boolean rowCountIsEstimate = false;
+		for (FieldInfo fieldInfo : fieldInfos) {
+			rowCount = max(rowCount, fieldInfo.rowCount);
+			rowCountIsEstimate |= fieldInfo.rowCountIsEstimate;
+			rowCheckedCount = max(rowCheckedCount, fieldInfo.nProcessed);
+			nFields += 1;
+			if (scanValues) {
+				nFieldsEmpty += fieldInfo.getFractionEmpty() == 1 ? 1 : 0;
+			}
+		}
+		List<Object> values = new ArrayList<>(Arrays.asList(
+				description,
+				rowCount,
+				rowCheckedCount,
+				nFields,
+				scanValues ? nFieldsEmpty : -1
+		));
+		if (estimateRowCounts) {
+			values.add(rowCountIsEstimate);
+		}
+		return values;
+	}
 
+	private void createValueSheet(List<Table> tables) throws IOException {
 		for (Table table : tables) {
-			String tableName = table.getName();
-			String tableNameIndexed = indexedTableNameLookup.get(tableName);
-			Sheet valueSheet = workbook.createSheet(Table.createSheetNameFromTableName(tableNameIndexed));
-
-			List<FieldInfo> fieldInfos = tableToFieldInfos.get(table);
-			List<List<Pair<String, Integer>>> valueCounts = new ArrayList<>();
-			Object[] header = new Object[fieldInfos.size() * 2];
-			int maxCount = 0;
-			for (int i = 0; i < fieldInfos.size(); i++) {
-				FieldInfo fieldInfo = fieldInfos.get(i);
-				header[i * 2] = fieldInfo.name;
-				if (fieldInfo.isFreeText)
-					header[(i * 2) + 1] = "Word count";
-				else
-					header[(i * 2) + 1] = "Frequency";
-				List<Pair<String, Integer>> counts = fieldInfo.getSortedValuesWithoutSmallValues();
-				valueCounts.add(counts);
-				if (counts.size() > maxCount)
-					maxCount = counts.size();
+			String tableNameIndexed = indexedTableNameLookup.get(table.getName());
+			workbook.createSheet(Table.createSheetNameFromTableName(tableNameIndexed));
+			for (List<Object> row : resultStore.getValueRows(table)) {
+				workbook.addRow(row);
 			}
-			addRow(valueSheet, header);
-			for (int i = 0; i < maxCount; i++) {
-				Object[] row = new Object[fieldInfos.size() * 2];
-				for (int j = 0; j < fieldInfos.size(); j++) {
-					List<Pair<String, Integer>> counts = valueCounts.get(j);
-					if (counts.size() > i) {
-						row[j * 2] = counts.get(i).getItem1();
-						row[(j * 2) + 1] = counts.get(i).getItem2() == -1 ? "" : counts.get(i).getItem2();
-					} else {
-						row[j * 2] = "";
-						row[(j * 2) + 1] = "";
-					}
+		}
+	}
+
+	/*
+	 * The rows of the value sheet of a table, starting with the header
+	 */
+	private List<Object[]> getValueRows(List<FieldInfo> fieldInfos) {
+		List<Object[]> rows = new ArrayList<>();
+		List<List<Pair<String, Long>>> valueCounts = new ArrayList<>();
+		// With heavy hitter tracking, the estimated frequencies are followed by their maximum overcount
+		int nColumns = trackHeavyHitters ? 3 : 2;
+		Object[] header = new Object[fieldInfos.size() * nColumns];
+		int maxCount = 0;
+		for (int i = 0; i < fieldInfos.size(); i++) {
+			FieldInfo fieldInfo = fieldInfos.get(i);
+			header[i * nColumns] = fieldInfo.name;
+			if (fieldInfo.isFreeText)
+				header[(i * nColumns) + 1] = "Word count";
+			else
+				header[(i * nColumns) + 1] = "Frequency";
+			if (trackHeavyHitters)
+				header[(i * nColumns) + 2] = "Max overcount";
+			List<Pair<String, Long>> counts = fieldInfo.getSortedValuesWithoutSmallValues();
+			valueCounts.add(counts);
+			if (counts.size() > maxCount)
+				maxCount = counts.size();
+		}
+		rows.add(header);
+		for (int i = 0; i < maxCount; i++) {
+			Object[] row = new Object[fieldInfos.size() * nColumns];
+			for (int j = 0; j < fieldInfos.size(); j++) {
+				List<Pair<String, Long>> counts = valueCounts.get(j);
+				if (counts.size() > i) {
+					row[j * nColumns] = counts.get(i).getItem1();
+					row[(j * nColumns) + 1] = counts.get(i).getItem2() == -1 ? "" : counts.get(i).getItem2();
+					if (trackHeavyHitters)
+						row[(j * nColumns) + 2] = counts.get(i).getItem2() == -1 ? "" : fieldInfos.get(j).getMaxOvercount(counts.get(i).getItem1());
+				} else {
+					row[j * nColumns] = "";
+					row[(j * nColumns) + 1] = "";
+					if (trackHeavyHitters)
+						row[(j * nColumns) + 2] = "";
 				}
-				addRow(valueSheet, row);
 			}
-			// Save some memory by dereferencing tables already included in the report:
-			tableToFieldInfos.remove(table);
+			rows.add(row);
 		}
+		return rows;
 	}
 
-	private void createMetaSheet() {
+	private void createMetaSheet() throws IOException {
 		// All variables to be stored
-		Sheet metaSheet = workbook.createSheet("_");
-		addRow(metaSheet, "Key", "Value");
-		addRow(metaSheet, "Version", Version.getVersion(this.getClass()));
-		addRow(metaSheet, "Scan started at ", startTimeStamp.toString());
-		addRow(metaSheet, "Scan finished at", LocalDateTime.now().toString());
-		addRow(metaSheet, "MAX_VALUES_IN_MEMORY", SourceDataScan.MAX_VALUES_IN_MEMORY);
-		addRow(metaSheet, "MIN_CELL_COUNT_FOR_CSV", SourceDataScan.MIN_CELL_COUNT_FOR_CSV);
-		addRow(metaSheet, "N_FOR_FREE_TEXT_CHECK", SourceDataScan.N_FOR_FREE_TEXT_CHECK);
-		addRow(metaSheet, "MIN_AVERAGE_LENGTH_FOR_FREE_TEXT", SourceDataScan.MIN_AVERAGE_LENGTH_FOR_FREE_TEXT);
-		addRow(metaSheet, "sourceType", this.sourceType.toString());
-		addRow(metaSheet, "dbType", this.dbType != null ? this.dbType.name() : "");
-		addRow(metaSheet, "delimiter", this.delimiter);
-		addRow(metaSheet, "sampleSize", this.sampleSize);
-		addRow(metaSheet, "scanValues", this.scanValues);
-		addRow(metaSheet, "minCellCount", this.minCellCount);
-		addRow(metaSheet, "maxValues", this.maxValues);
-		addRow(metaSheet, "calculateNumericStats", this.calculateNumericStats);
-		addRow(metaSheet, "numStatsSamplerSize", this.calculateNumericStats ? this.numStatsSamplerSize: 0);
-
-	}
-
-	private void removeEmptyTables() {
-		tableToFieldInfos.entrySet()
-				.removeIf(stringListEntry -> stringListEntry.getValue().isEmpty());
+		workbook.createSheet("_");
+		workbook.addRow("Key", "Value");
+		workbook.addRow("Version", Version.getVersion(this.getClass()));
+		workbook.addRow("Scan started at ", startTimeStamp.toString());
+		workbook.addRow("Scan finished at", LocalDateTime.now().toString());
+		workbook.addRow("MAX_VALUES_IN_MEMORY", SourceDataScan.MAX_VALUES_IN_MEMORY);
+		workbook.addRow("MIN_CELL_COUNT_FOR_CSV", SourceDataScan.MIN_CELL_COUNT_FOR_CSV);
+		workbook.addRow("N_FOR_FREE_TEXT_CHECK", SourceDataScan.N_FOR_FREE_TEXT_CHECK);
+		workbook.addRow("MIN_AVERAGE_LENGTH_FOR_FREE_TEXT", SourceDataScan.MIN_AVERAGE_LENGTH_FOR_FREE_TEXT);
+		workbook.addRow("sourceType", this.sourceType.toString());
+		workbook.addRow("dbType", this.dbType != null ? this.dbType.name() : "");
+		workbook.addRow("delimiter", this.delimiter);
+		workbook.addRow("sampleSize", this.sampleSize);
+		workbook.addRow("scanValues", this.scanValues);
+		workbook.addRow("minCellCount", this.minCellCount);
+		workbook.addRow("maxValues", this.maxValues);
+		workbook.addRow("calculateNumericStats", this.calculateNumericStats);
+		workbook.addRow("numStatsSamplerSize", this.calculateNumericStats ? this.numStatsSamplerSize: 0);
+
 	}
 
 	private List<FieldInfo> processDatabaseTable(String table, RichConnection connection, String database) {
 		StringUtilities.outputWithTime("Scanning table " + table);
 
-		long rowCount;
-		if (connection.getConnection().hasStorageHandler()) {
-			rowCount = connection.getConnection().getStorageHandler().getTableSize(table);
-		} else {
-			rowCount = connection.getTableSize(table);
+		long rowCount = -1;
+		if (estimateRowCounts) {
+			if (connection.getConnection().hasStorageHandler()) {
+				rowCount = connection.getConnection().getStorageHandler().getEstimatedTableSize(table);
+			} else {
+				rowCount = connection.getEstimatedTableSize(database, table);
+			}
 		}
-		List<FieldInfo> fieldInfos = connection.fetchTableStructure(connection, database, table, this);
-		if (scanValues) {
-			int actualCount = 0;
+		boolean rowCountIsEstimate = rowCount != -1;
+		if (!rowCountIsEstimate) {
+			if (connection.getConnection().hasStorageHandler()) {
+				rowCount = connection.getConnection().getStorageHandler().getTableSize(table);
+			} else {
+				rowCount = connection.getTableSize(table);
+			}
+		}
+		List<FieldInfo> fieldInfos = connection.fetchTableStructure(connection, database, table, rowCount, this);
+		for (FieldInfo fieldInfo : fieldInfos) {
+			fieldInfo.rowCountIsEstimate = rowCountIsEstimate;
+		}
+		List<FieldInfo> fieldsToStream = fieldInfos;
+		if (scanValues && aggregateInDatabase) {
+			fieldsToStream = aggregateInDatabase(table, rowCount, connection, fieldInfos);
+		}
+		if (scanValues && !fieldsToStream.isEmpty()) {
+			long actualCount = 0;
 			QueryResult queryResult = null;
 			try {
-				queryResult = connection.fetchRowsFromTable(table, rowCount, this);
-				for (org.ohdsi.utilities.files.Row row : queryResult) {
-					for (FieldInfo fieldInfo : fieldInfos) {
-						fieldInfo.processValue(row.get(fieldInfo.name));
-					}
-					actualCount++;
+				String keyColumn = fieldInfos.isEmpty() ? null : fieldInfos.get(0).name;
+				queryResult = connection.fetchRowsFromTable(table, rowCount, keyColumn, this);
+				RowCursor cursor = queryResult.cursor();
+				int[] columnIndexes = getColumnIndexes(cursor, fieldsToStream);
+				if (profilingThreads > 0) {
+					RowBatchPipeline pipeline = new RowBatchPipeline(fieldsToStream, profilingThreads, rowBatchSize, rowQueueDepth);
+					actualCount = pipeline.process(cursor, columnIndexes, sampleSize);
 					if (sampleSize != -1 && actualCount >= sampleSize) {
 						logger.info("Stopped after {} rows", actualCount);
-						break;
+					}
+				} else {
+					while (cursor.next()) {
+						for (int i = 0; i < columnIndexes.length; i++) {
+							fieldsToStream.get(i).processValue(cursor.get(columnIndexes[i]));
+						}
+						actualCount++;
+						if (sampleSize != -1 && actualCount >= sampleSize) {
+							logger.info("Stopped after {} rows", actualCount);
+							break;
+						}
 					}
 				}
-				for (FieldInfo fieldInfo : fieldInfos)
+				for (FieldInfo fieldInfo : fieldsToStream)
 					fieldInfo.trim();
 			} catch (Exception e) {
 				logger.error(e.getMessage(), e);
@@ -542,116 +873,182 @@ public class SourceDataScan implements ScanParameters {
 		return fieldInfos;
 	}
 
-
-	private List<FieldInfo> processCsvFile(String filename) {
-		StringUtilities.outputWithTime("Scanning table " + filename);
-		List<FieldInfo> fieldInfos = new ArrayList<>();
-		int lineNr = 0;
-		for (String line : new ReadTextFile(filename)) {
-			lineNr++;
-			List<String> row = StringUtilities.safeSplit(line, delimiter);
-			for (int i = 0; i < row.size(); i++) {
-				String column = row.get(i);
-				if (column.startsWith("\"") && column.endsWith("\"") && column.length() > 1)
-					column = column.substring(1, column.length() - 1);
-				column = column.replace("\\\"", "\"");
-				row.set(i, column);
-			}
-
-			if (lineNr == 1) {
-				for (String cell : row) {
-					fieldInfos.add(new FieldInfo(this, cell));
+	/*
+	 * Profiles the fields with aggregates computed by the database, replacing the FieldInfo objects in the list. One
+	 * query per table returns the row count and, per column, the number of empty values, the maximum length, the number
+	 * of distinct values and, for numeric and date columns, the minimum, maximum and average. Then one query per column
+	 * fetches only its most frequent values. All queries must cover the same rows, so a sample is only aggregated when
+	 * the sampling method draws the same rows in every query (see SamplingMethod.isRepeatable); the counts then cover all
+	 * rows of the sample, which can be a few more or less than sampleSize. Returns the fields that the database could not aggregate (for instance because their
+	 * type cannot be grouped on), these should be profiled by reading the rows.
+	 */
+	private List<FieldInfo> aggregateInDatabase(String table, long rowCount, RichConnection connection, List<FieldInfo> fieldInfos) {
+		List<FieldInfo> aggregatable = new ArrayList<>();
+		List<ColumnAggregation.Kind> kinds = new ArrayList<>();
+		List<FieldInfo> notAggregated = new ArrayList<>();
+		if (sampleSize != -1 && sampleSize < rowCount && !samplingMethod.isRepeatable(dbType, samplingSeed)) {
+			logger.info("Sampling method {} draws a different sample in every query on {}, reading the rows of table {} instead",
+					samplingMethod, dbType.label(), table);
+			return fieldInfos;
+		}
+		String keyColumn = fieldInfos.isEmpty() ? null : fieldInfos.get(0).name;
+		ColumnAggregation.Aggregates aggregates;
+		QueryResult aggregateResult = null;
+		try {
+			Map<String, Integer> columnTypes = connection.fetchColumnTypes(table);
+			for (FieldInfo fieldInfo : fieldInfos) {
+				Integer sqlType = columnTypes.get(fieldInfo.name);
+				ColumnAggregation.Kind kind = sqlType == null ? ColumnAggregation.Kind.NOT_AGGREGATED : ColumnAggregation.Kind.fromSqlType(sqlType);
+				if (kind == ColumnAggregation.Kind.NOT_AGGREGATED) {
+					notAggregated.add(fieldInfo);
+				} else {
+					aggregatable.add(fieldInfo);
+					kinds.add(kind);
 				}
+			}
+			if (aggregatable.isEmpty()) {
+				return fieldInfos;
+			}
+			List<String> columns = aggregatable.stream().map(fieldInfo -> fieldInfo.name).collect(Collectors.toList());
+			aggregateResult = connection.fetchColumnAggregates(table, rowCount, keyColumn, columns, kinds, this);
+			if (aggregateResult == null) {
+				logger.info("Aggregating table {} in the database is not supported for {}, reading the rows instead", table, dbType.label());
+				return fieldInfos;
+			}
+			aggregates = ColumnAggregation.readAggregates(aggregateResult.cursor(), kinds);
+		} catch (Exception e) {
+			logger.warn("Could not aggregate table {} in the database, reading the rows instead: {}", table, e.getMessage());
+			return fieldInfos;
+		} finally {
+			if (aggregateResult != null) {
+				aggregateResult.close();
+			}
+		}
 
-				if (!scanValues) {
-					return fieldInfos;
+		int limit = maxValues > 0 ? Math.min(maxValues, MAX_VALUES_IN_MEMORY) : MAX_VALUES_IN_MEMORY;
+		for (int i = 0; i < aggregatable.size(); i++) {
+			FieldInfo fieldInfo = aggregatable.get(i);
+			FieldInfo aggregated = new FieldInfo(this, fieldInfo.name);
+			aggregated.type = fieldInfo.type;
+			aggregated.label = fieldInfo.label;
+			aggregated.rowCount = fieldInfo.rowCount;
+			aggregated.rowCountIsEstimate = fieldInfo.rowCountIsEstimate;
+			QueryResult queryResult = null;
+			try {
+				queryResult = connection.fetchValueFrequencies(table, rowCount, keyColumn, fieldInfo.name, limit, this);
+				RowCursor cursor = queryResult.cursor();
+				long nValues = 0;
+				while (cursor.next()) {
+					aggregated.processValue(cursor.get(0), Long.parseLong(cursor.get(1)));
+					nValues++;
 				}
-			} else {
-				if (row.size() == fieldInfos.size()) { // Else there appears to be a formatting error, so skip
-					for (int i = 0; i < row.size(); i++) {
-						fieldInfos.get(i).processValue(row.get(i));
-					}
+				aggregated.trim();
+				aggregated.setDatabaseAggregates(aggregates.getRowCount(), aggregates.getEmptyCount(i), aggregates.getMaxLength(i),
+						aggregates.getDistinctCount(i), aggregates.getMinimum(i), aggregates.getMaximum(i), aggregates.getAverage(i),
+						nValues >= aggregates.getDistinctCount(i));
+				fieldInfos.set(fieldInfos.indexOf(fieldInfo), aggregated);
+			} catch (Exception e) {
+				logger.warn("Could not count the values of {}.{} in the database, reading the rows instead: {}", table, fieldInfo.name, e.getMessage());
+				notAggregated.add(fieldInfo);
+			} finally {
+				if (queryResult != null) {
+					queryResult.close();
 				}
 			}
-			if (sampleSize != -1 && lineNr > sampleSize)
-				break;
 		}
-		for (FieldInfo fieldInfo : fieldInfos)
-			fieldInfo.trim();
-
-		return fieldInfos;
+		return notAggregated;
 	}
 
-	private List<FieldInfo> processSasFile(SasFileReader sasFileReader) throws IOException {
-		List<FieldInfo> fieldInfos = new ArrayList<>();
-
-		SasFileProperties sasFileProperties = sasFileReader.getSasFileProperties();
-		for (Column column : sasFileReader.getColumns()) {
-			FieldInfo fieldInfo = new FieldInfo(this, column.getName());
-			fieldInfo.label = column.getLabel();
-			fieldInfo.rowCount = sasFileProperties.getRowCount();
-			if (!scanValues) {
-				// Either NUMBER or STRING; scanning values produces a more granular type and is preferred
-				fieldInfo.type = column.getType().getName().replace("java.lang.", "");
-				fieldInfo.maxLength = column.getLength();
-			}
-			fieldInfos.add(fieldInfo);
+	private static int[] getColumnIndexes(RowCursor cursor, List<FieldInfo> fieldInfos) {
+		int[] columnIndexes = new int[fieldInfos.size()];
+		for (int i = 0; i < columnIndexes.length; i++) {
+			columnIndexes[i] = cursor.indexOf(fieldInfos.get(i).name);
+			if (columnIndexes[i] == -1)
+				throw new RuntimeException("Field \"" + fieldInfos.get(i).name + "\" not found");
 		}
+		return columnIndexes;
+	}
 
-		if (!scanValues) {
-			return fieldInfos;
-		}
 
-		for (int lineNr = 0; lineNr < sasFileProperties.getRowCount(); lineNr++) {
-			Object[] row = sasFileReader.readNext();
+	private List<FieldInfo> processCsvFile(String filename) {
+		StringUtilities.outputWithTime("Scanning table " + filename);
+		List<FieldInfo> fieldInfos = new ArrayList<>();
+		try (CsvReader reader = openCsvFile(filename)) {
+			while (reader.next()) {
+				long lineNr = reader.getRecordNumber();
+				if (lineNr == 1) {
+					for (int i = 0; i < reader.getCellCount(); i++) {
+						fieldInfos.add(new FieldInfo(this, reader.getString(i)));
+					}
 
-			if (row.length != fieldInfos.size()) {
-				StringUtilities.outputWithTime("WARNING: row " + lineNr + " not scanned due to field count mismatch.");
-				continue;
-			}
+					if (!scanValues) {
+						return fieldInfos;
+					}
 
-			for (int i = 0; i < row.length; i++) {
-				fieldInfos.get(i).processValue(row[i] == null ? "" : row[i].toString());
+					ChunkedCsvScan chunkedScan = new ChunkedCsvScan(Paths.get(filename), delimiter, this,
+							fieldInfos.stream().map(fieldInfo -> fieldInfo.name).collect(Collectors.toList()), scanThreads);
+					if (sampleSize == -1 && chunkedScan.isWorthSplitting(reader.getInputSize() - reader.getPosition())) {
+						fieldInfos = chunkedScan.process(reader.getPosition(), reader.getInputSize());
+						break;
+					}
+				} else {
+					if (reader.getCellCount() == fieldInfos.size()) { // Else there appears to be a formatting error, so skip
+						for (int i = 0; i < fieldInfos.size(); i++) {
+							fieldInfos.get(i).processValue(reader.getString(i));
+						}
+					}
+				}
+				if (sampleSize != -1 && lineNr > sampleSize)
+					break;
 			}
-
-			if (sampleSize != -1 && lineNr >= sampleSize)
-				break;
 		}
-
-		for (FieldInfo fieldInfo : fieldInfos) {
+		for (FieldInfo fieldInfo : fieldInfos)
 			fieldInfo.trim();
-		}
 
 		return fieldInfos;
 	}
 
-	private Row addRow(Sheet sheet, Object... values) {
-		Row row = sheet.createRow(sheet.getPhysicalNumberOfRows());
-		for (Object value : values) {
-			Cell cell = row.createCell(row.getPhysicalNumberOfCells());
+	/*
+	 * Compressed files are decompressed while they are read, on a separate thread. Only uncompressed files can be
+	 * split into byte ranges for a chunked scan.
+	 */
+	private CsvReader openCsvFile(String filename) {
+		if (DecompressingInputStream.isCompressed(filename)) {
+			try {
+				return new CsvReader(new DecompressingInputStream(Paths.get(filename)), delimiter);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return new CsvReader(Paths.get(filename), delimiter);
+		}
+	}
 
-			if (value instanceof Integer || value instanceof Long || value instanceof Double) {
-				double numVal = Double.parseDouble(value.toString());
-				if (Double.isNaN(numVal) || Double.isInfinite(numVal)) {
-					cell.setCellValue("");
-				} else {
-					cell.setCellValue(numVal);
-				}
-			} else if (value != null) {
-				cell.setCellValue(value.toString());
-			} else {
-				cell.setCellValue("");
+	private void processAvroFiles(DbSettings dbSettings) {
+		for (String fileName : dbSettings.tables) {
+			Table table = new Table();
+			table.setName(new File(fileName).getName());
+			StringUtilities.outputWithTime("Scanning table " + fileName);
+			List<FieldInfo> fieldInfos = new AvroFileScan(new File(fileName), this, scanThreads).process();
+			if (scanValues) {
+				for (FieldInfo fieldInfo : fieldInfos)
+					fieldInfo.trim();
 			}
+			addTableResult(table, fieldInfos);
 		}
-		return row;
 	}
 
-	private void setColumnStyles(Row row, CellStyle style, int... colNums) {
-		for(int j : colNums) {
-			Cell cell = row.getCell(j);
-			if (cell != null) {
-				cell.setCellStyle(style);
+	private void processParquetFiles(DbSettings dbSettings) {
+		for (String fileName : dbSettings.tables) {
+			Table table = new Table();
+			table.setName(new File(fileName).getName());
+			StringUtilities.outputWithTime("Scanning table " + fileName);
+			List<FieldInfo> fieldInfos = new ParquetFileScan(new File(fileName), this, scanThreads).process();
+			if (scanValues) {
+				for (FieldInfo fieldInfo : fieldInfos)
+					fieldInfo.trim();
 			}
+			addTableResult(table, fieldInfos);
 		}
 	}
 
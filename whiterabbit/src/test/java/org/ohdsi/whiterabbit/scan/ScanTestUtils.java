@@ -122,8 +122,7 @@ public class ScanTestUtils {
                                                     scanValue, referenceValue, dbType.name()));
                                         }
                                     } else {
-                                        if (!scanValue.equalsIgnoreCase(referenceValue) &&
-                                            !isAcceptedDifference(scannedData, referenceData, fi, j, dbType)) {
+                                        if (!scanValue.equalsIgnoreCase(referenceValue)) {
                                             mismatches.incrementAndGet();
                                             logger.error(
                                                     String.format("In sheet %s, value '%s' in scan results does not match '%s' in reference " +
@@ -143,36 +142,6 @@ public class ScanTestUtils {
         return true;
     }
 
-    private static boolean isAcceptedDifference(List<List<String>> scannedData, List<List<String>> referenceData, int row, int column, DbType dbType) {
-        if (dbType == SAS7BDAT) {
-            // row 98, column 4, data col0='test-columnar.sas7bdat', data col1='date'
-            if (row == 98 && column == 4 &&
-                    scannedData.get(row).get(0).equalsIgnoreCase("test-columnar.sas7bdat") &&
-                    referenceData.get(row).get(0).equalsIgnoreCase("test-columnar.sas7bdat") &&
-                    scannedData.get(row).get(1).equalsIgnoreCase("date") &&
-                    referenceData.get(row).get(1).equalsIgnoreCase("date") &&
-                    scannedData.get(row).get(column).equals("28.0") &&
-                    referenceData.get(row).get(column).equals("29.0")
-            ) {
-                // this is a knopwn difference that will not show up in a dev environment, but it
-                // does show up in Github actions
-                return true;
-            }
-            if (row == 99 && column == 4 &&
-                    scannedData.get(row).get(0).equalsIgnoreCase("test-columnar.sas7bdat") &&
-                    referenceData.get(row).get(0).equalsIgnoreCase("test-columnar.sas7bdat") &&
-                    scannedData.get(row).get(1).equalsIgnoreCase("datetime") &&
-                    referenceData.get(row).get(1).equalsIgnoreCase("datetime") &&
-                    scannedData.get(row).get(column).equals("28.0") &&
-                    referenceData.get(row).get(column).equals("29.0")
-            ) {
-                // this is a knopwn difference that will not show up in a dev environment, but it
-                // does show up in Github actions
-                return true;
-            }
-        }
-        return false;
-    }
     private static boolean isExcludedFromMatching(String tabName, int row, String scanValue, String referenceValue, DbType dbType) {
         if (tabName.equals("_")) {
             if (dbType == DELIMITED_TEXT_FILES) {
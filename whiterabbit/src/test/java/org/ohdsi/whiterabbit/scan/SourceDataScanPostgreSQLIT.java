@@ -19,9 +19,14 @@ package org.ohdsi.whiterabbit.scan;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.SamplingMethod;
 import org.ohdsi.databases.configuration.DbSettings;
 import org.ohdsi.databases.configuration.DbType;
 import org.ohdsi.databases.RichConnection;
+import org.ohdsi.rabbitInAHat.dataModel.Table;
+import org.ohdsi.utilities.ScanFieldName;
+import org.ohdsi.utilities.ScanSheetName;
+import org.ohdsi.utilities.files.QuickAndDirtyXlsxReader;
 import org.testcontainers.containers.BindMode;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
@@ -31,7 +36,10 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -86,6 +94,83 @@ class SourceDataScanPostgreSQLIT {
         assertTrue(ScanTestUtils.scanResultsSheetMatchesReference(outFile, Paths.get(referenceScanReport.toURI()), DbType.POSTGRESQL));
     }
 
+    @Test
+    void testSourceDataScanWithMultipleThreads(@TempDir Path tempDir) throws IOException, URISyntaxException {
+        Path outFile = tempDir.resolve("scanresult.xslx");
+        URL referenceScanReport = SourceDataScanPostgreSQLIT.class.getClassLoader().getResource("scan_data/ScanReport-reference-v0.10.7-sql.xlsx");
+
+        SourceDataScan sourceDataScan = ScanTestUtils.createSourceDataScan();
+        sourceDataScan.setScanThreads(2);
+        DbSettings dbSettings = getTestDbSettings();
+
+        sourceDataScan.process(dbSettings, outFile.toString());
+        assertTrue(ScanTestUtils.scanResultsSheetMatchesReference(outFile, Paths.get(referenceScanReport.toURI()), DbType.POSTGRESQL));
+    }
+
+    @Test
+    void testSourceDataScanWithProfilingThreads(@TempDir Path tempDir) throws IOException, URISyntaxException {
+        Path outFile = tempDir.resolve("scanresult.xslx");
+        URL referenceScanReport = SourceDataScanPostgreSQLIT.class.getClassLoader().getResource("scan_data/ScanReport-reference-v0.10.7-sql.xlsx");
+
+        SourceDataScan sourceDataScan = ScanTestUtils.createSourceDataScan();
+        sourceDataScan.setProfilingThreads(3);
+        sourceDataScan.setRowBatchSize(7);
+        sourceDataScan.setRowQueueDepth(2);
+        DbSettings dbSettings = getTestDbSettings();
+
+        sourceDataScan.process(dbSettings, outFile.toString());
+        assertTrue(ScanTestUtils.scanResultsSheetMatchesReference(outFile, Paths.get(referenceScanReport.toURI()), DbType.POSTGRESQL));
+    }
+
+    @Test
+    void testAggregateInDatabaseWithSample(@TempDir Path tempDir) throws IOException {
+        Path outFile = tempDir.resolve("scanresult.xlsx");
+
+        SourceDataScan sourceDataScan = ScanTestUtils.createSourceDataScan();
+        sourceDataScan.setMinCellCount(0);
+        sourceDataScan.setSampleSize(15);
+        sourceDataScan.setSamplingMethod(SamplingMethod.KEY_HASH);
+        sourceDataScan.setAggregateInDatabase(true);
+        DbSettings dbSettings = getTestDbSettings();
+
+        sourceDataScan.process(dbSettings, outFile.toString());
+
+        // The aggregates and the value frequencies of each field must be counted over the same sample
+        QuickAndDirtyXlsxReader workbook = new QuickAndDirtyXlsxReader(outFile.toString());
+        Map<String, Double> tableToRowsChecked = new HashMap<>();
+        Iterator<QuickAndDirtyXlsxReader.Row> overviewRows = workbook.getByName(ScanSheetName.FIELD_OVERVIEW).iterator();
+        overviewRows.next(); // Skip header
+        while (overviewRows.hasNext()) {
+            QuickAndDirtyXlsxReader.Row row = overviewRows.next();
+            String table = row.getStringByHeaderName(ScanFieldName.TABLE);
+            if (table == null || table.isEmpty()) {
+                continue;
+            }
+            double rowsChecked = row.getDoubleByHeaderName(ScanFieldName.N_ROWS_CHECKED);
+            Double previous = tableToRowsChecked.put(table, rowsChecked);
+            assertTrue(previous == null || previous == rowsChecked, "Fields of table " + table + " checked a different number of rows");
+            assertEquals(rowsChecked, sumOfFrequencies(workbook, table, row.getStringByHeaderName(ScanFieldName.FIELD)),
+                    "Value frequencies of " + table + "." + row.getStringByHeaderName(ScanFieldName.FIELD));
+        }
+        assertTrue(tableToRowsChecked.get("person") < 30, "Table person was not sampled");
+    }
+
+    private static double sumOfFrequencies(QuickAndDirtyXlsxReader workbook, String table, String field) {
+        List<String> header = null;
+        int column = -1;
+        double sum = 0;
+        for (QuickAndDirtyXlsxReader.Row row : workbook.getByName(Table.createSheetNameFromTableName(table))) {
+            if (header == null) {
+                header = row;
+                column = header.indexOf(field);
+                assertNotEquals(-1, column, "No values of " + table + "." + field);
+            } else if (row.size() > column + 1 && !row.get(column + 1).isEmpty()) {
+                sum += Double.parseDouble(row.get(column + 1));
+            }
+        }
+        return sum;
+    }
+
     private List<String> getTableNames(DbSettings dbSettings) {
         try (RichConnection richConnection = new RichConnection(dbSettings)) {
             return richConnection.getTableNames("public");
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.FieldInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestAvroFileScan {
+
+    private static final int N_RECORDS = 20000;
+
+    @Test
+    void testScanFile(@TempDir Path tempDir) throws IOException {
+        Schema dateSchema = LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+        Schema schema = SchemaBuilder.record("person").fields()
+                .name("person_id").doc("Unique id").type().longType().noDefault()
+                .name("year_of_birth").type().optional().intType()
+                .name("weight").type().doubleType().noDefault()
+                .name("gender").type().stringType().noDefault()
+                .name("birth_date").type(dateSchema).noDefault()
+                .endRecord();
+        File file = tempDir.resolve("person.avro").toFile();
+        try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+            // Small blocks, so that the file has many sync markers to split on
+            writer.setSyncInterval(1024);
+            writer.create(schema, file);
+            for (int i = 0; i < N_RECORDS; i++) {
+                GenericRecord record = new GenericData.Record(schema);
+                record.put("person_id", (long) i);
+                record.put("year_of_birth", i % 10 == 0 ? null : 1950 + i % 50);
+                record.put("weight", 50 + (i % 7) * 0.5);
+                record.put("gender", i % 2 == 0 ? "M" : "F");
+                record.put("birth_date", 3000 + i % 365);
+                writer.append(record);
+            }
+        }
+
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setMaxValues(1000);
+        scanParameters.setSampleSize(-1);
+        List<FieldInfo> schemaOnly = new AvroFileScan(file, scanParameters, 1).process();
+        assertEquals("long", schemaOnly.get(0).getTypeDescription());
+        assertEquals("int", schemaOnly.get(1).getTypeDescription());
+        assertEquals("date", schemaOnly.get(4).getTypeDescription());
+        assertEquals("Unique id", schemaOnly.get(0).label);
+        assertEquals(0, schemaOnly.get(0).nProcessed);
+
+        scanParameters.setScanValues(true);
+        scanParameters.setCalculateNumericStats(true);
+        scanParameters.setNumStatsSamplerSize(500);
+        List<FieldInfo> sequential = new AvroFileScan(file, scanParameters, 1).process();
+        List<FieldInfo> parallel = new AvroFileScan(file, scanParameters, 4, 10000).process();
+        for (List<FieldInfo> fieldInfos : new List[]{sequential, parallel}) {
+            assertEquals(N_RECORDS, fieldInfos.get(0).nProcessed);
+            assertEquals(N_RECORDS / 10, fieldInfos.get(1).emptyCount);
+            assertEquals(7, fieldInfos.get(2).valueCounts.size());
+            assertEquals(N_RECORDS / 2, fieldInfos.get(3).valueCounts.getCount("M"));
+            assertEquals(365, fieldInfos.get(4).valueCounts.size());
+            for (FieldInfo fieldInfo : fieldInfos)
+                fieldInfo.trim();
+            assertEquals("INT", fieldInfos.get(0).getTypeDescription());
+            assertEquals("INT", fieldInfos.get(1).getTypeDescription());
+            assertEquals("REAL", fieldInfos.get(2).getTypeDescription());
+            assertEquals("VARCHAR", fieldInfos.get(3).getTypeDescription());
+            assertEquals("DATE", fieldInfos.get(4).getTypeDescription());
+            assertEquals(0d, fieldInfos.get(0).minimum);
+            assertEquals((double) N_RECORDS - 1, fieldInfos.get(0).maximum);
+            assertEquals("1978-03-20", fieldInfos.get(4).minimum);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.utilities.files.CsvReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestChunkedCsvScan {
+
+    private static final List<String> FIELD_NAMES = Arrays.asList("id", "code", "note");
+
+    @Test
+    void testChunkedScanMatchesSequentialScan(@TempDir Path tempDir) throws IOException {
+        StringBuilder content = new StringBuilder("id,code,note\n");
+        Random random = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            content.append(i).append(',').append(random.nextInt(50)).append(',');
+            if (i % 500 == 7) {
+                // A quoted note with lines that look like records, which will mislead the search for record boundaries
+                content.append("\"");
+                for (int j = 0; j < 40; j++)
+                    content.append(i).append(",x,y\n");
+                content.append("\"");
+            } else if (i % 100 == 3) {
+                content.append("\"Note, with\nline break\"");
+            } else {
+                content.append("note").append(random.nextInt(20));
+            }
+            if (i % 1000 == 11)
+                content.append(",extra cell");
+            content.append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        Path file = tempDir.resolve("data.csv");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setScanValues(true);
+        scanParameters.setMaxValues(1000);
+        scanParameters.setSampleSize(-1);
+        long dataStart;
+        long fileSize;
+        try (CsvReader reader = new CsvReader(file, ',')) {
+            assertTrue(reader.next());
+            dataStart = reader.getPosition();
+            fileSize = reader.getInputSize();
+        }
+        List<FieldInfo> sequential = new ChunkedCsvScan(file, ',', scanParameters, FIELD_NAMES, 1)
+                .process(dataStart, fileSize);
+        ChunkedCsvScan chunkedScan = new ChunkedCsvScan(file, ',', scanParameters, FIELD_NAMES, 4, 1000);
+        assertTrue(chunkedScan.isWorthSplitting(fileSize - dataStart));
+        List<FieldInfo> chunked = chunkedScan.process(dataStart, fileSize);
+
+        assertEquals(5000 - 5, sequential.get(0).nProcessed);
+        for (int i = 0; i < FIELD_NAMES.size(); i++) {
+            FieldInfo expected = sequential.get(i);
+            FieldInfo actual = chunked.get(i);
+            expected.trim();
+            actual.trim();
+            assertEquals(expected.nProcessed, actual.nProcessed);
+            assertEquals(expected.emptyCount, actual.emptyCount);
+            assertEquals(expected.uniqueCount, actual.uniqueCount);
+            assertEquals(expected.maxLength, actual.maxLength);
+            assertEquals(expected.getTypeDescription(), actual.getTypeDescription());
+            assertEquals(expected.getUniqueCountEstimate(), actual.getUniqueCountEstimate());
+            assertEquals(expected.valueCounts.getDecliningCounts(0, 100).size(),
+                    actual.valueCounts.getDecliningCounts(0, 100).size());
+            for (int j = 0; j < expected.valueCounts.size(); j++) {
+                String value = expected.valueCounts.getKey(j);
+                assertEquals(expected.valueCounts.getCount(j), actual.valueCounts.getCount(value), value);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.FieldInfo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestParquetFileScan {
+    private static final String[] NAMES = {"a", "b", "c", "d"};
+    private static final int N_ROWS = 2500;
+
+    @Test
+    void testScanFile(@TempDir Path tempDir) throws IOException {
+        MessageType schema = MessageTypeParser.parseMessageType("message person {\n" +
+                "  required int64 id;\n" +
+                "  optional binary name (STRING);\n" +
+                "  required double weight;\n" +
+                "  optional int32 birth_date (DATE);\n" +
+                "  optional int32 empty;\n" +
+                "  required int32 amount (DECIMAL(9,2));\n" +
+                "}");
+        Path file = tempDir.resolve("person.parquet");
+        // Small row groups, so that the file has several of them
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new LocalOutputFile(file))
+                .withType(schema)
+                .withCompressionCodec(CompressionCodecName.SNAPPY)
+                .withRowGroupSize(8192L)
+                .withDictionaryEncoding("name", true)
+                .build()) {
+            SimpleGroupFactory groupFactory = new SimpleGroupFactory(schema);
+            for (int i = 0; i < N_ROWS; i++) {
+                Group group = groupFactory.newGroup()
+                        .append("id", (long) i)
+                        .append("weight", 50 + (i % 7) * 0.5)
+                        .append("amount", i % 100);
+                if (i % 5 != 0)
+                    group.append("name", NAMES[i % 4]);
+                if (i % 10 != 3)
+                    group.append("birth_date", 3000 + i % 365);
+                writer.write(group);
+            }
+        }
+
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setMaxValues(1000);
+        scanParameters.setSampleSize(-1);
+        List<FieldInfo> schemaOnly = new ParquetFileScan(file.toFile(), scanParameters, 1).process();
+        assertEquals(6, schemaOnly.size());
+        assertEquals("id", schemaOnly.get(0).name);
+        assertEquals("INT64", schemaOnly.get(0).type);
+        assertEquals("STRING", schemaOnly.get(1).type);
+        assertEquals("DOUBLE", schemaOnly.get(2).type);
+        assertEquals("DATE", schemaOnly.get(3).type);
+        assertEquals("INT32", schemaOnly.get(4).type);
+        assertEquals("DECIMAL(9,2)", schemaOnly.get(5).type);
+        // Statistics from the footer
+        assertEquals(N_ROWS, schemaOnly.get(0).rowCount);
+        assertEquals(N_ROWS, schemaOnly.get(0).nProcessed);
+        assertEquals(0, schemaOnly.get(0).emptyCount);
+        assertEquals(0L, schemaOnly.get(0).minimum);
+        assertEquals((long) N_ROWS - 1, schemaOnly.get(0).maximum);
+        assertEquals(N_ROWS / 5, schemaOnly.get(1).emptyCount);
+        assertEquals("a", schemaOnly.get(1).minimum);
+        assertEquals("d", schemaOnly.get(1).maximum);
+        assertEquals(50.0, schemaOnly.get(2).minimum);
+        assertEquals(N_ROWS / 10, schemaOnly.get(3).emptyCount);
+        assertEquals("1978-03-20", schemaOnly.get(3).minimum);
+        assertEquals(N_ROWS, schemaOnly.get(4).emptyCount);
+        assertEquals("", schemaOnly.get(4).maximum);
+        assertEquals(0.99, schemaOnly.get(5).maximum);
+
+        scanParameters.setScanValues(true);
+        List<FieldInfo> sequential = new ParquetFileScan(file.toFile(), scanParameters, 1).process();
+        List<FieldInfo> parallel = new ParquetFileScan(file.toFile(), scanParameters, 4).process();
+        for (List<FieldInfo> fieldInfos : new List[]{sequential, parallel}) {
+            assertEquals(N_ROWS, fieldInfos.get(0).nProcessed);
+            assertEquals(N_ROWS, fieldInfos.get(0).valueCounts.size());
+            assertEquals(N_ROWS / 5, fieldInfos.get(1).emptyCount);
+            assertEquals((N_ROWS - N_ROWS / 5) / 4, fieldInfos.get(1).valueCounts.getCount("b"));
+            assertEquals(7, fieldInfos.get(2).valueCounts.size());
+            assertEquals(365, fieldInfos.get(3).valueCounts.size() - 1);
+            assertEquals(N_ROWS, fieldInfos.get(4).emptyCount);
+            assertEquals(N_ROWS / 100, fieldInfos.get(5).valueCounts.getCount("0.99"));
+            for (FieldInfo fieldInfo : fieldInfos)
+                fieldInfo.trim();
+            assertEquals("INT", fieldInfos.get(0).getTypeDescription());
+            assertEquals("VARCHAR", fieldInfos.get(1).getTypeDescription());
+            assertEquals("REAL", fieldInfos.get(2).getTypeDescription());
+            assertEquals("DATE", fieldInfos.get(3).getTypeDescription());
+            assertEquals("REAL", fieldInfos.get(5).getTypeDescription());
+        }
+
+        // The sample size limits the number of values that is read from each column
+        scanParameters.setSampleSize(120);
+        List<FieldInfo> sample = new ParquetFileScan(file.toFile(), scanParameters, 1).process();
+        assertEquals(120, sample.get(1).nProcessed);
+        assertEquals(N_ROWS, sample.get(1).rowCount);
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.databases.FieldInfo;
+import org.ohdsi.utilities.files.RowCursor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestRowBatchPipeline {
+    private static final List<String> FIELD_NAMES = Arrays.asList("id", "gender", "year_of_birth", "unused");
+    private static final int N_ROWS = 10000;
+
+    @Test
+    void testSameResultsAsSequentialScan() {
+        List<FieldInfo> sequential = createFieldInfos();
+        try (RowCursor cursor = new ListRowCursor(createRows())) {
+            while (cursor.next()) {
+                for (int i = 0; i < sequential.size(); i++) {
+                    sequential.get(i).processValue(cursor.get(i));
+                }
+            }
+        }
+
+        List<FieldInfo> pipelined = createFieldInfos();
+        try (RowCursor cursor = new ListRowCursor(createRows())) {
+            assertEquals(N_ROWS, new RowBatchPipeline(pipelined, 2, 7, 2).process(cursor, new int[]{0, 1, 2}, -1));
+        }
+
+        for (int i = 0; i < sequential.size(); i++) {
+            FieldInfo expected = sequential.get(i);
+            FieldInfo actual = pipelined.get(i);
+            assertEquals(expected.nProcessed, actual.nProcessed);
+            assertEquals(expected.emptyCount, actual.emptyCount);
+            assertEquals(expected.maxLength, actual.maxLength);
+            // Every FieldInfo sees its values in the same order as in a sequential scan
+            assertEquals(expected.valueCounts.size(), actual.valueCounts.size());
+            for (int j = 0; j < expected.valueCounts.size(); j++) {
+                assertEquals(expected.valueCounts.getKey(j), actual.valueCounts.getKey(j));
+                assertEquals(expected.valueCounts.getCount(j), actual.valueCounts.getCount(j));
+            }
+            expected.trim();
+            actual.trim();
+            assertEquals(expected.getTypeDescription(), actual.getTypeDescription());
+        }
+    }
+
+    @Test
+    void testMaxRowsWithSlowProfiler() {
+        List<FieldInfo> fieldInfos = createFieldInfos();
+        fieldInfos.set(0, new FieldInfo(createScanParameters(), "id") {
+            @Override
+            public void processValue(String value) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.processValue(value);
+            }
+        });
+        // The queues are full when the maximum is reached, the end of the data still has to get through
+        long rowCount = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (RowCursor cursor = new ListRowCursor(createRows())) {
+                return new RowBatchPipeline(fieldInfos, 3, 1, 1).process(cursor, new int[]{0, 1, 2}, 100);
+            }
+        });
+        assertEquals(100, rowCount);
+        for (FieldInfo fieldInfo : fieldInfos) {
+            assertEquals(100, fieldInfo.nProcessed);
+        }
+    }
+
+    @Test
+    void testProfilerExceptionReachesCaller() {
+        List<FieldInfo> fieldInfos = createFieldInfos();
+        fieldInfos.set(1, new FieldInfo(createScanParameters(), "gender") {
+            @Override
+            public void processValue(String value) {
+                if (nProcessed == 10) {
+                    throw new IllegalArgumentException("Cannot process " + value);
+                }
+                super.processValue(value);
+            }
+        });
+        // The failed profiler stops draining its queue while the rows keep coming; this must not block the caller
+        RuntimeException exception = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(RuntimeException.class, () -> {
+            try (RowCursor cursor = new ListRowCursor(createRows())) {
+                new RowBatchPipeline(fieldInfos, 2, 1, 1).process(cursor, new int[]{0, 1, 2}, -1);
+            }
+        }));
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        assertEquals("Cannot process M", exception.getMessage());
+    }
+
+    private static SourceDataScan createScanParameters() {
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setScanValues(true);
+        scanParameters.setMaxValues(1000);
+        return scanParameters;
+    }
+
+    private static List<FieldInfo> createFieldInfos() {
+        SourceDataScan scanParameters = createScanParameters();
+        List<FieldInfo> fieldInfos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            fieldInfos.add(new FieldInfo(scanParameters, FIELD_NAMES.get(i)));
+        }
+        return fieldInfos;
+    }
+
+    private static List<String[]> createRows() {
+        List<String[]> rows = new ArrayList<>(N_ROWS);
+        for (int i = 0; i < N_ROWS; i++) {
+            rows.add(new String[]{Integer.toString(i), i % 2 == 0 ? "M" : "F", i % 10 == 0 ? "" : Integer.toString(1950 + i % 50), "x"});
+        }
+        return rows;
+    }
+
+    /**
+     * In-memory cursor that, like a database cursor, reuses one buffer for the current row.
+     */
+    private static class ListRowCursor implements RowCursor {
+        private final List<String[]> rows;
+        private final String[] buffer = new String[FIELD_NAMES.size()];
+        private int rowIndex = -1;
+
+        ListRowCursor(List<String[]> rows) {
+            this.rows = rows;
+        }
+
+        public List<String> getFieldNames() {
+            return FIELD_NAMES;
+        }
+
+        public int indexOf(String fieldName) {
+            return FIELD_NAMES.indexOf(fieldName);
+        }
+
+        public boolean next() {
+            if (++rowIndex >= rows.size()) {
+                return false;
+            }
+            System.arraycopy(rows.get(rowIndex), 0, buffer, 0, buffer.length);
+            return true;
+        }
+
+        public String get(int columnIndex) {
+            return buffer[columnIndex];
+        }
+
+        public void close() {
+        }
+    }
+}
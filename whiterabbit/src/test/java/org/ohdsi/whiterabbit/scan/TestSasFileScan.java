@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.FieldInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSasFileScan {
+
+    @Test
+    void testScanFile() throws IOException, URISyntaxException {
+        File file = getExampleFile("mixed_data_two.sas7bdat");
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setMaxValues(1000);
+        scanParameters.setSampleSize(-1);
+        List<FieldInfo> schemaOnly = new SasFileScan(file, scanParameters).process();
+        assertEquals(21, schemaOnly.size());
+        assertEquals("Number", schemaOnly.get(0).type);
+        assertEquals("String", schemaOnly.get(2).type);
+        assertEquals(0, schemaOnly.get(0).nProcessed);
+
+        scanParameters.setScanValues(true);
+        List<FieldInfo> fieldInfos = new SasFileScan(file, scanParameters).process();
+        assertEquals(50, fieldInfos.get(0).rowCount);
+        assertEquals(50, fieldInfos.get(0).nProcessed);
+        assertEquals("INT", fieldInfos.get(0).getTypeDescription());
+        assertEquals("REAL", fieldInfos.get(1).getTypeDescription());
+        assertEquals("VARCHAR", fieldInfos.get(2).getTypeDescription());
+
+        // As before, one row more than the sample size is scanned
+        scanParameters.setSampleSize(5);
+        fieldInfos = new SasFileScan(file, scanParameters).process();
+        assertEquals(50, fieldInfos.get(0).rowCount);
+        assertEquals(6, fieldInfos.get(0).nProcessed);
+    }
+
+    @Test
+    void testProcessDates() {
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setMaxValues(1000);
+        scanParameters.setScanValues(true);
+        FieldInfo date = new FieldInfo(scanParameters, "date");
+        FieldInfo dateTime = new FieldInfo(scanParameters, "datetime");
+        Date value = Date.from(LocalDateTime.of(2023, 3, 14, 15, 9, 26).toInstant(ZoneOffset.UTC));
+        SasFileScan.processValue(date, value, true);
+        SasFileScan.processValue(dateTime, value, false);
+
+        assertEquals("DATE", date.getTypeDescription());
+        assertEquals(1, date.valueCounts.getCount("2023-03-14"));
+        assertEquals("VARCHAR", dateTime.getTypeDescription());
+        assertEquals(1, dateTime.valueCounts.getCount("2023-03-14 15:09:26"));
+    }
+
+    @Test
+    void testSampleFromLaterPages(@TempDir Path tempDir) throws IOException, URISyntaxException {
+        File file = createMultiPageFile(tempDir, 40);
+        SourceDataScan scanParameters = new SourceDataScan();
+        scanParameters.setMaxValues(1000);
+        scanParameters.setScanValues(true);
+        scanParameters.setSampleSize(99);
+        List<FieldInfo> fieldInfos = new SasFileScan(file, scanParameters).process();
+        assertEquals(50 + 40 * 25, fieldInfos.get(0).rowCount);
+        assertEquals(100, fieldInfos.get(0).nProcessed);
+        // x1 = 25 only occurs on the first page and x1 = 50 only on the copies of the last page, so the sample
+        // holds the 25 rows of the first page plus three later pages that were each read to their end
+        assertEquals(1, fieldInfos.get(0).valueCounts.getCount("25"));
+        assertEquals(3, fieldInfos.get(0).valueCounts.getCount("50"));
+    }
+
+    @Test
+    void testSamplePages(@TempDir Path tempDir) throws IOException {
+        // A 10 byte header followed by 10 pages of 10 bytes, each filled with its page number
+        byte[] bytes = new byte[110];
+        for (int i = 10; i < bytes.length; i++)
+            bytes[i] = (byte) ((i - 10) / 10);
+        Path file = tempDir.resolve("test.sas7bdat");
+        Files.write(file, bytes);
+
+        try (SasFileScan.PageSamplingInputStream inputStream = new SasFileScan.PageSamplingInputStream(file.toFile())) {
+            byte[] page = new byte[10];
+            assertEquals(10, inputStream.read(page, 0, 10));
+            assertEquals(10, inputStream.read(page, 0, 10));
+            assertEquals(0, page[0]);
+
+            // 10 rows per page, so 3 of the 9 remaining pages are needed for 30 rows
+            inputStream.samplePages(10, 10, 10, 100, 30);
+            List<Byte> pages = new ArrayList<>();
+            int n;
+            while ((n = inputStream.read(page, 0, 5)) != -1) {
+                assertEquals(5, n);
+                assertEquals(page[0], page[4]);
+                if (pages.isEmpty() || pages.get(pages.size() - 1) != page[0])
+                    pages.add(page[0]);
+            }
+            assertEquals(Arrays.asList((byte) 1, (byte) 4, (byte) 7), pages);
+        }
+    }
+
+    /**
+     * Creates a file of which the last page of the example file, which holds its last 25 rows, is repeated
+     * nExtraPages times. The page count in the header and the row count in the metadata are updated to match.
+     */
+    private static File createMultiPageFile(Path tempDir, int nExtraPages) throws IOException, URISyntaxException {
+        byte[] example = Files.readAllBytes(getExampleFile("mixed_data_two.sas7bdat").toPath());
+        int headerLength = 1024;
+        int pageLength = 8192;
+        int pageCount = 3;
+        ByteBuffer buffer = ByteBuffer.allocate(example.length + nExtraPages * pageLength).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(example);
+        for (int i = 0; i < nExtraPages; i++)
+            buffer.put(example, headerLength + (pageCount - 1) * pageLength, pageLength);
+        assertEquals(pageCount, buffer.getInt(204));
+        buffer.putInt(204, pageCount + nExtraPages);
+        // The row size subheader, found by its signature, holds the row count
+        int rowSizeSubheader = 0;
+        while (buffer.getInt(rowSizeSubheader) != 0xF7F7F7F7)
+            rowSizeSubheader++;
+        assertEquals(50, buffer.getInt(rowSizeSubheader + 24));
+        buffer.putInt(rowSizeSubheader + 24, 50 + nExtraPages * 25);
+
+        Path file = tempDir.resolve("multi_page.sas7bdat");
+        Files.write(file, buffer.array());
+        return file.toFile();
+    }
+
+    private static File getExampleFile(String name) throws URISyntaxException {
+        return new File(Objects.requireNonNull(TestSasFileScan.class.getClassLoader().getResource("examples/wr_input_sas/" + name)).toURI());
+    }
+}
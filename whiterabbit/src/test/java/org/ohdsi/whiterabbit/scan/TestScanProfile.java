@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.configuration.DbSettings;
+import org.ohdsi.databases.configuration.DbType;
+import org.ohdsi.rabbitInAHat.dataModel.Database;
+import org.ohdsi.rabbitInAHat.dataModel.Field;
+import org.ohdsi.rabbitInAHat.dataModel.Table;
+import org.ohdsi.rabbitInAHat.dataModel.ValueCounts;
+import org.ohdsi.utilities.files.ReadScanProfile;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestScanProfile {
+
+    @Test
+    void testScanProfileMatchesXlsx(@TempDir Path tempDir) throws IOException, URISyntaxException {
+        DbSettings dbSettings = new DbSettings();
+        dbSettings.sourceType = DbSettings.SourceType.CSV_FILES;
+        dbSettings.dbType = DbType.DELIMITED_TEXT_FILES;
+        for (String name : new String[]{"person", "cost"}) {
+            Path csvFile = tempDir.resolve(name + ".csv");
+            Files.copy(Paths.get(Objects.requireNonNull(TestScanProfile.class.getClassLoader().getResource("scan_data/" + name + "-header.csv")).toURI()), csvFile);
+            dbSettings.tables.add(csvFile.toString());
+        }
+
+        SourceDataScan sourceDataScan = new SourceDataScan();
+        sourceDataScan.setSampleSize(100000);
+        sourceDataScan.setScanValues(true);
+        sourceDataScan.setMinCellCount(5);
+        sourceDataScan.setMaxValues(1000);
+        sourceDataScan.setWriteScanProfile(true);
+        String reportFile = tempDir.resolve("ScanReport.xlsx").toString();
+        sourceDataScan.process(dbSettings, reportFile);
+
+        String profileFile = SourceDataScan.getScanProfileFileName(reportFile);
+        assertEquals(tempDir.resolve("ScanReport.scanprofile").toString(), profileFile);
+        assertTrue(ReadScanProfile.isScanProfile(profileFile));
+        assertFalse(ReadScanProfile.isScanProfile(reportFile));
+
+        Database fromXlsx = Database.generateModelFromScanReport(reportFile);
+        Database fromProfile = Database.generateModelFromScanReport(profileFile);
+        assertEquals(2, fromXlsx.getTables().size());
+        assertEquals(fromXlsx.getTables().size(), fromProfile.getTables().size());
+        for (int i = 0; i < fromXlsx.getTables().size(); i++) {
+            Table expected = fromXlsx.getTables().get(i);
+            Table actual = fromProfile.getTables().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getRowCount(), actual.getRowCount());
+            assertEquals(expected.getRowsCheckedCount(), actual.getRowsCheckedCount());
+            assertEquals(expected.getFields().size(), actual.getFields().size());
+            for (int j = 0; j < expected.getFields().size(); j++) {
+                Field expectedField = expected.getFields().get(j);
+                Field actualField = actual.getFields().get(j);
+                assertEquals(expectedField.getName(), actualField.getName());
+                assertEquals(expectedField.getType(), actualField.getType());
+                assertEquals(expectedField.getMaxLength(), actualField.getMaxLength());
+                assertEquals(expectedField.getFractionEmpty(), actualField.getFractionEmpty());
+                assertEquals(expectedField.getUniqueCount(), actualField.getUniqueCount());
+                assertEquals(expectedField.getFractionUnique(), actualField.getFractionUnique());
+                ValueCounts expectedCounts = expectedField.getValueCounts();
+                ValueCounts actualCounts = actualField.getValueCounts();
+                assertEquals(expectedCounts.size(), actualCounts.size(), expectedField.getName());
+                for (int k = 0; k < expectedCounts.size(); k++) {
+                    assertEquals(expectedCounts.get(k).getValue(), actualCounts.get(k).getValue());
+                    assertEquals(expectedCounts.get(k).getFrequency(), actualCounts.get(k).getFrequency());
+                }
+            }
+        }
+        assertTrue(fromXlsx.getTables().stream().anyMatch(table -> table.getFields().stream().anyMatch(field -> field.getValueCounts().size() > 1)));
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.junit.jupiter.api.Test;
+import org.ohdsi.rabbitInAHat.dataModel.Table;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestScanResultStore {
+
+    @Test
+    void testStoreTables() throws IOException {
+        char[] longValue = new char[100000];
+        Arrays.fill(longValue, 'é');
+        try (ScanResultStore store = new ScanResultStore()) {
+            store.add(new Table("visit"),
+                    Collections.singletonList(Arrays.asList("visit_id", null, "INT", 5, 100L)),
+                    Arrays.asList("visits", 100L, 100L, 1L, 0L),
+                    Arrays.asList(new Object[]{"visit_id", "Frequency"}, new Object[]{"1", 7}));
+            store.add(new Table("person"),
+                    Arrays.asList(Arrays.asList("person_id", "", "INT", 3, 10L), Arrays.asList("note", "", "VARCHAR", 100000, 10L)),
+                    Arrays.asList("", 10L, 10L, 2L, 1L, true),
+                    Arrays.asList(new Object[]{"person_id", "Frequency", "note", "Frequency"}, new Object[]{"1", 1, new String(longValue), Double.NaN}));
+            // A table that was already added is ignored
+            store.add(new Table("visit"), Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+            List<Table> tables = store.getTables();
+            assertEquals(2, tables.size());
+            assertEquals("person", tables.get(0).getName());
+            assertEquals("visit", tables.get(1).getName());
+
+            List<List<Object>> fieldRows = store.getFieldOverviewRows(tables.get(0));
+            assertEquals(2, fieldRows.size());
+            assertEquals(Arrays.asList("note", "", "VARCHAR", 100000L, 10L), fieldRows.get(1));
+            assertEquals(Arrays.asList("", 10L, 10L, 2L, 1L, "true"), store.getTableOverviewRow(tables.get(0)));
+            List<List<Object>> valueRows = store.getValueRows(tables.get(0));
+            assertEquals(2, valueRows.size());
+            assertEquals(new String(longValue), valueRows.get(1).get(2));
+            assertTrue(Double.isNaN((Double) valueRows.get(1).get(3)));
+
+            assertEquals(Arrays.asList("visit_id", null, "INT", 5L, 100L), store.getFieldOverviewRows(tables.get(1)).get(0));
+            assertEquals(Arrays.asList("1", 7L), store.getValueRows(tables.get(1)).get(1));
+        }
+    }
+}
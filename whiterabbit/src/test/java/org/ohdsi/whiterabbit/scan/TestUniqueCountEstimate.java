@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2023 Observational Health Data Sciences and Informatics & The Hyve
+ *
+ * This file is part of WhiteRabbit
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohdsi.whiterabbit.scan;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ohdsi.databases.ScanParameters;
+import org.ohdsi.databases.configuration.DbSettings;
+import org.ohdsi.databases.configuration.DbType;
+import org.ohdsi.utilities.ScanFieldName;
+import org.ohdsi.utilities.ScanSheetName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestUniqueCountEstimate {
+
+    @Test
+    void testEstimatedUniqueCountsAreNumbers(@TempDir Path tempDir) throws IOException {
+        // More unique ids than are kept in memory, so their count is estimated
+        int nRows = ScanParameters.MAX_VALUES_IN_MEMORY + 20000;
+        StringBuilder content = new StringBuilder("id,code\n");
+        for (int i = 0; i < nRows; i++) {
+            content.append(i).append(',').append(i % 3).append('\n');
+        }
+        Path csvFile = tempDir.resolve("visit.csv");
+        Files.write(csvFile, content.toString().getBytes(StandardCharsets.UTF_8));
+        DbSettings dbSettings = new DbSettings();
+        dbSettings.sourceType = DbSettings.SourceType.CSV_FILES;
+        dbSettings.dbType = DbType.DELIMITED_TEXT_FILES;
+        dbSettings.tables.add(csvFile.toString());
+
+        SourceDataScan sourceDataScan = new SourceDataScan();
+        sourceDataScan.setSampleSize(-1);
+        sourceDataScan.setScanValues(true);
+        sourceDataScan.setMinCellCount(5);
+        sourceDataScan.setMaxValues(1000);
+        Path reportFile = tempDir.resolve("ScanReport.xlsx");
+        sourceDataScan.process(dbSettings, reportFile.toString());
+
+        try (InputStream inputStream = Files.newInputStream(reportFile); XSSFWorkbook workbook = new XSSFWorkbook(inputStream)) {
+            Sheet sheet = workbook.getSheet(ScanSheetName.FIELD_OVERVIEW);
+            List<String> header = new ArrayList<>();
+            for (Cell cell : sheet.getRow(0)) {
+                header.add(cell.getStringCellValue());
+            }
+            int uniqueCount = header.indexOf(ScanFieldName.UNIQUE_COUNT);
+            int fractionUnique = header.indexOf(ScanFieldName.FRACTION_UNIQUE);
+            int error = header.indexOf(ScanFieldName.UNIQUE_COUNT_ERROR);
+            assertEquals(header.size() - 1, error);
+
+            Row id = sheet.getRow(1);
+            assertEquals("id", id.getCell(1).getStringCellValue());
+            assertEquals(CellType.NUMERIC, id.getCell(uniqueCount).getCellType());
+            assertEquals(nRows, id.getCell(uniqueCount).getNumericCellValue(), nRows * 0.05);
+            assertEquals(CellType.NUMERIC, id.getCell(fractionUnique).getCellType());
+            assertEquals(1, id.getCell(fractionUnique).getNumericCellValue(), 0.05);
+            assertTrue(id.getCell(error).getNumericCellValue() > 0);
+
+            // An exact count has an empty error
+            Row code = sheet.getRow(2);
+            assertEquals("code", code.getCell(1).getStringCellValue());
+            assertEquals(3, code.getCell(uniqueCount).getNumericCellValue());
+            assertEquals("", code.getCell(error).getStringCellValue());
+        }
+    }
+}